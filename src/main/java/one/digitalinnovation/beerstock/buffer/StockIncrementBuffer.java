@@ -0,0 +1,452 @@
+package one.digitalinnovation.beerstock.buffer;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.config.WriteBehindProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.StockIncrementCarryOver;
+import one.digitalinnovation.beerstock.entity.StockJournalCheckpoint;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.StockIncrementCarryOverRepository;
+import one.digitalinnovation.beerstock.repository.StockJournalCheckpointRepository;
+import one.digitalinnovation.beerstock.service.StockLedgerService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+// buffer de incrementos de estoque (write-behind), ligado com beerstock.write-behind.enabled=true
+// o incremento é conferido contra o máximo em memória, gravado no diário local e confirmado sem ir ao banco;
+// os incrementos de cada cerveja se somam e chegam ao banco juntos, numa transação por descarga
+//
+// garantias:
+// - um incremento confirmado ao cliente já está no disco e sobrevive a uma queda, a próxima subida aplica o que faltou
+// - o estoque nunca passa do máximo: a conferência em memória soma os incrementos pendentes e o UPDATE continua condicional
+// - as leituras do banco (busca por nome, listagens) só enxergam os incrementos depois da descarga
+// - um incremento confirmado só é descartado se a cerveja for excluída; se o estoque subiu por fora do buffer antes da
+//   descarga e o UPDATE passaria do máximo, ele fica guardado no banco com o checkpoint e continua pendente, somando
+//   na conferência do máximo, até uma descarga seguinte conseguir gravá-lo
+@Slf4j
+@Component
+@Profile("!journal")
+public class StockIncrementBuffer implements InitializingBean, DisposableBean {
+
+    private final WriteBehindProperties writeBehindProperties;
+    private final BeerRepository beerRepository;
+    private final StockJournalCheckpointRepository checkpointRepository;
+    private final StockIncrementCarryOverRepository carryOverRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BeerCache beerCache;
+    private final StockLedgerService stockLedgerService;
+    private final StockIndex stockIndex;
+
+    private final ConcurrentMap<Long, PendingStock> stocks = new ConcurrentHashMap<>();
+
+    // os incrementos seguram a leitura; a troca de segmento na descarga segura a escrita,
+    // então cada incremento fica no mesmo segmento do diário e na mesma descarga
+    private final ReentrantReadWriteLock rotationLock = new ReentrantReadWriteLock();
+
+    // uma descarga por vez
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicInteger pendingIncrements = new AtomicInteger();
+
+    // cervejas com incrementos desde a última descarga
+    private Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+
+    // cervejas com incrementos guardados no banco por uma descarga recusada, alterado só segurando a flushLock
+    private final Set<Long> carriedIds = new HashSet<>();
+
+    private StockIncrementJournal journal;
+
+    @Autowired
+    public StockIncrementBuffer(WriteBehindProperties writeBehindProperties, BeerRepository beerRepository,
+                                StockJournalCheckpointRepository checkpointRepository,
+                                StockIncrementCarryOverRepository carryOverRepository,
+                                TransactionTemplate transactionTemplate, BeerCache beerCache,
+                                StockLedgerService stockLedgerService, StockIndex stockIndex) {
+        this.writeBehindProperties = writeBehindProperties;
+        this.beerRepository = beerRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.carryOverRepository = carryOverRepository;
+        // a descarga sempre grava na própria transação, mesmo quando a requisição que completou o limite já está numa;
+        // senão o rollback da requisição desfaria incrementos já confirmados a outros clientes
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager(), transactionTemplate);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.beerCache = beerCache;
+        this.stockLedgerService = stockLedgerService;
+        this.stockIndex = stockIndex;
+    }
+
+    public boolean isEnabled() {
+        return writeBehindProperties.isEnabled();
+    }
+
+    // aplica os segmentos que ficaram no disco sem chegar ao banco, junto com os incrementos guardados por descargas
+    // recusadas, e abre o diário no segmento seguinte
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Path directory = Paths.get(writeBehindProperties.getJournalDirectory());
+        long lastFlushed = checkpointRepository.findById(StockJournalCheckpoint.ID)
+                .map(StockJournalCheckpoint::getLastFlushedSegment)
+                .orElse(0L);
+        SortedMap<Long, Path> segments = StockIncrementJournal.segments(directory);
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockIncrementCarryOver carryOver : carryOverRepository.findAll()) {
+            quantities.merge(carryOver.getBeerId(), carryOver.getQuantity(), Integer::sum);
+            carriedIds.add(carryOver.getBeerId());
+        }
+        long lastSegment = lastFlushed;
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            if (segment.getKey() > lastFlushed) {
+                StockIncrementJournal.read(segment.getValue()).forEach((id, quantity) -> quantities.merge(id, quantity, Integer::sum));
+            }
+            lastSegment = Math.max(lastSegment, segment.getKey());
+        }
+        if (!quantities.isEmpty()) {
+            Set<Long> missingIds = new HashSet<>();
+            Set<Long> rejectedIds = apply(lastSegment, quantities, missingIds);
+            log.info("Recovered buffered increments of {} beers from {}", quantities.size(), directory);
+            // o índice de estoque foi carregado antes da recuperação, e como nas descargas conta os incrementos que ficaram pendentes
+            carriedIds.clear();
+            quantities.forEach((id, quantity) -> {
+                if (missingIds.contains(id)) {
+                    log.warn("Discarded {} recovered units of beer {}: not found", quantity, id);
+                    return;
+                }
+                stockIndex.add(id, quantity);
+                if (rejectedIds.contains(id)) {
+                    log.warn("Kept {} recovered units of beer {} pending: above max", quantity, id);
+                    stocks.computeIfAbsent(id, beerId -> new PendingStock()).pending += quantity;
+                    pendingIds.add(id);
+                    carriedIds.add(id);
+                }
+            });
+        }
+        StockIncrementJournal.deleteUpTo(directory, lastSegment, lastSegment + 1);
+        journal = new StockIncrementJournal(directory, lastSegment + 1);
+    }
+
+    // o retorno já traz a quantidade com o incremento, mesmo antes de ele chegar ao banco
+    public BeerDTO increment(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
+        PendingStock stock = current(id);
+        long position;
+        BeerDTO incrementedBeer;
+        rotationLock.readLock().lock();
+        try {
+            stock.lock.lock();
+            try {
+                if (stock.quantity() + quantityToIncrement > stock.beer.getMax()) {
+                    throw new BeerStockExceededException(id, quantityToIncrement);
+                }
+                position = journal.append(id, quantityToIncrement);
+                stock.pending += quantityToIncrement;
+                pendingIds.add(id);
+                incrementedBeer = toDTO(stock);
+            } finally {
+                stock.lock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        // fora das travas, para que o force no disco de uma thread cubra os registros das outras
+        try {
+            journal.sync(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // o índice de estoque enxerga o incremento confirmado já agora, e o desconta se a descarga o recusar
+        stockIndex.add(id, quantityToIncrement);
+        if (pendingIncrements.incrementAndGet() >= writeBehindProperties.getMaxPendingIncrements()) {
+            flushIfIdle();
+        }
+        return incrementedBeer;
+    }
+
+    // o estoque da cerveja mudou no banco por outra operação, a próxima conferência relê a cerveja
+    public void evict(Long id) {
+        PendingStock stock = stocks.get(id);
+        if (stock != null) {
+            stock.stale = true;
+        }
+    }
+
+    // envia ao banco os incrementos acumulados, também chamado antes das operações que leem o estoque para alterá-lo
+    @Scheduled(fixedDelayString = "${beerstock.write-behind.flush-interval:50}")
+    public void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // descarga feita ao desligar a aplicação, antes do banco fechar
+    @Override
+    public void destroy() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        flush();
+        journal.close();
+    }
+
+    // a requisição que completa o limite descarrega, a não ser que outra descarga já esteja em andamento
+    private void flushIfIdle() {
+        if (flushLock.tryLock()) {
+            try {
+                flushPending();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private void flushPending() {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        long segment;
+        rotationLock.writeLock().lock();
+        try {
+            if (pendingIds.isEmpty()) {
+                return;
+            }
+            segment = journal.rotate();
+            for (Long id : pendingIds) {
+                PendingStock stock = stocks.get(id);
+                if (stock != null) {
+                    stock.lock.lock();
+                    try {
+                        stock.flushing = stock.pending;
+                        stock.pending = 0;
+                        quantities.put(id, stock.flushing);
+                    } finally {
+                        stock.lock.unlock();
+                    }
+                }
+            }
+            pendingIds = ConcurrentHashMap.newKeySet();
+            pendingIncrements.set(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+
+        Set<Long> missingIds = new HashSet<>();
+        Set<Long> rejectedIds;
+        try {
+            // o execute só volta depois do commit, então daqui em diante os incrementos já estão no banco
+            rejectedIds = apply(segment, quantities, missingIds);
+        } catch (RuntimeException e) {
+            // nada foi gravado: os incrementos voltam a ficar pendentes e o segmento fica no disco até a próxima descarga dar certo
+            rotationLock.readLock().lock();
+            try {
+                quantities.keySet().forEach(id -> {
+                    PendingStock stock = stocks.get(id);
+                    if (stock != null) {
+                        stock.lock.lock();
+                        try {
+                            stock.pending += stock.flushing;
+                            stock.flushing = 0;
+                        } finally {
+                            stock.lock.unlock();
+                        }
+                        pendingIds.add(id);
+                    }
+                });
+            } finally {
+                rotationLock.readLock().unlock();
+            }
+            log.error("Could not flush buffered increments of {} beers, retrying on the next flush", quantities.size(), e);
+            return;
+        }
+
+        Set<Long> carried = new HashSet<>();
+        quantities.forEach((id, quantity) -> {
+            if (missingIds.contains(id)) {
+                log.warn("Discarded {} buffered units of beer {}: not found", quantity, id);
+                stockIndex.add(id, -quantity);
+            } else if (rejectedIds.contains(id)) {
+                log.warn("Kept {} buffered units of beer {} pending: above max, retrying on the next flush", quantity, id);
+            }
+            // a cerveja pode ter saído do mapa por ter sido excluída
+            PendingStock stock = stocks.get(id);
+            if (stock == null) {
+                return;
+            }
+            stock.lock.lock();
+            try {
+                if (rejectedIds.contains(id)) {
+                    // o estoque mudou por fora do buffer, e a próxima conferência relê a cerveja
+                    stock.stale = true;
+                    if (!missingIds.contains(id)) {
+                        stock.pending += quantity;
+                        carried.add(id);
+                    }
+                } else if (stock.beer != null) {
+                    stock.beer.setQuantity(stock.beer.getQuantity() + quantity);
+                }
+                stock.flushing = 0;
+                stock.flushes++;
+            } finally {
+                stock.lock.unlock();
+            }
+        });
+        carriedIds.removeAll(quantities.keySet());
+        carriedIds.addAll(carried);
+        if (!carried.isEmpty()) {
+            rotationLock.readLock().lock();
+            try {
+                pendingIds.addAll(carried);
+            } finally {
+                rotationLock.readLock().unlock();
+            }
+        }
+        // só apaga o diário depois do commit, então uma queda antes dele reaplica o segmento na subida
+        try {
+            journal.deleteUpTo(segment);
+        } catch (IOException e) {
+            // o checkpoint no banco já impede que o segmento seja aplicado de novo
+            log.warn("Could not delete flushed journal segments up to {}", segment, e);
+        }
+    }
+
+    // um UPDATE condicional por cerveja, em ordem de id como no BeerBatchService, e o checkpoint na mesma transação
+    // o livro de estoque recebe um movimento por cerveja com a soma dos incrementos da descarga
+    // devolve as cervejas em que o UPDATE não alterou nada, e em missingIds as que não existem mais; o que foi recusado
+    // com a cerveja existindo é guardado no banco, e os incrementos guardados antes já vêm somados em quantities
+    private Set<Long> apply(long segment, Map<Long, Integer> quantities, Set<Long> missingIds) {
+        return transactionTemplate.execute(status -> {
+            Set<Long> rejectedIds = new HashSet<>();
+            List<Long> carriedBefore = quantities.keySet().stream().filter(carriedIds::contains).collect(Collectors.toList());
+            if (!carriedBefore.isEmpty()) {
+                carryOverRepository.deleteAllByIdInBatch(carriedBefore);
+            }
+            quantities.forEach((id, quantity) -> {
+                if (beerRepository.incrementQuantity(id, quantity) > 0) {
+                    stockLedgerService.record(id, quantity, StockLedgerEntryType.INCREMENTED);
+                } else {
+                    rejectedIds.add(id);
+                    if (beerRepository.findStockById(id).isPresent()) {
+                        carryOverRepository.save(new StockIncrementCarryOver(id, quantity));
+                    } else {
+                        missingIds.add(id);
+                    }
+                }
+                // registrado nesta transação, e não na da requisição que pode ter disparado a descarga
+                PendingStock stock = stocks.get(id);
+                if (stock != null && stock.beer != null) {
+                    beerCache.evict(stock.beer.getName());
+                }
+            });
+            checkpointRepository.save(new StockJournalCheckpoint(StockJournalCheckpoint.ID, segment));
+            return rejectedIds;
+        });
+    }
+
+    // a cerveja é lida do banco na primeira vez e depois de qualquer alteração feita por fora do buffer
+    // a leitura é feita fora da trava, e só fica valendo se nenhuma descarga desta cerveja estava em andamento nem
+    // terminou enquanto isso; senão a quantidade lida pode estar sem os incrementos que a descarga gravou e
+    // sobrescrever a que a descarga acabou de atualizar; o buffer aceitaria incrementos acima do máximo e a descarga
+    // seguinte descartaria incrementos já confirmados ao cliente
+    // a leitura é uma projeção: uma entidade viria da sessão da requisição, sem a quantidade atual numa releitura,
+    // e a atualização feita pela descarga entraria na verificação de alterações da requisição
+    private PendingStock current(Long id) throws BeerNotFoundException {
+        PendingStock stock = stocks.computeIfAbsent(id, beerId -> new PendingStock());
+        while (stock.stale) {
+            long flushes;
+            stock.lock.lock();
+            try {
+                flushes = stock.flushes;
+            } finally {
+                stock.lock.unlock();
+            }
+            Optional<BeerDTO> beer = beerRepository.findStockById(id);
+            if (!beer.isPresent()) {
+                stocks.remove(id);
+                throw new BeerNotFoundException(id);
+            }
+            stock.lock.lock();
+            try {
+                if (stock.flushing == 0 && stock.flushes == flushes) {
+                    stock.beer = beer.get();
+                    stock.stale = false;
+                }
+            } finally {
+                stock.lock.unlock();
+            }
+        }
+        return stock;
+    }
+
+    private BeerDTO toDTO(PendingStock stock) {
+        return BeerDTO.builder()
+                .id(stock.beer.getId())
+                .name(stock.beer.getName())
+                .brand(stock.beer.getBrand())
+                .max(stock.beer.getMax())
+                .quantity(stock.quantity())
+                .type(stock.beer.getType())
+                .build();
+    }
+
+    // estoque de uma cerveja como o buffer enxerga: o último lido do banco mais os incrementos que ainda não chegaram nele
+    private static class PendingStock {
+
+        // o incremento grava no diário segurando a trava da cerveja, por isso não é um synchronized
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private BeerDTO beer;
+
+        // incrementos aceitos desde a última descarga
+        private int pending;
+
+        // incrementos da descarga em andamento, ainda sem commit
+        private int flushing;
+
+        // descargas desta cerveja terminadas, para descartar uma leitura do banco que cruzou com uma delas
+        private long flushes;
+
+        // a cerveja nova só é conferida depois da primeira leitura do banco
+        private volatile boolean stale = true;
+
+        private int quantity() {
+            return beer.getQuantity() + flushing + pending;
+        }
+    }
+}
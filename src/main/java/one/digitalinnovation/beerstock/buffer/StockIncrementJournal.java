@@ -0,0 +1,168 @@
+package one.digitalinnovation.beerstock.buffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// diário local dos incrementos aceitos pelo buffer, gravado só com acréscimos no fim do arquivo
+// é dividido em segmentos numerados: cada descarga começa um segmento novo e os antigos são apagados depois do commit no banco
+public class StockIncrementJournal implements Closeable {
+
+    // id da cerveja seguido da quantidade incrementada
+    public static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("stock-(\\d+)\\.journal");
+
+    private final Path directory;
+
+    // travas e não synchronized: com as threads virtuais, esperar o disco dentro de um synchronized prenderia a thread da plataforma
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    private FileChannel channel;
+
+    private long segment;
+
+    // bytes gravados desde a abertura, somando todos os segmentos, e quantos deles já estão garantidos no disco
+    private volatile long written;
+
+    private volatile long forced;
+
+    public StockIncrementJournal(Path directory, long firstSegment) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.segment = firstSegment;
+        this.channel = open(firstSegment);
+    }
+
+    // segmentos que estão na pasta, do mais antigo para o mais novo
+    public static SortedMap<Long, Path> segments(Path directory) throws IOException {
+        SortedMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        return segments;
+    }
+
+    // soma os incrementos de cada cerveja no segmento
+    // um registro cortado no fim é de uma gravação que não terminou, e portanto nunca foi confirmada ao cliente
+    public static Map<Long, Integer> read(Path segment) throws IOException {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(segment));
+        while (records.remaining() >= RECORD_SIZE) {
+            quantities.merge(records.getLong(), records.getInt(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    // apaga os segmentos até o número informado, menos o que está recebendo gravações
+    public static void deleteUpTo(Path directory, long lastSegment, long currentSegment) throws IOException {
+        for (Map.Entry<Long, Path> segment : segments(directory).headMap(lastSegment + 1).entrySet()) {
+            if (segment.getKey() != currentSegment) {
+                Files.deleteIfExists(segment.getValue());
+            }
+        }
+    }
+
+    // grava o registro e devolve a posição que precisa estar no disco para ele ser durável
+    public long append(long id, int quantity) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).putLong(id).putInt(quantity);
+        record.flip();
+        appendLock.lock();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            written += RECORD_SIZE;
+            return written;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // garante no disco tudo até a posição informada
+    // quem chega enquanto outra thread sincroniza espera por ela, e um único force costuma cobrir os registros de várias threads
+    public void sync(long position) throws IOException {
+        if (forced >= position) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            if (forced >= position) {
+                return;
+            }
+            long target = written;
+            channel.force(false);
+            forced = target;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    // fecha o segmento atual já sincronizado e começa o próximo, devolvendo o número do que foi fechado
+    // quem chama garante que nenhuma gravação está em andamento
+    public long rotate() throws IOException {
+        appendLock.lock();
+        forceLock.lock();
+        try {
+            channel.force(false);
+            forced = written;
+            channel.close();
+            long rotated = segment;
+            segment++;
+            channel = open(segment);
+            return rotated;
+        } finally {
+            forceLock.unlock();
+            appendLock.unlock();
+        }
+    }
+
+    public void deleteUpTo(long lastSegment) throws IOException {
+        deleteUpTo(directory, lastSegment, segment);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // o segmento aberto fica no disco mesmo vazio, a próxima abertura continua a numeração depois dele
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        forceLock.lock();
+        try {
+            channel.force(false);
+            forced = written;
+            channel.close();
+        } finally {
+            forceLock.unlock();
+            appendLock.unlock();
+        }
+    }
+
+    private FileChannel open(long number) throws IOException {
+        Path file = directory.resolve(String.format("stock-%019d.journal", number));
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,167 @@
+package one.digitalinnovation.beerstock.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import one.digitalinnovation.beerstock.config.CacheProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// cache em memória das cervejas por nome, guarda também os nomes não encontrados
+// as métricas cache.hit.ratio, cache.evictions e cache.load.duration com a tag cache=beers aparecem no actuator
+// também conta as alterações do catálogo para o ETag da listagem: toda alteração de uma cerveja passa pelo evict, e a
+// versão só avança depois do commit e depois de tirar o nome do cache, então quem leu a versão antes de ler a listagem
+// nunca guarda uma página nova com um ETag antigo que não mude mais
+@Component
+public class BeerCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "beers";
+
+    private final Cache<String, Optional<BeerDTO>> cache;
+
+    // as cargas são registradas aqui porque acontecem fora do cache
+    private final ConcurrentStatsCounter statsCounter = new ConcurrentStatsCounter();
+
+    // cargas em andamento por nome, quem pede o mesmo nome espera a carga que já começou
+    private final ConcurrentMap<String, CompletableFuture<Optional<BeerDTO>>> loading = new ConcurrentHashMap<>();
+
+    // instante da subida, para que as versões contadas depois de reiniciar não repitam as de antes
+    private final long epoch = System.currentTimeMillis();
+
+    // avança a cada alteração de qualquer cerveja
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    @Autowired
+    public BeerCache(CacheProperties cacheProperties) {
+        long ttl = cacheProperties.getTtl().toNanos();
+        long negativeTtl = cacheProperties.getNegativeTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfter(new Expiry<String, Optional<BeerDTO>>() {
+                    @Override
+                    public long expireAfterCreate(String name, Optional<BeerDTO> beer, long currentTime) {
+                        return beer.isPresent() ? ttl : negativeTtl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String name, Optional<BeerDTO> beer, long currentTime, long currentDuration) {
+                        return expireAfterCreate(name, beer, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String name, Optional<BeerDTO> beer, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats(() -> statsCounter)
+                .build();
+    }
+
+    // devolve a cerveja do cache ou carrega uma única vez, mesmo com várias requisições pedindo o mesmo nome
+    // a consulta roda fora de qualquer synchronized, senão uma thread virtual esperando o banco prenderia a thread da plataforma
+    public Optional<BeerDTO> get(String name, Function<String, Optional<BeerDTO>> loader) {
+        Optional<BeerDTO> cached = cache.getIfPresent(name);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Optional<BeerDTO>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<BeerDTO>> inFlight = loading.putIfAbsent(name, load);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        long start = System.nanoTime();
+        try {
+            Optional<BeerDTO> beer = loader.apply(name);
+            statsCounter.recordLoadSuccess(System.nanoTime() - start);
+            // só guarda se nenhuma alteração tirou o nome do cache durante a carga, o valor lido pode ser o antigo
+            loading.computeIfPresent(name, (beerName, current) -> {
+                if (current == load) {
+                    cache.put(beerName, beer);
+                    return null;
+                }
+                return current;
+            });
+            load.complete(beer);
+            return beer;
+        } catch (RuntimeException | Error e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+            loading.remove(name, load);
+            load.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // tira o nome do cache só depois do commit, para que uma leitura concorrente não guarde o valor antigo de novo
+    public void evict(String name) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(name);
+                }
+            });
+        } else {
+            invalidate(name);
+        }
+    }
+
+    public void evictAll(Collection<String> names) {
+        names.forEach(this::evict);
+    }
+
+    // ETag da listagem, muda sempre que qualquer cerveja é criada, alterada ou excluída
+    public String catalogVersionTag() {
+        return epoch + "-" + catalogVersion.get();
+    }
+
+    private void invalidate(String name) {
+        loading.remove(name);
+        cache.invalidate(name);
+        catalogVersion.incrementAndGet();
+    }
+
+    private static Optional<BeerDTO> join(CompletableFuture<Optional<BeerDTO>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        // o binder do micrometer só mede as cargas de um LoadingCache, aqui a carga vem do get com função
+        FunctionTimer.builder("cache.load.duration", cache,
+                c -> c.stats().loadCount(), c -> c.stats().totalLoadTime(), TimeUnit.NANOSECONDS)
+                .tags("cache", CACHE_NAME)
+                .description("The time the cache has spent loading new values")
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tags("cache", CACHE_NAME)
+                .description("Ratio of cache requests which were hits")
+                .register(registry);
+    }
+}
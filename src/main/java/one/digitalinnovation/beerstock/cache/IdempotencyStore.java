@@ -0,0 +1,113 @@
+package one.digitalinnovation.beerstock.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import one.digitalinnovation.beerstock.config.IdempotencyProperties;
+import one.digitalinnovation.beerstock.exception.IdempotencyKeyReusedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// resultados das requisições enviadas com Idempotency-Key, para que o cliente que repete uma requisição depois de um
+// timeout receba a mesma resposta sem que a operação rode de novo
+//
+// garantias:
+// - a repetição é respondida da memória, sem consultar o banco
+// - a mesma chave chegando em duas threads roda a operação uma vez só; a segunda espera o resultado da primeira
+// - as recusas da regra de negócio (exceções verificadas) também são repetidas; as falhas inesperadas não ficam guardadas,
+//   para que o cliente possa tentar de novo com a mesma chave
+// - a mesma chave com outra requisição é recusada com IdempotencyKeyReusedException
+// - as chaves valem por beerstock.idempotency.ttl em cada instância da aplicação; acima de beerstock.idempotency.maximum-size
+//   as menos usadas saem antes
+@Component
+public class IdempotencyStore implements MeterBinder {
+
+    private static final String CACHE_NAME = "idempotency";
+
+    private final Cache<String, StoredOperation> cache;
+
+    @Autowired
+    public IdempotencyStore(IdempotencyProperties idempotencyProperties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(idempotencyProperties.getMaximumSize())
+                .expireAfterWrite(idempotencyProperties.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    // roda a operação na primeira vez que a chave aparece e devolve o mesmo resultado nas repetições
+    // sem chave a operação roda normalmente; request identifica a requisição para recusar a chave reaproveitada
+    public <T, E extends Exception, F extends Exception> T execute(String operation, String idempotencyKey, Object request,
+                                                                   IdempotentOperation<T, E, F> idempotentOperation)
+            throws E, F, IdempotencyKeyReusedException {
+        if (idempotencyKey == null) {
+            return idempotentOperation.run();
+        }
+        StoredOperation stored = new StoredOperation(request);
+        StoredOperation previous = cache.asMap().putIfAbsent(operation + ":" + idempotencyKey, stored);
+        if (previous != null) {
+            if (!previous.request.equals(request)) {
+                throw new IdempotencyKeyReusedException(idempotencyKey);
+            }
+            return IdempotencyStore.<T, E>replay(previous);
+        }
+        try {
+            T result = idempotentOperation.run();
+            stored.outcome.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            cache.asMap().remove(operation + ":" + idempotencyKey, stored);
+            stored.outcome.completeExceptionally(e);
+            throw e;
+        } catch (Exception e) {
+            stored.outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // espera a primeira execução terminar e devolve o resultado ou a exceção dela
+    @SuppressWarnings("unchecked")
+    private static <T, E extends Exception> T replay(StoredOperation stored) throws E {
+        try {
+            return (T) stored.outcome.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // a chave inclui a operação, então a exceção verificada é de um dos tipos que a operação declara
+            throw (E) cause;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    // até dois tipos de exceção verificada, como nas rotas de estoque que recusam a cerveja ausente e o estoque excedido
+    @FunctionalInterface
+    public interface IdempotentOperation<T, E extends Exception, F extends Exception> {
+
+        T run() throws E, F;
+    }
+
+    private static final class StoredOperation {
+
+        private final Object request;
+
+        private final CompletableFuture<Object> outcome = new CompletableFuture<>();
+
+        private StoredOperation(Object request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package one.digitalinnovation.beerstock.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.stream.Stream;
+
+// índice do estoque de todas as cervejas por id, para quem consulta o estoque muitas vezes por segundo
+// cada cerveja ocupa uma posição de dois arrays de long, sem objetos por cerveja: o id em keys e,
+// na mesma posição de stocks, a quantidade nos 32 bits de cima e o máximo nos 32 de baixo
+//
+// garantias:
+// - as leituras não alocam nem travam e sempre veem quantidade e máximo da mesma versão, porque os dois estão num long só
+// - as alterações de estoque são somas com CAS, então alterações concorrentes na mesma cerveja não se perdem
+// - as escritas feitas dentro de uma transação só chegam ao índice depois do commit
+// - as escritas do perfil reactive vão direto ao R2DBC e não passam pelo índice
+@Slf4j
+@Component
+@Profile("!journal")
+public class StockIndex implements InitializingBean {
+
+    // devolvido nas leituras de cervejas que não estão no índice
+    public static final int UNKNOWN = -1;
+
+    // quantidade e máximo nunca são negativos, então os valores negativos de stocks ficam livres para as marcações
+    // cerveja excluída; a posição continua ocupada pelo id até o próximo crescimento da tabela
+    private static final long REMOVED = -1L;
+
+    // posição já copiada para a tabela nova durante o crescimento, quem lê ou escreve tenta de novo na tabela nova
+    private static final long MOVED = -2L;
+
+    // os ids vêm da sequência e começam em 1, então o id 0 marca a posição vazia
+    private static final long EMPTY = 0L;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final BeerRepository beerRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    // cadastros e crescimento da tabela, um por vez; leituras e somas não passam por aqui
+    private final Object insertLock = new Object();
+
+    // posições ocupadas na tabela atual, incluindo as de cervejas excluídas
+    private int usedSlots;
+
+    @Autowired
+    public StockIndex(BeerRepository beerRepository, TransactionTemplate transactionTemplate) {
+        this.beerRepository = beerRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // carrega o estoque de todas as cervejas na subida, lendo o banco em ordem de id como a exportação
+    @Override
+    public void afterPropertiesSet() {
+        long start = System.nanoTime();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager(), transactionTemplate);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<Beer> beers = beerRepository.streamAllOrderById()) {
+                beers.forEach(beer -> store(beer.getId(), beer.getQuantity(), beer.getMax()));
+            }
+        });
+        log.info("Loaded the stock of {} beers into the stock index in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // quantidade atual da cerveja ou UNKNOWN
+    public int getQuantity(long id) {
+        long stock = getStock(id);
+        return stock < 0 ? UNKNOWN : quantityOf(stock);
+    }
+
+    // máximo da cerveja ou UNKNOWN
+    public int getMax(long id) {
+        long stock = getStock(id);
+        return stock < 0 ? UNKNOWN : maxOf(stock);
+    }
+
+    // quantidade e máximo juntos, para ler os dois da mesma versão com quantityOf e maxOf; negativo quando a cerveja não está no índice
+    public long getStock(long id) {
+        while (true) {
+            Table current = table;
+            int slot = current.find(id);
+            if (slot < 0) {
+                return REMOVED;
+            }
+            long stock = (long) LONGS.getAcquire(current.stocks, slot);
+            if (stock != MOVED) {
+                return stock;
+            }
+            awaitResize(current);
+        }
+    }
+
+    public static int quantityOf(long stock) {
+        return (int) (stock >>> 32);
+    }
+
+    public static int maxOf(long stock) {
+        return (int) stock;
+    }
+
+    // cerveja cadastrada, ou relida do banco depois de uma alteração que o índice não acompanhou
+    public void put(long id, int quantity, int max) {
+        afterCommit(() -> store(id, quantity, max));
+    }
+
+    // soma delta à quantidade, negativo nos decrementos; cervejas fora do índice são ignoradas
+    public void add(long id, int delta) {
+        afterCommit(() -> addNow(id, delta));
+    }
+
+    public void remove(long id) {
+        afterCommit(() -> {
+            while (true) {
+                Table current = table;
+                int slot = current.find(id);
+                if (slot < 0) {
+                    return;
+                }
+                long stock = (long) LONGS.getAcquire(current.stocks, slot);
+                if (stock == MOVED) {
+                    awaitResize(current);
+                } else if (stock == REMOVED || LONGS.compareAndSet(current.stocks, slot, stock, REMOVED)) {
+                    return;
+                }
+            }
+        });
+    }
+
+    // cervejas no índice, sem as excluídas
+    public int size() {
+        Table current = table;
+        int size = 0;
+        for (int slot = 0; slot < current.keys.length; slot++) {
+            if ((long) LONGS.getAcquire(current.keys, slot) != EMPTY && (long) LONGS.getAcquire(current.stocks, slot) >= 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private void addNow(long id, int delta) {
+        while (true) {
+            Table current = table;
+            int slot = current.find(id);
+            if (slot < 0) {
+                return;
+            }
+            long stock = (long) LONGS.getAcquire(current.stocks, slot);
+            if (stock == MOVED) {
+                awaitResize(current);
+            } else if (stock == REMOVED
+                    || LONGS.compareAndSet(current.stocks, slot, stock, pack(quantityOf(stock) + delta, maxOf(stock)))) {
+                return;
+            }
+        }
+    }
+
+    // grava a cerveja na posição do id, ocupando uma posição nova só quando o id ainda não está na tabela
+    private void store(long id, int quantity, int max) {
+        long stock = pack(quantity, max);
+        while (true) {
+            Table current = table;
+            int slot = current.find(id);
+            if (slot < 0) {
+                synchronized (insertLock) {
+                    if (insert(id, stock)) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            long previous = (long) LONGS.getAcquire(current.stocks, slot);
+            if (previous == MOVED) {
+                awaitResize(current);
+            } else if (LONGS.compareAndSet(current.stocks, slot, previous, stock)) {
+                return;
+            }
+        }
+    }
+
+    // chamado com insertLock; false quando outra thread cadastrou o id antes e a gravação precisa ser refeita
+    private boolean insert(long id, long stock) {
+        if (table.find(id) >= 0) {
+            return false;
+        }
+        // até metade das posições ocupadas, para que as buscas parem cedo numa posição vazia
+        if ((usedSlots + 1) * 2 > table.keys.length) {
+            resize();
+        }
+        Table current = table;
+        int slot = current.freeSlot(id);
+        // o estoque vai antes do id, então quem encontra o id já encontra o estoque
+        LONGS.setRelease(current.stocks, slot, stock);
+        LONGS.setRelease(current.keys, slot, id);
+        usedSlots++;
+        return true;
+    }
+
+    // chamado com insertLock; cada posição é trocada por MOVED com CAS ao ser copiada, então uma soma
+    // ou ela chega antes e é copiada junto, ou encontra MOVED e é refeita na tabela nova
+    private void resize() {
+        Table current = table;
+        int live = 0;
+        for (int slot = 0; slot < current.keys.length; slot++) {
+            if ((long) LONGS.getAcquire(current.keys, slot) != EMPTY && (long) LONGS.getAcquire(current.stocks, slot) >= 0) {
+                live++;
+            }
+        }
+        Table resized = new Table(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, live * 4 - 1)) << 1));
+        int used = 0;
+        for (int slot = 0; slot < current.keys.length; slot++) {
+            long id = (long) LONGS.getAcquire(current.keys, slot);
+            if (id == EMPTY) {
+                continue;
+            }
+            long stock = (long) LONGS.getAndSet(current.stocks, slot, MOVED);
+            // as cervejas excluídas não passam para a tabela nova
+            if (stock >= 0) {
+                int target = resized.freeSlot(id);
+                resized.stocks[target] = stock;
+                resized.keys[target] = id;
+                used++;
+            }
+        }
+        usedSlots = used;
+        table = resized;
+    }
+
+    // espera a tabela nova ser publicada; o crescimento é raro e só copia arrays, então a espera é curta
+    private void awaitResize(Table current) {
+        while (table == current) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static long pack(int quantity, int max) {
+        return ((long) quantity << 32) | (max & 0xFFFFFFFFL);
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    // endereçamento aberto com sondagem linear, a posição inicial vem do hash de Fibonacci do id
+    private static final class Table {
+
+        private final long[] keys;
+        private final long[] stocks;
+        private final int mask;
+        private final int shift;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.stocks = new long[capacity];
+            this.mask = capacity - 1;
+            this.shift = Long.numberOfLeadingZeros(capacity - 1);
+        }
+
+        // posição do id ou -1
+        private int find(long id) {
+            for (int slot = home(id); ; slot = (slot + 1) & mask) {
+                long key = (long) LONGS.getAcquire(keys, slot);
+                if (key == id) {
+                    return slot;
+                }
+                if (key == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        private int freeSlot(long id) {
+            int slot = home(id);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private int home(long id) {
+            return (int) ((id * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package one.digitalinnovation.beerstock.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+// configurações das operações em lote, lidas das propriedades beerstock.batch.*
+@Data
+@Component
+@Validated
+@ConfigurationProperties(prefix = "beerstock.batch")
+public class BatchProperties {
+
+    // quantidade máxima de cervejas alteradas em cada transação; com zero os lotes nunca avançariam
+    @Min(1)
+    private int chunkSize = 500;
+}
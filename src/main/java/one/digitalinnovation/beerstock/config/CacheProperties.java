@@ -0,0 +1,23 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// configurações do cache de cervejas por nome, lidas das propriedades beerstock.cache.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.cache")
+public class CacheProperties {
+
+    // quantidade máxima de nomes guardados, os menos usados saem primeiro
+    private long maximumSize = 10_000;
+
+    // tempo que uma cerveja encontrada fica no cache
+    private Duration ttl = Duration.ofMinutes(5);
+
+    // tempo que um nome não encontrado fica no cache, menor para que cervejas novas apareçam logo
+    private Duration negativeTtl = Duration.ofSeconds(30);
+}
@@ -0,0 +1,20 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// configurações do modo hot, lidas das propriedades beerstock.hot.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.hot")
+public class HotStockProperties {
+
+    // sem alterações de estoque por esse tempo a cerveja volta a ter o estoque só na própria linha
+    private Duration coolDown = Duration.ofMinutes(10);
+
+    // intervalo, em milissegundos, entre as verificações de cervejas que esfriaram
+    private long coolDownCheckInterval = 60_000;
+}
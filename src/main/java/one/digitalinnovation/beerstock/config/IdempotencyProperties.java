@@ -0,0 +1,20 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// configurações das respostas guardadas por Idempotency-Key, lidas das propriedades beerstock.idempotency.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.idempotency")
+public class IdempotencyProperties {
+
+    // quantidade máxima de chaves guardadas, as menos usadas saem primeiro
+    private long maximumSize = 100_000;
+
+    // tempo em que a repetição de uma requisição recebe a resposta guardada, contado da primeira execução
+    private Duration ttl = Duration.ofMinutes(10);
+}
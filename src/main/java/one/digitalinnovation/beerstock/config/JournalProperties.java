@@ -0,0 +1,18 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// configurações da persistência sem banco do perfil journal, lidas das propriedades beerstock.journal.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.journal")
+public class JournalProperties {
+
+    // pasta dos segmentos do diário
+    private String directory = "data/journal";
+
+    // tamanho, em bytes, de cada segmento mapeado em memória; um segmento cheio é fechado e o próximo é criado
+    private int segmentSize = 64 * 1024 * 1024;
+}
@@ -0,0 +1,19 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// configurações do livro de estoque, lidas das propriedades beerstock.ledger.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.ledger")
+public class LedgerProperties {
+
+    // intervalo, em milissegundos, entre as gerações de snapshots
+    private long snapshotInterval = 60_000;
+
+    // os snapshots só cobrem movimentos mais antigos que isso, em milissegundos, para que as transações ainda abertas
+    // costumem confirmar antes; a que confirma depois entra na geração seguinte
+    private long snapshotDelay = 5_000;
+}
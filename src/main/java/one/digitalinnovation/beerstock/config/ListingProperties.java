@@ -0,0 +1,18 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// configurações da listagem paginada, lidas das propriedades beerstock.listing.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.listing")
+public class ListingProperties {
+
+    // tamanho da página quando o cliente não informa nenhum
+    private int defaultPageSize = 50;
+
+    // maior página que um cliente pode pedir
+    private int maxPageSize = 500;
+}
@@ -0,0 +1,27 @@
+package one.digitalinnovation.beerstock.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import one.digitalinnovation.beerstock.metrics.BeerServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// habilita o @Timed nos métodos do BeerService e o agendamento que atualiza o estoque por tipo
+@Configuration
+@EnableScheduling
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    // depois do limite, novos valores da tag beer são descartados em vez de criar séries sem fim
+    @Bean
+    public MeterFilter stockOperationsCardinalityFilter(MetricsProperties metricsProperties) {
+        return MeterFilter.maximumAllowableTags(BeerServiceMetrics.STOCK_OPERATIONS, BeerServiceMetrics.BEER_TAG,
+                metricsProperties.getMaxTrackedBeers() + 1, MeterFilter.deny());
+    }
+}
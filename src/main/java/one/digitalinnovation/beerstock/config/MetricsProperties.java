@@ -0,0 +1,27 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// configurações das métricas do estoque, lidas das propriedades beerstock.metrics.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.metrics")
+public class MetricsProperties {
+
+    // ids das cervejas que ganham uma tag própria nas operações de estoque, as demais aparecem como "other"
+    private Set<Long> trackedBeerIds = new HashSet<>();
+
+    // limite de valores da tag beer, protege o Prometheus mesmo se a lista acima crescer demais
+    private int maxTrackedBeers = 50;
+
+    // intervalo, em milissegundos, em que o total de unidades por tipo é lido do banco
+    private long stockRefreshInterval = 30_000;
+
+    // quantas vezes o mesmo select pode rodar numa requisição antes de ser avisado como possível N+1
+    private int repeatedSelectThreshold = 10;
+}
@@ -0,0 +1,63 @@
+package one.digitalinnovation.beerstock.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.scheduler.Schedulers;
+
+// só existe com spring.main.web-application-type=reactive, que o perfil reactive liga
+// o pool do R2DBC não é publicado como bean ConnectionFactory de propósito: com um, o Spring Boot deixa de criar o DataSource do JPA
+// pelo mesmo motivo o gerenciador de transações fica dentro do TransactionalOperator, senão o @Transactional do JPA teria dois candidatos
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig implements DisposableBean {
+
+    private final ConnectionPool connectionPool;
+
+    public ReactiveConfig(ReactiveProperties reactiveProperties) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(reactiveProperties.getUrl())
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, reactiveProperties.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, reactiveProperties.getPassword())
+                .build();
+        // o driver do H2 executa os comandos na própria thread que pega a conexão, então a entrega das conexões sai do event loop
+        // sem isso a conexão devolvida por uma requisição atendia a próxima no event loop de outra, e sob carga o Netty parava de ler sockets
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .maxSize(reactiveProperties.getMaxPoolSize())
+                .customizer(poolBuilder -> poolBuilder.acquisitionScheduler(Schedulers.boundedElastic()))
+                .build());
+    }
+
+    // com o Tomcat no classpath o Spring Boot o escolheria também para o WebFlux, atendendo pela ponte de servlet
+    // o Netty deixa a variante rodando no event loop de verdade
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionPool);
+    }
+
+    // as operações com mais de um comando rodam numa transação, que usa uma única conexão do começo ao fim
+    // sem ela cada comando pega outra conexão antes de soltar a anterior, e com o pool cheio ninguém termina
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+}
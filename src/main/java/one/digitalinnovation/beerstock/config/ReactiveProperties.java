@@ -0,0 +1,25 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// configurações da variante reativa da API, lidas das propriedades beerstock.reactive.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.reactive")
+public class ReactiveProperties {
+
+    // o mesmo banco em memória do JPA, que continua criando as tabelas
+    private String url = "r2dbc:h2:mem:///beerstock?options=DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private String username = "sa";
+
+    private String password = "";
+
+    // conexões abertas ao mesmo tempo pelo R2DBC
+    private int maxPoolSize = 10;
+
+    // cervejas pedidas ao banco de cada vez nas rotas em fluxo, o resto só é lido quando o cliente consome
+    private int prefetch = 256;
+}
@@ -0,0 +1,20 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// configurações das reservas de estoque, lidas das propriedades beerstock.reservation.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.reservation")
+public class ReservationProperties {
+
+    // prazo para confirmar a reserva, depois dele o estoque volta a ficar disponível
+    private Duration ttl = Duration.ofMinutes(5);
+
+    // intervalo, em milissegundos, entre as limpezas das reservas vencidas
+    private long sweepInterval = 1_000;
+}
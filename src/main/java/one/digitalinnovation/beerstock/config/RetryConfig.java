@@ -0,0 +1,10 @@
+package one.digitalinnovation.beerstock.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.annotation.EnableRetry;
+
+// habilita o @Retryable usado nas operações de estoque que podem ter conflito de versão
+@Configuration
+@EnableRetry
+public class RetryConfig {
+}
@@ -0,0 +1,15 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// configurações do estoque por depósito, lidas das propriedades beerstock.warehouse.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.warehouse")
+public class WarehouseProperties {
+
+    // intervalo, em milissegundos, entre as somas das alterações dos depósitos à quantidade total das cervejas
+    private long aggregateInterval = 1_000;
+}
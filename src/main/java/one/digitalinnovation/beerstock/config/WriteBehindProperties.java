@@ -0,0 +1,24 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// configurações do buffer de incrementos de estoque, lidas das propriedades beerstock.write-behind.*
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.write-behind")
+public class WriteBehindProperties {
+
+    // desligado, cada incremento é um UPDATE no banco como antes
+    private boolean enabled = false;
+
+    // intervalo, em milissegundos, entre as descargas dos incrementos acumulados
+    private long flushInterval = 50;
+
+    // incrementos aceitos que disparam uma descarga antes do intervalo
+    private int maxPendingIncrements = 1000;
+
+    // pasta do diário local, onde cada incremento aceito fica gravado até chegar ao banco
+    private String journalDirectory = "data/write-behind";
+}
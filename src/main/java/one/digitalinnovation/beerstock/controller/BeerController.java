@@ -1,48 +1,176 @@
 package one.digitalinnovation.beerstock.controller;
 
 import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.cache.IdempotencyStore;
+import one.digitalinnovation.beerstock.dto.AvailableStockDTO;
+import one.digitalinnovation.beerstock.dto.BeerCreationResultDTO;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerPageDTO;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.HotStockDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
 import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.dto.StockLevelDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementResultDTO;
+import one.digitalinnovation.beerstock.dto.StockReservationDTO;
+import one.digitalinnovation.beerstock.dto.WarehouseStockDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
 import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.IdempotencyKeyReusedException;
+import one.digitalinnovation.beerstock.exception.InvalidCursorException;
+import one.digitalinnovation.beerstock.exception.InvalidRatioException;
+import one.digitalinnovation.beerstock.exception.OperationNotAvailableException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import one.digitalinnovation.beerstock.service.BeerBatchService;
+import one.digitalinnovation.beerstock.service.BeerExportService;
 import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.service.HotStockService;
+import one.digitalinnovation.beerstock.service.StockLedgerService;
+import one.digitalinnovation.beerstock.service.StockReservationService;
+import one.digitalinnovation.beerstock.service.WarehouseStockService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.validation.Valid;
+import jakarta.validation.Valid;
+import java.time.Instant;
 import java.util.List;
 
 @RestController // indica que é um controller
 @RequestMapping("/api/v1/beers") // path
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // com o perfil reactive quem atende é o ReactiveBeerController
 @AllArgsConstructor(onConstructor = @__(@Autowired)) // injeta um construtor de maneira simples com o lombok
 public class BeerController implements BeerControllerDocs {
 
+    // cabeçalho com o cursor da próxima página, o corpo continua sendo a lista de cervejas
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // chave enviada pelo cliente para repetir a criação ou o incremento sem aplicá-los duas vezes
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    // JSON delimitado por linha, usado na exportação do catálogo
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final BeerService beerService;
 
+    // os serviços abaixo dependem do banco e não existem com o perfil journal, onde as rotas deles respondem 501
+    @Nullable
+    private final BeerBatchService beerBatchService;
+
+    @Nullable
+    private final BeerExportService beerExportService;
+
+    @Nullable
+    private final StockLedgerService stockLedgerService;
+
+    @Nullable
+    private final WarehouseStockService warehouseStockService;
+
+    @Nullable
+    private final HotStockService hotStockService;
+
+    @Nullable
+    private final StockReservationService stockReservationService;
+
+    private final IdempotencyStore idempotencyStore;
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public BeerDTO createBeer(@RequestBody @Valid BeerDTO beerDTO) throws BeerAlreadyRegisteredException {
-        return beerService.createBeer(beerDTO);
+    public BeerDTO createBeer(@RequestBody @Valid BeerDTO beerDTO,
+                              @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) throws BeerAlreadyRegisteredException, IdempotencyKeyReusedException {
+        return idempotencyStore.execute("create", idempotencyKey, beerDTO, () -> beerService.createBeer(beerDTO));
     }
 
+    @PostMapping("/bulk")
+    public List<BeerCreationResultDTO> createBeers(@RequestBody List<BeerDTO> beerDTOs) throws OperationNotAvailableException {
+        return available(beerBatchService, "createBeers").createBeers(beerDTOs);
+    }
+
+    // a cerveja é lida antes (em geral do cache), então o nome inexistente dá 404; com If-None-Match igual ao
+    // conteúdo atual responde 304 sem corpo
     @GetMapping("/{name}")
-    public BeerDTO findByName(@PathVariable String name) throws BeerNotFoundException {
-        return beerService.findByName(name);
+    public BeerDTO findByName(@PathVariable String name, WebRequest webRequest) throws BeerNotFoundException {
+        BeerDTO beerDTO = beerService.findByName(name);
+        if (webRequest.checkNotModified(beerService.versionTag(beerDTO))) {
+            return null;
+        }
+        return beerDTO;
     }
 
+    // o ETag é a versão do catálogo, a mesma para todas as páginas; com If-None-Match igual a ela responde 304 sem consultar o banco
     @GetMapping
-    public List<BeerDTO> listBeers() {
-        return beerService.listAll();
+    public ResponseEntity<List<BeerDTO>> listBeers(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer size,
+                                                   WebRequest webRequest) throws InvalidCursorException {
+        if (webRequest.checkNotModified(beerService.catalogVersionTag())) {
+            return null;
+        }
+        return withNextCursor(beerService.listPage(cursor, size));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<BeerDTO>> searchBeers(@RequestParam(required = false) String brand,
+                                                     @RequestParam(required = false) BeerType type,
+                                                     @RequestParam(required = false) Integer maxQuantity,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer size) throws InvalidCursorException {
+        return withNextCursor(beerService.search(brand, type, maxQuantity, cursor, size));
+    }
+
+    @GetMapping("/low-stock")
+    public List<LowStockBeerDTO> findLowStock(@RequestParam(defaultValue = "0.2") double ratio) throws InvalidRatioException {
+        return beerService.findLowStock(ratio);
+    }
+
+    @GetMapping("/reorder-report")
+    public List<BrandReorderDTO> reorderReport() {
+        return beerService.reorderReport();
+    }
+
+    // as cervejas são escritas direto na resposta enquanto são lidas do banco
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportBeers() throws OperationNotAvailableException {
+        StreamingResponseBody body = available(beerExportService, "exportBeers")::exportAll;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    // sem o instante, o estoque atual segundo o livro de estoque
+    @GetMapping("/{id}/stock")
+    public BeerStockDTO findStockAt(@PathVariable Long id,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) throws BeerNotFoundException, OperationNotAvailableException {
+        return available(stockLedgerService, "findStockAt").stockAt(id, at == null ? Instant.now() : at);
+    }
+
+    // estoque atual lido do índice em memória, sem ir ao banco
+    @GetMapping("/{id}/quantity")
+    public StockLevelDTO findStockLevel(@PathVariable Long id) throws BeerNotFoundException {
+        return beerService.findStockLevel(id);
     }
 
     @DeleteMapping("/{id}")
@@ -52,7 +180,93 @@ public class BeerController implements BeerControllerDocs {
     }
 
     @PatchMapping("/{id}/increment")
-    public BeerDTO increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException {
-        return beerService.increment(id, quantityDTO.getQuantity());
+    public BeerDTO increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO,
+                             @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) throws BeerNotFoundException, BeerStockExceededException, IdempotencyKeyReusedException {
+        int quantity = quantityDTO.getQuantity();
+        return idempotencyStore.<BeerDTO, BeerNotFoundException, BeerStockExceededException>execute(
+                "increment", idempotencyKey, List.of(id, quantity), () -> beerService.increment(id, quantity));
+    }
+
+    @PatchMapping("/{id}/decrement")
+    public BeerDTO decrement(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException {
+        return beerService.decrement(id, quantityDTO.getQuantity());
+    }
+
+    @GetMapping("/{id}/warehouses")
+    public List<WarehouseStockDTO> findWarehouseStocks(@PathVariable Long id) throws BeerNotFoundException, OperationNotAvailableException {
+        return available(warehouseStockService, "findWarehouseStocks").findByBeer(id);
+    }
+
+    @PatchMapping("/{id}/warehouses/{warehouseId}/increment")
+    public WarehouseStockDTO incrementWarehouse(@PathVariable Long id, @PathVariable Long warehouseId,
+                                                @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException, OperationNotAvailableException {
+        return available(warehouseStockService, "incrementWarehouse").increment(id, warehouseId, quantityDTO.getQuantity());
+    }
+
+    @PatchMapping("/{id}/warehouses/{warehouseId}/decrement")
+    public WarehouseStockDTO decrementWarehouse(@PathVariable Long id, @PathVariable Long warehouseId,
+                                                @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException, OperationNotAvailableException {
+        return available(warehouseStockService, "decrementWarehouse").decrement(id, warehouseId, quantityDTO.getQuantity());
+    }
+
+    @PostMapping("/{id}/reservations")
+    @ResponseStatus(HttpStatus.CREATED)
+    public StockReservationDTO reserve(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException, OperationNotAvailableException {
+        return available(stockReservationService, "reserve").reserve(id, quantityDTO.getQuantity());
+    }
+
+    @PostMapping("/{id}/reservations/{reservationId}/confirm")
+    public BeerDTO confirmReservation(@PathVariable Long id, @PathVariable Long reservationId) throws ReservationNotFoundException, BeerNotFoundException, BeerStockExceededException, OperationNotAvailableException {
+        return available(stockReservationService, "confirmReservation").confirm(id, reservationId);
+    }
+
+    @DeleteMapping("/{id}/reservations/{reservationId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void releaseReservation(@PathVariable Long id, @PathVariable Long reservationId) throws ReservationNotFoundException, OperationNotAvailableException {
+        available(stockReservationService, "releaseReservation").release(id, reservationId);
+    }
+
+    @GetMapping("/{id}/available")
+    public AvailableStockDTO findAvailable(@PathVariable Long id) throws BeerNotFoundException, OperationNotAvailableException {
+        return available(stockReservationService, "findAvailable").findAvailable(id);
+    }
+
+    @PutMapping("/{id}/hot")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void enableHotStock(@PathVariable Long id, @RequestBody @Valid HotStockDTO hotStockDTO) throws BeerNotFoundException, OperationNotAvailableException {
+        available(hotStockService, "enableHotStock").enable(id, hotStockDTO.getSlots());
+    }
+
+    @DeleteMapping("/{id}/hot")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void disableHotStock(@PathVariable Long id) throws BeerNotFoundException, OperationNotAvailableException {
+        available(hotStockService, "disableHotStock").disable(id);
+    }
+
+    @PostMapping("/stock-movements")
+    public List<StockMovementResultDTO> applyStockMovements(@RequestBody List<StockMovementDTO> movements) throws OperationNotAvailableException {
+        return available(beerBatchService, "applyStockMovements").applyMovements(movements);
+    }
+
+    // o decremento esgotou as tentativas porque a cerveja continuou sendo alterada por outras requisições
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public void handleStockConflict() {
+    }
+
+    // o serviço que atende a rota, ou OperationNotAvailableException quando o perfil journal não o sobe
+    private static <T> T available(T service, String operation) throws OperationNotAvailableException {
+        if (service == null) {
+            throw new OperationNotAvailableException(operation);
+        }
+        return service;
+    }
+
+    private ResponseEntity<List<BeerDTO>> withNextCursor(BeerPageDTO beerPage) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (beerPage.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, beerPage.getNextCursor());
+        }
+        return response.body(beerPage.getBeers());
     }
 }
@@ -1,47 +1,213 @@
 package one.digitalinnovation.beerstock.controller;
 
-import io.swagger.annotations.Api;
-import io.swagger.annotations.ApiOperation;
-import io.swagger.annotations.ApiResponse;
-import io.swagger.annotations.ApiResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import one.digitalinnovation.beerstock.dto.AvailableStockDTO;
+import one.digitalinnovation.beerstock.dto.BeerCreationResultDTO;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.HotStockDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
 import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.dto.StockLevelDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementResultDTO;
+import one.digitalinnovation.beerstock.dto.StockReservationDTO;
+import one.digitalinnovation.beerstock.dto.WarehouseStockDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
 import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.IdempotencyKeyReusedException;
+import one.digitalinnovation.beerstock.exception.InvalidCursorException;
+import one.digitalinnovation.beerstock.exception.InvalidRatioException;
+import one.digitalinnovation.beerstock.exception.OperationNotAvailableException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.validation.Valid;
+import jakarta.validation.Valid;
+import java.time.Instant;
 import java.util.List;
 
-@Api("Manages beer stock")
+@Tag(name = "Beers", description = "Manages beer stock")
 public interface BeerControllerDocs {
 
-    @ApiOperation(value = "Beer creation operation")
+    @Operation(summary = "Beer creation operation")
     @ApiResponses(value = {
-            @ApiResponse(code = 201, message = "Success beer creation"),
-            @ApiResponse(code = 400, message = "Missing required fields or wrong field range value.")
+            @ApiResponse(responseCode = "201", description = "Success beer creation"),
+            @ApiResponse(responseCode = "400", description = "Missing required fields or wrong field range value."),
+            @ApiResponse(responseCode = "422", description = "Idempotency key already used with a different beer.")
     })
-    BeerDTO createBeer(BeerDTO beerDTO) throws BeerAlreadyRegisteredException;
+    BeerDTO createBeer(BeerDTO beerDTO, String idempotencyKey) throws BeerAlreadyRegisteredException, IdempotencyKeyReusedException;
 
-    @ApiOperation(value = "Returns beer found by a given name")
+    @Operation(summary = "Bulk beer creation operation, duplicated and invalid beers are reported per item")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Success beer found in the system"),
-            @ApiResponse(code = 404, message = "Beer with given name not found.")
+            @ApiResponse(responseCode = "200", description = "Result of each beer creation, in the same order as informed"),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
     })
-    BeerDTO findByName(@PathVariable String name) throws BeerNotFoundException;
+    List<BeerCreationResultDTO> createBeers(@RequestBody List<BeerDTO> beerDTOs) throws OperationNotAvailableException;
 
-    @ApiOperation(value = "Returns a list of all beers registered in the system")
+    @Operation(summary = "Returns beer found by a given name")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "List of all beers registered in the system"),
+            @ApiResponse(responseCode = "200", description = "Success beer found in the system"),
+            @ApiResponse(responseCode = "304", description = "Beer not modified since the ETag sent in If-None-Match."),
+            @ApiResponse(responseCode = "404", description = "Beer with given name not found.")
     })
-    List<BeerDTO> listBeers();
+    BeerDTO findByName(@PathVariable String name, WebRequest webRequest) throws BeerNotFoundException;
 
-    @ApiOperation(value = "Delete a beer found by a given valid Id")
+    @Operation(summary = "Returns a page of the beers registered in the system, ordered by id")
     @ApiResponses(value = {
-            @ApiResponse(code = 204, message = "Success beer deleted in the system"),
-            @ApiResponse(code = 404, message = "Beer with given id not found.")
+            @ApiResponse(responseCode = "200", description = "Page of beers, the X-Next-Cursor header points to the next page"),
+            @ApiResponse(responseCode = "304", description = "No beer modified since the ETag sent in If-None-Match."),
+            @ApiResponse(responseCode = "400", description = "Cursor is not valid.")
+    })
+    ResponseEntity<List<BeerDTO>> listBeers(String cursor, Integer size, WebRequest webRequest) throws InvalidCursorException;
+
+    @Operation(summary = "Returns a page of the beers filtered by brand, type and stock at most maxQuantity, ordered by id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of filtered beers, the X-Next-Cursor header points to the next page"),
+            @ApiResponse(responseCode = "400", description = "Cursor or beer type is not valid.")
+    })
+    ResponseEntity<List<BeerDTO>> searchBeers(String brand, BeerType type, Integer maxQuantity, String cursor, Integer size) throws InvalidCursorException;
+
+    @Operation(summary = "Returns the beers whose quantity / max is at most the given ratio, lowest stock first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Beers with low stock and how much to reorder of each"),
+            @ApiResponse(responseCode = "400", description = "Ratio is not between 0 and 1.")
+    })
+    List<LowStockBeerDTO> findLowStock(double ratio) throws InvalidRatioException;
+
+    @Operation(summary = "Returns how much stock to reorder for each brand, summed as max - quantity of its beers")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One line per brand, the brands that need more stock first")
+    })
+    List<BrandReorderDTO> reorderReport();
+
+    @Operation(summary = "Streams every beer registered in the system as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One beer per line, ordered by id"),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    ResponseEntity<StreamingResponseBody> exportBeers() throws OperationNotAvailableException;
+
+    @Operation(summary = "Returns the stock of a beer at a given instant (ISO-8601), rebuilt from the latest snapshot and the movements after it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stock of the beer at the instant, or now when no instant is informed"),
+            @ApiResponse(responseCode = "404", description = "Beer with given id had no stock movement up to the instant."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    BeerStockDTO findStockAt(@PathVariable Long id, Instant at) throws BeerNotFoundException, OperationNotAvailableException;
+
+    @Operation(summary = "Returns the current quantity and max of a beer from the in-memory stock index")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Current stock of the beer"),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found.")
+    })
+    StockLevelDTO findStockLevel(@PathVariable Long id) throws BeerNotFoundException;
+
+    @Operation(summary = "Delete a beer found by a given valid Id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Success beer deleted in the system"),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found.")
     })
     void deleteById(@PathVariable Long id) throws BeerNotFoundException;
+
+    @Operation(summary = "Decrement the stock of a beer found by a given valid Id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success beer stock decremented"),
+            @ApiResponse(responseCode = "400", description = "Quantity to decrement is greater than the beer stock."),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found."),
+            @ApiResponse(responseCode = "409", description = "Beer stock kept changing while decrementing, try again.")
+    })
+    BeerDTO decrement(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException;
+
+    @Operation(summary = "Returns the stock of a beer at each warehouse, ordered by warehouse id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One line per warehouse that has ever stocked the beer"),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    List<WarehouseStockDTO> findWarehouseStocks(@PathVariable Long id) throws BeerNotFoundException, OperationNotAvailableException;
+
+    @Operation(summary = "Increment the stock of a beer at one warehouse; the beer total follows within the aggregate interval")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success warehouse stock incremented"),
+            @ApiResponse(responseCode = "400", description = "Quantity to increment exceeds the max of the beer at the warehouse."),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    WarehouseStockDTO incrementWarehouse(@PathVariable Long id, @PathVariable Long warehouseId, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException, OperationNotAvailableException;
+
+    @Operation(summary = "Decrement the stock of a beer at one warehouse; the beer total follows within the aggregate interval")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Success warehouse stock decremented"),
+            @ApiResponse(responseCode = "400", description = "Quantity to decrement is greater than the warehouse stock."),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    WarehouseStockDTO decrementWarehouse(@PathVariable Long id, @PathVariable Long warehouseId, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException, OperationNotAvailableException;
+
+    @Operation(summary = "Holds stock of a beer for a checkout until the reservation is confirmed, released or expires")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Stock reserved, with the expiration of the reservation"),
+            @ApiResponse(responseCode = "400", description = "Not enough available stock, or invalid quantity."),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    StockReservationDTO reserve(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException, OperationNotAvailableException;
+
+    @Operation(summary = "Takes the reserved quantity out of the beer stock")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Reservation confirmed, with the beer after the decrement"),
+            @ApiResponse(responseCode = "404", description = "Reservation not found, expired or already closed."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    BeerDTO confirmReservation(@PathVariable Long id, @PathVariable Long reservationId) throws ReservationNotFoundException, BeerNotFoundException, BeerStockExceededException, OperationNotAvailableException;
+
+    @Operation(summary = "Gives the reserved quantity back to the available stock")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Reservation released"),
+            @ApiResponse(responseCode = "404", description = "Reservation not found, expired or already closed."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    void releaseReservation(@PathVariable Long id, @PathVariable Long reservationId) throws ReservationNotFoundException, OperationNotAvailableException;
+
+    @Operation(summary = "Returns the stock of a beer, the quantity held by active reservations and what is still available")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Available stock of the beer"),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    AvailableStockDTO findAvailable(@PathVariable Long id) throws BeerNotFoundException, OperationNotAvailableException;
+
+    @Operation(summary = "Splits the stock of a beer into slots so concurrent increments and decrements do not queue on one row")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Beer stock split, or already split"),
+            @ApiResponse(responseCode = "400", description = "Number of slots out of the range 2..64."),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    void enableHotStock(@PathVariable Long id, @RequestBody @Valid HotStockDTO hotStockDTO) throws BeerNotFoundException, OperationNotAvailableException;
+
+    @Operation(summary = "Collapses the stock slots of a beer back into its row; idle beers are collapsed automatically")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Beer stock back in its row"),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found."),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    void disableHotStock(@PathVariable Long id) throws BeerNotFoundException, OperationNotAvailableException;
+
+    @Operation(summary = "Applies a list of stock movements, grouped by beer, in bounded transactions")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Result of each movement, in the same order as informed"),
+            @ApiResponse(responseCode = "501", description = "Not available with the journal profile.")
+    })
+    List<StockMovementResultDTO> applyStockMovements(@RequestBody List<StockMovementDTO> movements) throws OperationNotAvailableException;
 }
@@ -0,0 +1,106 @@
+package one.digitalinnovation.beerstock.controller;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerPageDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.service.ReactiveBeerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import jakarta.validation.Valid;
+import java.util.List;
+
+// o mesmo contrato do BeerController em WebFlux, ativo só com o perfil reactive
+// o cadastro em lote e as movimentações em lote continuam só na versão MVC
+@RestController
+@RequestMapping("/api/v1/beers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveBeerController {
+
+    private final ReactiveBeerService beerService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BeerDTO> createBeer(@RequestBody @Valid BeerDTO beerDTO) {
+        return beerService.createBeer(beerDTO);
+    }
+
+    @GetMapping("/{name}")
+    public Mono<BeerDTO> findByName(@PathVariable String name) {
+        return beerService.findByName(name);
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<List<BeerDTO>>> listBeers(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer size) {
+        return beerService.listPage(cursor, size).map(this::withNextCursor);
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<BeerDTO>>> searchBeers(@RequestParam(required = false) String brand,
+                                                           @RequestParam(required = false) BeerType type,
+                                                           @RequestParam(required = false) Integer maxQuantity,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer size) {
+        return beerService.search(brand, type, maxQuantity, cursor, size).map(this::withNextCursor);
+    }
+
+    @GetMapping("/low-stock")
+    public Flux<LowStockBeerDTO> findLowStock(@RequestParam(defaultValue = "0.2") double ratio) {
+        return beerService.findLowStock(ratio);
+    }
+
+    @GetMapping("/reorder-report")
+    public Flux<BrandReorderDTO> reorderReport() {
+        return beerService.reorderReport();
+    }
+
+    // cada cerveja vira uma linha da resposta, e a leitura do banco acompanha a velocidade do cliente
+    @GetMapping(value = "/export", produces = BeerController.APPLICATION_NDJSON_VALUE)
+    public Flux<BeerDTO> exportBeers() {
+        return beerService.exportAll();
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> deleteById(@PathVariable Long id) {
+        return beerService.deleteById(id);
+    }
+
+    @PatchMapping("/{id}/increment")
+    public Mono<BeerDTO> increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) {
+        return beerService.increment(id, quantityDTO.getQuantity());
+    }
+
+    @PatchMapping("/{id}/decrement")
+    public Mono<BeerDTO> decrement(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) {
+        return beerService.decrement(id, quantityDTO.getQuantity());
+    }
+
+    private ResponseEntity<List<BeerDTO>> withNextCursor(BeerPageDTO beerPage) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (beerPage.getNextCursor() != null) {
+            response.header(BeerController.NEXT_CURSOR_HEADER, beerPage.getNextCursor());
+        }
+        return response.body(beerPage.getBeers());
+    }
+}
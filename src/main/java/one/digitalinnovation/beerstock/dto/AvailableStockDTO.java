@@ -0,0 +1,22 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// estoque de uma cerveja separado entre o que está reservado e o que ainda pode ser reservado ou vendido
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableStockDTO {
+
+    private Long beerId;
+
+    private Integer quantity;
+
+    private Integer reserved;
+
+    private Integer available;
+}
@@ -0,0 +1,23 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.beerstock.enums.BeerCreationStatus;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerCreationResultDTO {
+
+    private String name;
+
+    private BeerCreationStatus status;
+
+    // cerveja gravada, preenchida apenas quando foi criada
+    private BeerDTO beer;
+
+    private String message;
+}
@@ -0,0 +1,22 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// estoque de uma cerveja num instante, reconstruído a partir do livro de estoque
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerStockDTO {
+
+    private Long id;
+
+    private Integer quantity;
+
+    private Instant at;
+}
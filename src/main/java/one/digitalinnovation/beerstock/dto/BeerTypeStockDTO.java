@@ -0,0 +1,19 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.beerstock.enums.BeerType;
+
+// total de unidades em estoque de um tipo de cerveja, somado no banco
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerTypeStockDTO {
+
+    private BeerType type;
+
+    private Long quantity;
+}
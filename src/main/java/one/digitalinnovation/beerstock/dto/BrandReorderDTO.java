@@ -0,0 +1,22 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// uma linha do relatório de reposição, somada no banco para cada marca
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BrandReorderDTO {
+
+    private String brand;
+
+    // cervejas da marca que estão abaixo do máximo
+    private Long beers;
+
+    // soma de max - quantity dessas cervejas
+    private Long quantityToReorder;
+}
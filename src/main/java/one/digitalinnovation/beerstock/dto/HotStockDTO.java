@@ -0,0 +1,23 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+// quantas faixas o estoque da cerveja em modo hot vai ter
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotStockDTO {
+
+    @NotNull
+    @Min(2)
+    @Max(64)
+    private Integer slots;
+}
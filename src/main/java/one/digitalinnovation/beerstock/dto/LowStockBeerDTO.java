@@ -0,0 +1,30 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.beerstock.enums.BeerType;
+
+// projeção montada direto na consulta, só com o necessário para repor o estoque
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockBeerDTO {
+
+    private Long id;
+
+    private String name;
+
+    private String brand;
+
+    private BeerType type;
+
+    private Integer quantity;
+
+    private Integer max;
+
+    // quanto falta para o estoque chegar no máximo
+    private Integer quantityToReorder;
+}
@@ -0,0 +1,20 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// movimentos de uma cerveja num intervalo do livro de estoque, somados no banco
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLedgerSumDTO {
+
+    private Long beerId;
+
+    private Long entries;
+
+    private Long delta;
+}
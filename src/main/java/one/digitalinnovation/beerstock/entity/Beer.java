@@ -4,23 +4,46 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import one.digitalinnovation.beerstock.enums.BeerType;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.EnumType;
-import javax.persistence.Enumerated;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 @Data // do lombok, gera métodos que não precisam ser escritos
 @Entity // descreve a entidade
+// cache de segundo nível: READ_WRITE trava a entrada enquanto a transação que altera a cerveja não termina,
+// e os UPDATEs de estoque em JPQL invalidam a região inteira, então nunca se lê um estoque antigo do cache
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Beer.CACHE_REGION)
+// índices das telas de estoque: marca (com ou sem tipo) e tipo (com ou sem estoque baixo)
+// o filtro só de estoque baixo percorre a chave primária, que já entrega a ordem por id da paginação
+@Table(indexes = {
+        @Index(name = "idx_beer_brand_type", columnList = "brand, type"),
+        @Index(name = "idx_beer_type_quantity", columnList = "type, quantity")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Beer {
 
+    public static final String CACHE_REGION = "beer";
+
+    public static final String BY_NAME_CACHE_REGION = "beer-by-name";
+
+    // a sequência reserva 50 ids por consulta (otimizador pooled), o que permite ao Hibernate enviar os INSERTs em lote
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "beer_sequence")
+    @SequenceGenerator(name = "beer_sequence", sequenceName = "beer_sequence", allocationSize = 50)
     private Long id;
 
     // esses campos sempre precisam ser preenchidos com algum valor
@@ -43,5 +66,8 @@ public class Beer {
     @Column(nullable = false)
     private BeerType type;
 
+    // versão usada no controle de concorrência otimista, quem salvar uma versão desatualizada recebe um conflito
+    @Version
+    private Long version;
 
 }
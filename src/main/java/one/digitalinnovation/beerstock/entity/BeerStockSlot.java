@@ -0,0 +1,33 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+
+// uma das faixas em que o estoque de uma cerveja em modo hot é dividido
+// cada faixa tem uma parte do máximo da cerveja (budget), e a soma dos budgets é o máximo inteiro,
+// então conferir cada faixa contra o seu budget mantém o total dentro do máximo sem travar a linha da cerveja
+@Data
+@Entity
+@IdClass(BeerStockSlotId.class)
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerStockSlot {
+
+    @Id
+    private Long beerId;
+
+    @Id
+    private Integer slot;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(nullable = false)
+    private int budget;
+}
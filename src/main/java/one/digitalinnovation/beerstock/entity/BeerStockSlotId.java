@@ -0,0 +1,18 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// chave de uma faixa do estoque de uma cerveja em modo hot
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerStockSlotId implements Serializable {
+
+    private Long beerId;
+
+    private Integer slot;
+}
@@ -0,0 +1,25 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+// incrementos do buffer já confirmados ao cliente que a última descarga não conseguiu somar à cerveja, porque o estoque
+// subiu por fora do buffer e o UPDATE passaria do máximo; gravados na transação do checkpoint, então continuam
+// pendentes mesmo depois que o segmento do diário com eles é apagado, e a recuperação os soma aos segmentos seguintes
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockIncrementCarryOver {
+
+    @Id
+    private Long beerId;
+
+    @Column(nullable = false)
+    private int quantity;
+}
@@ -0,0 +1,27 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+// último segmento do diário de incrementos que já chegou ao banco, gravado na mesma transação dos UPDATEs
+// assim um segmento que ficou no disco depois do commit não é aplicado de novo na recuperação
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockJournalCheckpoint {
+
+    // existe uma linha só
+    public static final long ID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private long lastFlushedSegment;
+}
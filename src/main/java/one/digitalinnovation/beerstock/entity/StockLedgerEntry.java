@@ -0,0 +1,58 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+// movimento de estoque de uma cerveja, só inserido e nunca alterado, gravado na mesma transação que altera a quantidade
+// a soma dos movimentos de uma cerveja até um instante é o estoque dela naquele instante
+// o id da cerveja não é chave estrangeira para que o histórico continue depois da exclusão
+// os índices seguem o snapshot que cobre o movimento: as consultas só leem os movimentos que nenhum snapshot somou
+// ou que foram somados depois do snapshot usado
+@Data
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_stock_ledger_beer_covered", columnList = "beer_id, covered_until"),
+        @Index(name = "idx_stock_ledger_covered", columnList = "covered_until")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLedgerEntry {
+
+    // como na cerveja, a sequência reserva 50 ids por consulta para que os INSERTs saiam em lote
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_ledger_sequence")
+    @SequenceGenerator(name = "stock_ledger_sequence", sequenceName = "stock_ledger_sequence", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long beerId;
+
+    // positivo quando o estoque sobe, negativo quando desce
+    @Column(nullable = false)
+    private int delta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StockLedgerEntryType type;
+
+    @Column(nullable = false)
+    private Instant occurredAt;
+
+    // até onde vai a geração de snapshots que somou o movimento, vazio enquanto nenhuma somou
+    // o movimento gravado numa transação que confirmou depois que uma geração já cobriu o instante dele entra na seguinte
+    private Instant coveredUntil;
+}
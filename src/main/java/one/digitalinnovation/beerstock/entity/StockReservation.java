@@ -0,0 +1,40 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+// estoque separado para uma compra em andamento, até a confirmação, a liberação ou o fim do prazo
+// a reserva vencida já não conta no estoque disponível, mesmo antes de a linha ser apagada
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_stock_reservation_beer_expires", columnList = "beer_id, expires_at"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservation {
+
+    // como no livro de estoque, a sequência reserva 50 ids por consulta
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_reservation_sequence")
+    @SequenceGenerator(name = "stock_reservation_sequence", sequenceName = "stock_reservation_sequence", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long beerId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
@@ -0,0 +1,39 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+// estoque de uma cerveja somando todos os movimentos dela até coveredUntil
+// o estoque em qualquer instante posterior é o snapshot mais os poucos movimentos depois dele
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_stock_snapshot_beer_covered", columnList = "beer_id, covered_until"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_snapshot_sequence")
+    @SequenceGenerator(name = "stock_snapshot_sequence", sequenceName = "stock_snapshot_sequence", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long beerId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(nullable = false)
+    private Instant coveredUntil;
+}
@@ -0,0 +1,30 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+
+// estoque de uma cerveja num depósito (loja), uma linha por par cerveja e depósito
+// cada loja altera só a sua linha, então as lojas não disputam a trava da linha da cerveja
+// o máximo da cerveja vale para cada depósito; o total de todos os depósitos chega à cerveja pelo WarehouseStockService
+@Data
+@Entity
+@IdClass(WarehouseStockId.class)
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarehouseStock {
+
+    @Id
+    private Long beerId;
+
+    @Id
+    private Long warehouseId;
+
+    @Column(nullable = false)
+    private int quantity;
+}
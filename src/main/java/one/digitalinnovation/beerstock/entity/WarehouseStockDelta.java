@@ -0,0 +1,39 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+
+// alteração de estoque feita num depósito, ou numa faixa de uma cerveja em modo hot, que ainda não foi somada
+// à quantidade total da cerveja
+// só inserida na transação da alteração e apagada quando a soma chega à cerveja, então as lojas não disputam nenhuma linha
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarehouseStockDelta {
+
+    // como no livro de estoque, a sequência reserva 50 ids por consulta
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "warehouse_stock_delta_sequence")
+    @SequenceGenerator(name = "warehouse_stock_delta_sequence", sequenceName = "warehouse_stock_delta_sequence", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long beerId;
+
+    // positivo quando o estoque sobe, negativo quando desce
+    @Column(nullable = false)
+    private int delta;
+
+    // alteração de uma faixa do modo hot: entra no total, mas não é estoque de nenhum depósito
+    @Column(nullable = false)
+    private boolean hot;
+}
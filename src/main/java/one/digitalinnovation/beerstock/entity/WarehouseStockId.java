@@ -0,0 +1,18 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// chave do estoque de uma cerveja num depósito
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarehouseStockId implements Serializable {
+
+    private Long beerId;
+
+    private Long warehouseId;
+}
@@ -0,0 +1,16 @@
+package one.digitalinnovation.beerstock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum BeerCreationStatus {
+
+    CREATED("Created"),
+    DUPLICATED("Duplicated"),
+    INVALID("Invalid"),
+    FAILED("Failed");
+
+    private final String description;
+}
@@ -0,0 +1,17 @@
+package one.digitalinnovation.beerstock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockLedgerEntryType {
+
+    CREATED("Created"),
+    INCREMENTED("Incremented"),
+    DECREMENTED("Decremented"),
+    MOVED("Moved"),
+    DELETED("Deleted");
+
+    private final String description;
+}
@@ -0,0 +1,17 @@
+package one.digitalinnovation.beerstock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockMovementStatus {
+
+    APPLIED("Applied"),
+    REJECTED("Rejected"),
+    NOT_FOUND("Not found"),
+    INVALID("Invalid"),
+    FAILED("Failed");
+
+    private final String description;
+}
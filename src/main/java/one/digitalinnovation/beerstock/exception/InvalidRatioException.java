@@ -0,0 +1,12 @@
+package one.digitalinnovation.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidRatioException extends Exception {
+
+    public InvalidRatioException(double ratio) {
+        super(String.format("Ratio %s is not valid, it must be between 0 and 1.", ratio));
+    }
+}
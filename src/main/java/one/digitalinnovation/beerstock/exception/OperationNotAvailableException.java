@@ -0,0 +1,12 @@
+package one.digitalinnovation.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_IMPLEMENTED)
+public class OperationNotAvailableException extends Exception {
+
+    public OperationNotAvailableException(String operation) {
+        super(String.format("Operation %s needs the database and is not available with the journal profile.", operation));
+    }
+}
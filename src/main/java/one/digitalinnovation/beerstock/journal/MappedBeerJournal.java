@@ -0,0 +1,269 @@
+package one.digitalinnovation.beerstock.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// diário só de acréscimos, gravado em segmentos de tamanho fixo mapeados em memória
+// cada registro é o tamanho do conteúdo, o CRC32C do tipo e do conteúdo, o tipo e o conteúdo;
+// um tamanho zero marca o fim dos registros, já que o segmento é criado com zeros
+public class MappedBeerJournal implements Closeable {
+
+    public static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Byte.BYTES;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("beers-(\\d+)\\.journal");
+
+    // recebe cada registro válido na leitura do diário, com o conteúdo só para leitura
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(byte type, ByteBuffer payload);
+    }
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    private MappedByteBuffer current;
+
+    private long segment;
+
+    // próxima posição livre dentro do segmento atual
+    private int offset;
+
+    // bytes gravados somando todos os segmentos desde o início do segmento em que o diário foi aberto,
+    // onde o segmento atual começa e quantos já estão no disco
+    private volatile long written;
+
+    private long currentStart;
+
+    private volatile long forced;
+
+    private int replayedRecords;
+
+    private boolean truncated;
+
+    // lê todos os segmentos em ordem, entregando cada registro ao handler, e continua as gravações no fim do último
+    public MappedBeerJournal(Path directory, int segmentSize, RecordHandler handler) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        SortedMap<Long, Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            segment = 1;
+            current = map(segment, segmentSize);
+            return;
+        }
+        long lastSegment = segments.lastKey();
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            boolean last = entry.getKey() == lastSegment;
+            MappedByteBuffer buffer = last ? map(entry.getKey(), Math.max(segmentSize, (int) Files.size(entry.getValue())))
+                    : map(entry.getKey(), (int) Files.size(entry.getValue()));
+            int end = replay(buffer, handler);
+            if (end < 0) {
+                int corruptedAt = -end - 1;
+                // só o fim do último segmento pode ter um registro que não terminou de ser gravado
+                if (!last) {
+                    throw new IOException(String.format("Corrupted record in journal segment %s at offset %d", entry.getValue(), corruptedAt));
+                }
+                // apaga o que sobrou da gravação interrompida, para que um registro antigo não reapareça depois dos novos
+                byte[] zeros = new byte[4096];
+                for (int position = corruptedAt; position < buffer.capacity(); position += zeros.length) {
+                    buffer.put(position, zeros, 0, Math.min(zeros.length, buffer.capacity() - position));
+                }
+                buffer.force();
+                truncated = true;
+                end = corruptedAt;
+            }
+            if (last) {
+                segment = entry.getKey();
+                current = buffer;
+                offset = end;
+                // as posições contam a partir do começo deste segmento, então o primeiro sync cobre os registros novos
+                written = end;
+            }
+        }
+    }
+
+    // segmentos que estão na pasta, do mais antigo para o mais novo
+    public static SortedMap<Long, Path> segments(Path directory) throws IOException {
+        SortedMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        return segments;
+    }
+
+    // grava o registro e devolve a posição que precisa estar no disco para ele ser durável
+    public long append(byte type, ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException(String.format("Journal record of %d bytes does not fit a segment of %d bytes", length, segmentSize));
+        }
+        appendLock.lock();
+        try {
+            if (offset + HEADER_SIZE + length > segmentSize) {
+                nextSegment();
+            }
+            current.putInt(offset + Integer.BYTES, checksum(type, payload));
+            current.put(offset + 2 * Integer.BYTES, type);
+            current.put(offset + HEADER_SIZE, payload, payload.position(), length);
+            // o tamanho por último: até aqui a leitura enxerga o fim dos registros neste ponto
+            current.putInt(offset, length);
+            offset += HEADER_SIZE + length;
+            written += HEADER_SIZE + length;
+            return written;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // garante no disco tudo até a posição informada
+    // quem chega enquanto outra thread sincroniza espera por ela, e um único force costuma cobrir os registros de várias threads
+    // as travas são ReentrantLock, e não synchronized, para não prender a thread de plataforma de uma thread virtual
+    // durante o force
+    public void sync(long position) {
+        if (forced >= position) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            if (forced >= position) {
+                return;
+            }
+            MappedByteBuffer buffer;
+            long start;
+            long target;
+            appendLock.lock();
+            try {
+                buffer = current;
+                start = currentStart;
+                target = written;
+            } finally {
+                appendLock.unlock();
+            }
+            // o que ficou nos segmentos anteriores já foi para o disco na troca de segmento
+            int from = (int) (Math.max(forced, start) - start);
+            force(buffer, from, (int) (target - start) - from);
+            forced = target;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    // fecha o segmento atual e começa o próximo, devolvendo o número dele; usado antes da compactação
+    public long nextSegment() throws IOException {
+        appendLock.lock();
+        try {
+            current.force();
+            segment++;
+            current = map(segment, segmentSize);
+            currentStart = written;
+            offset = 0;
+            return segment;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // apaga os segmentos anteriores ao informado, depois que os registros dele já resumem os apagados
+    public void deleteBefore(long firstKept) throws IOException {
+        for (Path file : segments(directory).headMap(firstKept).values()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public int getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    // a leitura encontrou e descartou o fim de uma gravação interrompida
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // as duas travas na ordem do sync, para que um force em andamento não volte forced para trás
+    @Override
+    public void close() {
+        forceLock.lock();
+        appendLock.lock();
+        try {
+            current.force();
+            forced = written;
+        } finally {
+            appendLock.unlock();
+            forceLock.unlock();
+        }
+    }
+
+    // devolve onde os registros terminam, ou -(posição + 1) do primeiro registro inválido
+    private int replay(MappedByteBuffer buffer, RecordHandler handler) {
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                return position;
+            }
+            if (length < 0 || length > buffer.capacity() - position - HEADER_SIZE) {
+                return -position - 1;
+            }
+            byte type = buffer.get(position + 2 * Integer.BYTES);
+            ByteBuffer payload = buffer.slice(position + HEADER_SIZE, length);
+            if (buffer.getInt(position + Integer.BYTES) != checksum(type, payload)) {
+                return -position - 1;
+            }
+            handler.accept(type, payload.asReadOnlyBuffer());
+            replayedRecords++;
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    // separado para que os testes vejam o trecho enviado ao disco
+    void force(MappedByteBuffer buffer, int index, int length) {
+        buffer.force(index, length);
+    }
+
+    private static int checksum(byte type, ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    // o canal pode ser fechado logo depois, o mapeamento continua válido
+    private MappedByteBuffer map(long number, int size) throws IOException {
+        Path file = directory.resolve(String.format("beers-%019d.journal", number));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// mede o tempo de cada chamada ao BeerRepository, inclusive os métodos herdados do JpaRepository
+// a tag method tem só os nomes dos métodos do repositório, então o número de séries é fixo
+@Aspect
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class BeerRepositoryMetrics {
+
+    public static final String REPOSITORY_CALLS = "beerstock.repository";
+
+    private final MeterRegistry registry;
+
+    @Around("this(one.digitalinnovation.beerstock.repository.BeerRepository)")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable throwable) {
+            exception = throwable.getClass().getSimpleName();
+            throw throwable;
+        } finally {
+            sample.stop(Timer.builder(REPOSITORY_CALLS)
+                    .description("Calls to the beer repository")
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.beerstock.config.MetricsProperties;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// conta os erros de negócio e as operações de estoque do BeerService
+// só as cervejas configuradas em beerstock.metrics.tracked-beer-ids ganham tag própria, para não criar uma série por cerveja
+@Aspect
+@Component
+public class BeerServiceMetrics {
+
+    public static final String ERRORS = "beerstock.errors";
+    public static final String STOCK_OPERATIONS = "beerstock.stock.operations";
+    public static final String BEER_TAG = "beer";
+    public static final String OTHER_BEERS = "other";
+
+    private final MeterRegistry registry;
+    private final MetricsProperties metricsProperties;
+    private final Map<Class<?>, Counter> errorCounters;
+
+    @Autowired
+    public BeerServiceMetrics(MeterRegistry registry, MetricsProperties metricsProperties) {
+        this.registry = registry;
+        this.metricsProperties = metricsProperties;
+        // registrados já no início para que o Prometheus mostre zero em vez de não mostrar nada
+        this.errorCounters = Arrays.asList(BeerNotFoundException.class, BeerAlreadyRegisteredException.class, BeerStockExceededException.class)
+                .stream()
+                .collect(Collectors.toMap(Function.identity(), exception -> Counter.builder(ERRORS)
+                        .description("Business errors thrown by the beer service")
+                        .tag("exception", exception.getSimpleName())
+                        .register(registry)));
+    }
+
+    @AfterThrowing(pointcut = "execution(public * one.digitalinnovation.beerstock.service.BeerService.*(..))", throwing = "exception")
+    public void countError(Exception exception) {
+        Counter counter = errorCounters.get(exception.getClass());
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    @AfterReturning("(execution(* one.digitalinnovation.beerstock.service.BeerService.increment(..))"
+            + " || execution(* one.digitalinnovation.beerstock.service.BeerService.decrement(..))) && args(id, ..)")
+    public void countStockOperation(JoinPoint joinPoint, Long id) {
+        registry.counter(STOCK_OPERATIONS, "operation", joinPoint.getSignature().getName(), BEER_TAG, beerTag(id))
+                .increment();
+    }
+
+    private String beerTag(Long id) {
+        return metricsProperties.getTrackedBeerIds().contains(id) ? String.valueOf(id) : OTHER_BEERS;
+    }
+}
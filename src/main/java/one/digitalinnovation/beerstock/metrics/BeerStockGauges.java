@@ -0,0 +1,58 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// total de unidades em estoque por tipo de cerveja
+// o valor é somado no banco de tempos em tempos, assim cada leitura do Prometheus não vira uma consulta
+@Component
+@Profile("!journal")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class BeerStockGauges implements MeterBinder {
+
+    public static final String STOCK_UNITS = "beerstock.stock.units";
+
+    private final BeerRepository beerRepository;
+    private final Map<BeerType, AtomicLong> unitsByType = newUnitsByType();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (BeerType type : BeerType.values()) {
+            Gauge.builder(STOCK_UNITS, unitsByType.get(type), AtomicLong::get)
+                    .description("Units in stock per beer type")
+                    .baseUnit("units")
+                    .tag("type", type.name())
+                    .register(registry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${beerstock.metrics.stock-refresh-interval:30000}")
+    public void refresh() {
+        Map<BeerType, Long> totals = new EnumMap<>(BeerType.class);
+        beerRepository.findStockByType().forEach(stock -> totals.put(stock.getType(), stock.getQuantity()));
+        // tipos sem nenhuma cerveja voltam para zero
+        for (BeerType type : BeerType.values()) {
+            unitsByType.get(type).set(totals.getOrDefault(type, 0L));
+        }
+    }
+
+    private static Map<BeerType, AtomicLong> newUnitsByType() {
+        Map<BeerType, AtomicLong> unitsByType = new EnumMap<>(BeerType.class);
+        for (BeerType type : BeerType.values()) {
+            unitsByType.put(type, new AtomicLong());
+        }
+        return unitsByType;
+    }
+}
@@ -0,0 +1,62 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// métricas das operações de estoque, publicadas no actuator
+// a taxa de conflito é conflicts / calls e o número de tentativas extras é retries
+@Component("beerStockMetrics")
+public class BeerStockMetrics implements MeterBinder, RetryListener {
+
+    private final LongAdder decrementCalls = new LongAdder();
+    private final LongAdder decrementConflicts = new LongAdder();
+    private final LongAdder decrementRetries = new LongAdder();
+    private final LongAdder decrementExhausted = new LongAdder();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("beerstock.stock.decrement.calls", decrementCalls, LongAdder::sum)
+                .description("Decrement operations started")
+                .register(registry);
+        FunctionCounter.builder("beerstock.stock.decrement.conflicts", decrementConflicts, LongAdder::sum)
+                .description("Decrement attempts that failed with an optimistic lock conflict")
+                .register(registry);
+        FunctionCounter.builder("beerstock.stock.decrement.retries", decrementRetries, LongAdder::sum)
+                .description("Decrement attempts repeated after a conflict")
+                .register(registry);
+        FunctionCounter.builder("beerstock.stock.decrement.exhausted", decrementExhausted, LongAdder::sum)
+                .description("Decrement operations that gave up after the last retry")
+                .register(registry);
+    }
+
+    @Override
+    public <T, E extends Throwable> boolean open(RetryContext context, RetryCallback<T, E> callback) {
+        decrementCalls.increment();
+        return true;
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof OptimisticLockingFailureException) {
+            decrementConflicts.increment();
+        }
+    }
+
+    @Override
+    public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof OptimisticLockingFailureException) {
+            decrementExhausted.increment();
+        }
+        // a última tentativa que falhou não foi repetida
+        int failedAttempts = context.getRetryCount();
+        decrementRetries.add(throwable == null ? failedAttempts : failedAttempts - 1);
+    }
+}
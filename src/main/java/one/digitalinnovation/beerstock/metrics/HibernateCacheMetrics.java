@@ -0,0 +1,73 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+// acertos e faltas do cache de segundo nível e do cache de consultas do Hibernate, lidos das estatísticas da sessão
+// os nomes e as tags são os mesmos do módulo hibernate-micrometer, então os painéis não mudam se ele for usado no lugar
+@Component
+@Profile("!journal")
+public class HibernateCacheMetrics implements MeterBinder {
+
+    private static final String ENTITY_MANAGER_FACTORY = "entityManagerFactory";
+
+    private final Statistics statistics;
+
+    @Autowired
+    public HibernateCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .filter(this::isDomainRegion)
+                .forEach(region -> bindRegion(registry, region));
+        FunctionCounter.builder("hibernate.cache.query.requests", statistics, Statistics::getQueryCacheHitCount)
+                .description("The number of query cache hits")
+                .tags(ENTITY_MANAGER_FACTORY, ENTITY_MANAGER_FACTORY, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("hibernate.cache.query.requests", statistics, Statistics::getQueryCacheMissCount)
+                .description("The number of query cache misses")
+                .tags(ENTITY_MANAGER_FACTORY, ENTITY_MANAGER_FACTORY, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("hibernate.cache.query.puts", statistics, Statistics::getQueryCachePutCount)
+                .description("The number of cacheable queries put in cache")
+                .tags(ENTITY_MANAGER_FACTORY, ENTITY_MANAGER_FACTORY)
+                .register(registry);
+    }
+
+    // as estatísticas da região são lidas a cada coleta, porque o clear das estatísticas troca o objeto da região
+    private void bindRegion(MeterRegistry registry, String region) {
+        FunctionCounter.builder("hibernate.second.level.cache.requests", statistics, s -> s.getDomainDataRegionStatistics(region).getHitCount())
+                .description("The number of cacheable entities/collections successfully retrieved from the cache")
+                .tags(ENTITY_MANAGER_FACTORY, ENTITY_MANAGER_FACTORY, "region", region, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("hibernate.second.level.cache.requests", statistics, s -> s.getDomainDataRegionStatistics(region).getMissCount())
+                .description("The number of cacheable entities/collections not found in the cache and loaded from the database")
+                .tags(ENTITY_MANAGER_FACTORY, ENTITY_MANAGER_FACTORY, "region", region, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("hibernate.second.level.cache.puts", statistics, s -> s.getDomainDataRegionStatistics(region).getPutCount())
+                .description("The number of cacheable entities/collections put in the cache")
+                .tags(ENTITY_MANAGER_FACTORY, ENTITY_MANAGER_FACTORY, "region", region)
+                .register(registry);
+    }
+
+    // as regiões de consultas também aparecem na lista, mas não têm estatísticas de entidade
+    private boolean isDomainRegion(String region) {
+        try {
+            return statistics.getDomainDataRegionStatistics(region) != null;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
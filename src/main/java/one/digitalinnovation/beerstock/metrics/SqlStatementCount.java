@@ -0,0 +1,60 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// comandos SQL preparados pelo Hibernate dentro de uma requisição, ou de um trecho medido nos testes
+// inserts em lote contam uma vez por lote, já que o comando é preparado uma vez só
+// as chamadas da sequence de ids entram em others, porque acontecem só a cada bloco de ids reservados
+@Getter
+public class SqlStatementCount {
+
+    private int selects;
+    private int inserts;
+    private int updates;
+    private int deletes;
+    private int others;
+
+    // quantas vezes cada select foi preparado, o mesmo select repetido muitas vezes indica um N+1
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Integer> selectsBySql = new HashMap<>();
+
+    void record(String sql) {
+        String statement = sql.trim().toLowerCase();
+        if (statement.startsWith("select") || statement.startsWith("with")) {
+            selects++;
+            selectsBySql.merge(statement, 1, Integer::sum);
+        } else if (statement.startsWith("insert")) {
+            inserts++;
+        } else if (statement.startsWith("update")) {
+            updates++;
+        } else if (statement.startsWith("delete")) {
+            deletes++;
+        } else {
+            others++;
+        }
+    }
+
+    public int getTotal() {
+        return selects + inserts + updates + deletes + others;
+    }
+
+    // selects preparados ao menos threshold vezes, com o número de repetições
+    public Map<String, Integer> getRepeatedSelects(int threshold) {
+        return Collections.unmodifiableMap(selectsBySql.entrySet()
+                .stream()
+                .filter(entry -> entry.getValue() >= threshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d statements (%d selects, %d inserts, %d updates, %d deletes, %d others)",
+                getTotal(), selects, inserts, updates, deletes, others);
+    }
+}
@@ -0,0 +1,34 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// recebe do Hibernate cada comando SQL antes de ser preparado e soma na contagem aberta pela thread atual
+// configurado em spring.jpa.properties.hibernate.session_factory.statement_inspector
+// comandos de threads sem contagem aberta são ignorados
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<SqlStatementCount> CURRENT = new ThreadLocal<>();
+
+    // abre uma contagem nova para a thread atual, descartando a anterior
+    public static SqlStatementCount start() {
+        SqlStatementCount count = new SqlStatementCount();
+        CURRENT.set(count);
+        return count;
+    }
+
+    // fecha a contagem da thread atual e devolve o que foi contado, ou null se nenhuma estava aberta
+    public static SqlStatementCount stop() {
+        SqlStatementCount count = CURRENT.get();
+        CURRENT.remove();
+        return count;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        SqlStatementCount count = CURRENT.get();
+        if (count != null) {
+            count.record(sql);
+        }
+        return sql;
+    }
+}
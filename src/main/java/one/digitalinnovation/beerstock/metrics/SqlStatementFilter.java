@@ -0,0 +1,117 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.config.MetricsProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+// conta os comandos SQL de cada requisição, devolve o total no cabeçalho X-SQL-Statement-Count
+// e publica a distribuição por rota em beerstock.sql.statements
+@Slf4j
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class SqlStatementFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENT_COUNT_HEADER = "X-SQL-Statement-Count";
+    public static final String SQL_STATEMENTS = "beerstock.sql.statements";
+
+    private final MeterRegistry registry;
+    private final MetricsProperties metricsProperties;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatementCount count = SqlStatementCounter.start();
+        try {
+            StatementCountResponse countingResponse = new StatementCountResponse(response, count);
+            filterChain.doFilter(request, countingResponse);
+            // respostas sem corpo ainda não gravaram o cabeçalho
+            countingResponse.writeHeader();
+        } finally {
+            SqlStatementCounter.stop();
+            record(request, count);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatementCount count) {
+        // a rota com as variáveis ({id}) no lugar dos valores, para não criar uma série por cerveja
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = route == null ? "UNKNOWN" : route.toString();
+        DistributionSummary.builder(SQL_STATEMENTS)
+                .description("SQL statements prepared per HTTP request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(count.getTotal());
+
+        Map<String, Integer> repeatedSelects = count.getRepeatedSelects(metricsProperties.getRepeatedSelectThreshold());
+        if (!repeatedSelects.isEmpty()) {
+            log.warn("Possible N+1 in {} {}: {}, repeated selects {}", request.getMethod(), uri, count, repeatedSelects);
+        }
+    }
+
+    // o cabeçalho precisa ser gravado antes do corpo começar a ser enviado, que é quando os comandos já rodaram
+    private static class StatementCountResponse extends HttpServletResponseWrapper {
+
+        private final SqlStatementCount count;
+        private boolean headerWritten;
+
+        StatementCountResponse(HttpServletResponse response, SqlStatementCount count) {
+            super(response);
+            this.count = count;
+        }
+
+        private void writeHeader() {
+            if (!headerWritten && !isCommitted()) {
+                setHeader(STATEMENT_COUNT_HEADER, String.valueOf(count.getTotal()));
+            }
+            headerWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+    }
+}
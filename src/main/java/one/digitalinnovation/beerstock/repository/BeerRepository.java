@@ -1,13 +1,122 @@
 package one.digitalinnovation.beerstock.repository;
 
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerTypeStockDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
 import one.digitalinnovation.beerstock.entity.Beer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 // essa classe conversa com o banco de dados
-public interface BeerRepository extends JpaRepository<Beer, Long> {
+public interface BeerRepository extends JpaRepository<Beer, Long>, BeerSearchRepository {
 
     // busca todas as cervejas pelo nome, o 'Optional' ajuda a fazer validações
+    // o resultado fica no cache de consultas, que é descartado quando a tabela beer muda
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = Beer.BY_NAME_CACHE_REGION)
+    })
     Optional<Beer> findByName(String name);
+
+    // busca de uma vez todas as cervejas com algum dos nomes informados
+    List<Beer> findByNameIn(Collection<String> names);
+
+    // paginação por chave: continua a partir do último id entregue, sem o OFFSET que fica lento nas páginas finais
+    List<Beer> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // percorre todas as cervejas sem carregar a lista inteira, precisa ser usado dentro de uma transação e fechado no final
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM Beer b ORDER BY b.id")
+    Stream<Beer> streamAllOrderById();
+
+    // cervejas com quantity / max até a proporção informada, lidas como projeção sem carregar as entidades
+    @Query("SELECT new one.digitalinnovation.beerstock.dto.LowStockBeerDTO(b.id, b.name, b.brand, b.type, b.quantity, b.max, b.max - b.quantity) "
+            + "FROM Beer b WHERE b.quantity <= CAST(b.max AS double) * :ratio ORDER BY b.quantity, b.id")
+    List<LowStockBeerDTO> findLowStock(@Param("ratio") double ratio);
+
+    // quanto repor de cada marca, somado no banco e com as marcas que mais precisam de reposição primeiro
+    @Query("SELECT new one.digitalinnovation.beerstock.dto.BrandReorderDTO(b.brand, COUNT(b), SUM(b.max - b.quantity)) "
+            + "FROM Beer b WHERE b.quantity < b.max GROUP BY b.brand ORDER BY SUM(b.max - b.quantity) DESC, b.brand")
+    List<BrandReorderDTO> findReorderReport();
+
+    // total de unidades em estoque de cada tipo, tipos sem cervejas não aparecem
+    @Query("SELECT new one.digitalinnovation.beerstock.dto.BeerTypeStockDTO(b.type, SUM(b.quantity)) FROM Beer b GROUP BY b.type")
+    List<BeerTypeStockDTO> findStockByType();
+
+    // lê a cerveja direto do banco, sem o cache de segundo nível, que só é limpo depois do commit de um UPDATE em massa
+    @Query("SELECT b FROM Beer b WHERE b.id = :id")
+    Optional<Beer> findCurrentById(@Param("id") Long id);
+
+    // lê a cerveja direto do banco como projeção, que nunca vem da sessão da transação em andamento
+    // usado pelo buffer de incrementos, que guarda a cerveja entre requisições e precisa da quantidade atual a cada leitura
+    @Query("SELECT new one.digitalinnovation.beerstock.dto.BeerDTO(b.id, b.name, b.brand, b.max, b.quantity, b.type) FROM Beer b WHERE b.id = :id")
+    Optional<BeerDTO> findStockById(@Param("id") Long id);
+
+    // lê a cerveja direto do banco travando a linha até o fim da transação, usado ao dividir o estoque em faixas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Beer b WHERE b.id = :id")
+    Optional<Beer> findForUpdateById(@Param("id") Long id);
+
+    // incrementa o estoque em um único UPDATE condicional, retorna 0 quando a cerveja não existe ou o máximo seria excedido
+    // o máximo vale para o total, que inclui as alterações dos depósitos que ainda não chegaram à cerveja
+    // a versão também avança para que o decremento otimista perceba a alteração
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Beer b SET b.quantity = b.quantity + :quantity, b.version = b.version + 1 WHERE b.id = :id "
+            + "AND b.quantity + :quantity + (SELECT COALESCE(SUM(d.delta), 0) FROM WarehouseStockDelta d WHERE d.beerId = :id) <= b.max")
+    int incrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // soma ao estoque total as alterações já gravadas nos depósitos, sem conferir o máximo, que os incrementos dos
+    // depósitos já conferiram contra o total
+    // a versão avança como nos outros UPDATEs de estoque
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Beer b SET b.quantity = b.quantity + :delta, b.version = b.version + 1 WHERE b.id = :id")
+    int addQuantity(@Param("id") Long id, @Param("delta") int delta);
+
+    // avança só a versão, ao gravar uma reserva, para que o decremento otimista que leu o estoque antes dela
+    // perceba a alteração e confira de novo o estoque disponível
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Beer b SET b.version = b.version + 1 WHERE b.id = :id")
+    int incrementVersion(@Param("id") Long id);
+
+    // baixa o estoque de uma reserva confirmada; a reserva já garante a quantidade, mas o UPDATE continua condicional
+    // e, como o decremento, nunca tira as unidades dos depósitos já somadas à cerveja
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Beer b SET b.quantity = b.quantity - :quantity, b.version = b.version + 1 WHERE b.id = :id "
+            + "AND b.quantity - :quantity >= (SELECT COALESCE(SUM(s.quantity), 0) FROM WarehouseStock s WHERE s.beerId = :id) "
+            + "- (SELECT COALESCE(SUM(d.delta), 0) FROM WarehouseStockDelta d WHERE d.beerId = :id AND d.hot = false)")
+    int decrementReservedQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // decrementa o estoque só se a versão lida ainda for a atual, retorna 0 quando outra requisição alterou a cerveja antes
+    // ou quando tiraria unidades reservadas ou que estão nos depósitos: as reservas saem do estoque fora dos depósitos,
+    // então o piso é a soma das duas
+    // as unidades dos depósitos já somadas à cerveja são as linhas dos depósitos menos as alterações pendentes deles,
+    // sem as das faixas do modo hot
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Beer b SET b.quantity = b.quantity - :quantity, b.version = b.version + 1 WHERE b.id = :id AND b.version = :version "
+            + "AND b.quantity - :quantity >= (SELECT COALESCE(SUM(r.quantity), 0) FROM StockReservation r WHERE r.beerId = :id AND r.expiresAt > :now) "
+            + "+ (SELECT COALESCE(SUM(s.quantity), 0) FROM WarehouseStock s WHERE s.beerId = :id) "
+            + "- (SELECT COALESCE(SUM(d.delta), 0) FROM WarehouseStockDelta d WHERE d.beerId = :id AND d.hot = false)")
+    int decrementQuantity(@Param("id") Long id, @Param("quantity") int quantity, @Param("version") Long version, @Param("now") Instant now);
 }
@@ -0,0 +1,13 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+
+import java.util.List;
+
+// busca com filtros opcionais, implementada à mão para que só os filtros informados entrem no WHERE
+public interface BeerSearchRepository {
+
+    // filtros nulos são ignorados, maxQuantity traz as cervejas com estoque menor ou igual ao informado
+    List<Beer> search(String brand, BeerType type, Integer maxQuantity, long afterId, int limit);
+}
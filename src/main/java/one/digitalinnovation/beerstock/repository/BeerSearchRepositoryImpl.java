@@ -0,0 +1,47 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+// o Spring Data junta essa implementação ao BeerRepository pelo sufixo Impl
+public class BeerSearchRepositoryImpl implements BeerSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Beer> search(String brand, BeerType type, Integer maxQuantity, long afterId, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Beer> query = builder.createQuery(Beer.class);
+        Root<Beer> beer = query.from(Beer.class);
+
+        // nada de "(:brand IS NULL OR ...)", que impede o banco de escolher o índice
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(builder.greaterThan(beer.get("id"), afterId));
+        if (brand != null) {
+            predicates.add(builder.equal(beer.get("brand"), brand));
+        }
+        if (type != null) {
+            predicates.add(builder.equal(beer.get("type"), type));
+        }
+        if (maxQuantity != null) {
+            predicates.add(builder.lessThanOrEqualTo(beer.get("quantity"), maxQuantity));
+        }
+
+        query.select(beer)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(builder.asc(beer.get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,39 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.BeerStockSlot;
+import one.digitalinnovation.beerstock.entity.BeerStockSlotId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.LockModeType;
+import java.util.List;
+
+public interface BeerStockSlotRepository extends JpaRepository<BeerStockSlot, BeerStockSlotId> {
+
+    // trava todas as faixas da cerveja, sempre na mesma ordem, para redistribuir o estoque entre elas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BeerStockSlot s WHERE s.beerId = :beerId ORDER BY s.slot")
+    List<BeerStockSlot> findByBeerIdForUpdate(@Param("beerId") Long beerId);
+
+    @Query("SELECT COALESCE(SUM(s.quantity), 0) FROM BeerStockSlot s WHERE s.beerId = :beerId")
+    long sumQuantity(@Param("beerId") Long beerId);
+
+    // incrementa uma faixa só se ela continuar dentro do seu budget
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE BeerStockSlot s SET s.quantity = s.quantity + :quantity "
+            + "WHERE s.beerId = :beerId AND s.slot = :slot AND s.quantity + :quantity <= s.budget")
+    int incrementQuantity(@Param("beerId") Long beerId, @Param("slot") int slot, @Param("quantity") int quantity);
+
+    // decrementa uma faixa só se ela tiver a quantidade pedida
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE BeerStockSlot s SET s.quantity = s.quantity - :quantity "
+            + "WHERE s.beerId = :beerId AND s.slot = :slot AND s.quantity >= :quantity")
+    int decrementQuantity(@Param("beerId") Long beerId, @Param("slot") int slot, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("DELETE FROM BeerStockSlot s WHERE s.beerId = :beerId")
+    int deleteByBeerId(@Param("beerId") Long beerId);
+}
@@ -0,0 +1,328 @@
+package one.digitalinnovation.beerstock.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.config.JournalProperties;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.journal.MappedBeerJournal;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+// as operações do BeerRepository sem banco, ativas com o perfil journal
+// as cervejas ficam num índice em memória ordenado por id, e cada cadastro, alteração de estoque e exclusão
+// vira um registro no MappedBeerJournal; na subida o diário é relido para montar o índice de novo
+//
+// garantias:
+// - uma escrita só retorna depois que o registro dela está no disco, com um force cobrindo as escritas de várias threads
+// - as escritas são feitas uma por vez, então os incrementos e decrementos não precisam de versão para não se perder
+// - as leituras não travam; podem enxergar uma escrita que ainda está esperando o force do disco
+@Slf4j
+@Repository
+@Profile("journal")
+public class JournalBeerRepository implements InitializingBean, DisposableBean {
+
+    // cerveja inteira; também é o registro gravado na compactação
+    private static final byte BEER = 1;
+
+    // id e quantidade somada ao estoque, negativa nos decrementos
+    private static final byte QUANTITY = 2;
+
+    private static final byte DELETED = 3;
+
+    // próximo id a ser usado, para que a compactação não devolva ids de cervejas excluídas
+    private static final byte NEXT_ID = 4;
+
+    private final JournalProperties journalProperties;
+
+    // as cervejas do índice nunca são alteradas, cada escrita troca a cerveja por uma cópia
+    private final ConcurrentNavigableMap<Long, Beer> beersById = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentMap<String, Long> idsByName = new ConcurrentHashMap<>();
+
+    // as marcas se repetem entre as cervejas, então cada uma fica uma vez só na memória
+    private final ConcurrentMap<String, String> brands = new ConcurrentHashMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private long nextId = 1;
+
+    private MappedBeerJournal journal;
+
+    @Autowired
+    public JournalBeerRepository(JournalProperties journalProperties) {
+        this.journalProperties = journalProperties;
+    }
+
+    // relê o diário e, se ele tem mais registros do que cervejas, reescreve o estado atual num segmento novo
+    // sem apagar os antigos antes do force: uma queda no meio da compactação só repete estados que já estavam no diário
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        long start = System.nanoTime();
+        journal = new MappedBeerJournal(Paths.get(journalProperties.getDirectory()), journalProperties.getSegmentSize(), this::apply);
+        if (journal.isTruncated()) {
+            log.warn("Discarded an incomplete record at the end of the journal in {}", journal.getDirectory());
+        }
+        log.info("Replayed {} journal records into {} beers in {} ms", journal.getReplayedRecords(), beersById.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        if (journal.getReplayedRecords() > beersById.size() + 1) {
+            compact();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    public Optional<Beer> findById(Long id) {
+        return Optional.ofNullable(beersById.get(id));
+    }
+
+    public Optional<Beer> findByName(String name) {
+        Long id = idsByName.get(name);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    public List<Beer> findAll() {
+        return new ArrayList<>(beersById.values());
+    }
+
+    public long count() {
+        return beersById.size();
+    }
+
+    // paginação por chave: só os filtros informados são conferidos, a partir do id seguinte ao último entregue
+    public List<Beer> search(String brand, BeerType type, Integer maxQuantity, long afterId, int limit) {
+        List<Beer> beers = new ArrayList<>();
+        for (Beer beer : beersById.tailMap(afterId, false).values()) {
+            if ((brand == null || brand.equals(beer.getBrand()))
+                    && (type == null || type == beer.getType())
+                    && (maxQuantity == null || beer.getQuantity() <= maxQuantity)) {
+                beers.add(beer);
+                if (beers.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return beers;
+    }
+
+    // mesma regra e ordem da consulta do BeerRepository
+    public List<LowStockBeerDTO> findLowStock(double ratio) {
+        return beersById.values().stream()
+                .filter(beer -> beer.getQuantity() <= (double) beer.getMax() * ratio)
+                .sorted(Comparator.comparingInt(Beer::getQuantity).thenComparing(Beer::getId))
+                .map(beer -> new LowStockBeerDTO(beer.getId(), beer.getName(), beer.getBrand(), beer.getType(),
+                        beer.getQuantity(), beer.getMax(), beer.getMax() - beer.getQuantity()))
+                .collect(Collectors.toList());
+    }
+
+    public List<BrandReorderDTO> findReorderReport() {
+        Map<String, long[]> totalsByBrand = new TreeMap<>();
+        for (Beer beer : beersById.values()) {
+            if (beer.getQuantity() < beer.getMax()) {
+                long[] totals = totalsByBrand.computeIfAbsent(beer.getBrand(), brand -> new long[2]);
+                totals[0]++;
+                totals[1] += beer.getMax() - beer.getQuantity();
+            }
+        }
+        return totalsByBrand.entrySet().stream()
+                .map(entry -> new BrandReorderDTO(entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+                .sorted(Comparator.comparing(BrandReorderDTO::getQuantityToReorder).reversed().thenComparing(BrandReorderDTO::getBrand))
+                .collect(Collectors.toList());
+    }
+
+    // cadastra uma cerveja nova com o próximo id; o nome continua único como na tabela do JPA
+    public Beer save(Beer beer) {
+        Beer savedBeer;
+        long position;
+        writeLock.lock();
+        try {
+            if (idsByName.containsKey(beer.getName())) {
+                throw new DuplicateKeyException(String.format("Beer with name %s already registered.", beer.getName()));
+            }
+            savedBeer = new Beer(nextId, beer.getName(), brands.computeIfAbsent(beer.getBrand(), value -> value), beer.getMax(), beer.getQuantity(), beer.getType(), 0L);
+            position = append(BEER, encode(savedBeer));
+            put(savedBeer);
+            nextId++;
+        } finally {
+            writeLock.unlock();
+        }
+        journal.sync(position);
+        return savedBeer;
+    }
+
+    // retorna 0 quando a cerveja não existe ou o máximo seria excedido, como o UPDATE condicional do BeerRepository
+    public int incrementQuantity(Long id, int quantity) {
+        return changeQuantity(id, quantity);
+    }
+
+    // retorna 0 quando a cerveja não existe ou o estoque ficaria negativo
+    public int decrementQuantity(Long id, int quantity) {
+        return changeQuantity(id, -quantity);
+    }
+
+    public int deleteById(Long id) {
+        long position;
+        writeLock.lock();
+        try {
+            Beer beer = beersById.get(id);
+            if (beer == null) {
+                return 0;
+            }
+            position = append(DELETED, ByteBuffer.allocate(Long.BYTES).putLong(0, id));
+            remove(id);
+        } finally {
+            writeLock.unlock();
+        }
+        journal.sync(position);
+        return 1;
+    }
+
+    private int changeQuantity(Long id, int delta) {
+        long position;
+        writeLock.lock();
+        try {
+            Beer beer = beersById.get(id);
+            if (beer == null) {
+                return 0;
+            }
+            int quantity = beer.getQuantity() + delta;
+            if (quantity < 0 || quantity > beer.getMax()) {
+                return 0;
+            }
+            position = append(QUANTITY, ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(0, id).putInt(Long.BYTES, delta));
+            put(withQuantity(beer, quantity));
+        } finally {
+            writeLock.unlock();
+        }
+        journal.sync(position);
+        return 1;
+    }
+
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        writeLock.lock();
+        try {
+            long firstSegment = journal.nextSegment();
+            long position = append(NEXT_ID, ByteBuffer.allocate(Long.BYTES).putLong(0, nextId));
+            for (Beer beer : beersById.values()) {
+                position = append(BEER, encode(beer));
+            }
+            journal.sync(position);
+            journal.deleteBefore(firstSegment);
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Compacted the journal into {} beers in {} ms", beersById.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // aplica um registro lido do diário ao índice
+    private void apply(byte type, ByteBuffer payload) {
+        switch (type) {
+            case BEER:
+                Beer beer = decode(payload);
+                put(beer);
+                nextId = Math.max(nextId, beer.getId() + 1);
+                break;
+            case QUANTITY:
+                Beer changedBeer = beersById.get(payload.getLong(0));
+                if (changedBeer != null) {
+                    put(withQuantity(changedBeer, changedBeer.getQuantity() + payload.getInt(Long.BYTES)));
+                }
+                break;
+            case DELETED:
+                remove(payload.getLong(0));
+                break;
+            case NEXT_ID:
+                nextId = Math.max(nextId, payload.getLong(0));
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private long append(byte type, ByteBuffer payload) {
+        try {
+            return journal.append(type, payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void put(Beer beer) {
+        beersById.put(beer.getId(), beer);
+        idsByName.put(beer.getName(), beer.getId());
+    }
+
+    private void remove(Long id) {
+        Beer beer = beersById.remove(id);
+        if (beer != null) {
+            idsByName.remove(beer.getName());
+        }
+    }
+
+    // a versão avança a cada alteração de estoque, como nos UPDATEs do BeerRepository
+    private static Beer withQuantity(Beer beer, int quantity) {
+        return new Beer(beer.getId(), beer.getName(), beer.getBrand(), beer.getMax(), quantity, beer.getType(), beer.getVersion() + 1);
+    }
+
+    // id, versão, máximo, quantidade, tipo e os textos com o tamanho em bytes na frente
+    private static ByteBuffer encode(Beer beer) {
+        byte[] name = beer.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] brand = beer.getBrand().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(2 * Long.BYTES + 2 * Integer.BYTES + Byte.BYTES
+                + 2 * Short.BYTES + name.length + brand.length);
+        payload.putLong(beer.getId())
+                .putLong(beer.getVersion())
+                .putInt(beer.getMax())
+                .putInt(beer.getQuantity())
+                .put((byte) beer.getType().ordinal())
+                .putShort((short) name.length).put(name)
+                .putShort((short) brand.length).put(brand);
+        return payload.flip();
+    }
+
+    private Beer decode(ByteBuffer payload) {
+        long id = payload.getLong();
+        long version = payload.getLong();
+        int max = payload.getInt();
+        int quantity = payload.getInt();
+        BeerType type = BeerType.values()[payload.get()];
+        String name = readString(payload);
+        String brand = readString(payload);
+        return new Beer(id, name, brands.computeIfAbsent(brand, value -> value), max, quantity, type, version);
+    }
+
+    private static String readString(ByteBuffer payload) {
+        byte[] value = new byte[Short.toUnsignedInt(payload.getShort())];
+        payload.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,153 @@
+package one.digitalinnovation.beerstock.repository;
+
+import io.r2dbc.spi.Readable;
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+// as mesmas consultas do BeerRepository, sem bloquear: cada linha chega como um evento do Flux conforme é lida
+// a tabela é a do JPA, por isso as cervejas voltam como a entidade Beer
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveBeerRepository {
+
+    private static final String SELECT_BEER = "SELECT id, name, brand, max, quantity, type, version FROM beer";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<Beer> findByName(String name) {
+        return databaseClient.sql(SELECT_BEER + " WHERE name = :name")
+                .bind("name", name)
+                .map(ReactiveBeerRepository::toBeer)
+                .one();
+    }
+
+    public Mono<Beer> findById(Long id) {
+        return databaseClient.sql(SELECT_BEER + " WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveBeerRepository::toBeer)
+                .one();
+    }
+
+    // paginação por chave, como no findByIdGreaterThanOrderByIdAsc
+    public Flux<Beer> findByIdGreaterThan(long afterId, int limit) {
+        return search(null, null, null, afterId, limit);
+    }
+
+    // só os filtros informados entram no WHERE, como no BeerSearchRepositoryImpl
+    public Flux<Beer> search(String brand, BeerType type, Integer maxQuantity, long afterId, int limit) {
+        StringJoiner where = new StringJoiner(" AND ", " WHERE ", "");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        where.add("id > :afterId");
+        parameters.put("afterId", afterId);
+        if (brand != null) {
+            where.add("brand = :brand");
+            parameters.put("brand", brand);
+        }
+        if (type != null) {
+            where.add("type = :type");
+            parameters.put("type", type.name());
+        }
+        if (maxQuantity != null) {
+            where.add("quantity <= :maxQuantity");
+            parameters.put("maxQuantity", maxQuantity);
+        }
+        parameters.put("limit", limit);
+        return databaseClient.sql(SELECT_BEER + where + " ORDER BY id LIMIT :limit")
+                .bindValues(parameters)
+                .map(ReactiveBeerRepository::toBeer)
+                .all();
+    }
+
+    // percorre todas as cervejas, o banco só é lido conforme o assinante pede mais linhas
+    public Flux<Beer> streamAllOrderById() {
+        return databaseClient.sql(SELECT_BEER + " ORDER BY id")
+                .map(ReactiveBeerRepository::toBeer)
+                .all();
+    }
+
+    public Flux<LowStockBeerDTO> findLowStock(double ratio) {
+        return databaseClient.sql("SELECT id, name, brand, type, quantity, max FROM beer "
+                        + "WHERE quantity <= CAST(max AS DOUBLE PRECISION) * :ratio ORDER BY quantity, id")
+                .bind("ratio", ratio)
+                .map(row -> new LowStockBeerDTO(row.get("id", Long.class), row.get("name", String.class),
+                        row.get("brand", String.class), BeerType.valueOf(row.get("type", String.class)),
+                        row.get("quantity", Integer.class), row.get("max", Integer.class),
+                        row.get("max", Integer.class) - row.get("quantity", Integer.class)))
+                .all();
+    }
+
+    public Flux<BrandReorderDTO> findReorderReport() {
+        return databaseClient.sql("SELECT brand, COUNT(*) AS beers, SUM(max - quantity) AS quantity_to_reorder FROM beer "
+                        + "WHERE quantity < max GROUP BY brand ORDER BY quantity_to_reorder DESC, brand")
+                .map(row -> new BrandReorderDTO(row.get("brand", String.class), row.get("beers", Long.class),
+                        row.get("quantity_to_reorder", Long.class)))
+                .all();
+    }
+
+    // reserva o id na mesma sequência do JPA; o nome único na tabela barra o cadastro duplicado concorrente
+    // são três comandos, então quem chama deve rodar numa transação para usar uma conexão só
+    public Mono<Beer> save(Beer beer) {
+        return databaseClient.sql("SELECT NEXT VALUE FOR beer_sequence")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(id -> databaseClient.sql("INSERT INTO beer (id, name, brand, max, quantity, type, version) "
+                                + "VALUES (:id, :name, :brand, :max, :quantity, :type, 0)")
+                        .bind("id", id)
+                        .bind("name", beer.getName())
+                        .bind("brand", beer.getBrand())
+                        .bind("max", beer.getMax())
+                        .bind("quantity", beer.getQuantity())
+                        .bind("type", beer.getType().name())
+                        .fetch()
+                        .rowsUpdated()
+                        .then(findById(id)));
+    }
+
+    // o mesmo UPDATE condicional do JPA, devolve 0 quando a cerveja não existe ou o máximo seria excedido
+    public Mono<Long> incrementQuantity(Long id, int quantity) {
+        return databaseClient.sql("UPDATE beer SET quantity = quantity + :quantity, version = version + 1 "
+                        + "WHERE id = :id AND quantity + :quantity "
+                        + "+ (SELECT COALESCE(SUM(d.delta), 0) FROM warehouse_stock_delta d WHERE d.beer_id = :id) <= max")
+                .bind("id", id)
+                .bind("quantity", quantity)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // o estoque é conferido no próprio UPDATE, então não existe conflito de versão para repetir como no JPA
+    public Mono<Long> decrementQuantity(Long id, int quantity) {
+        return databaseClient.sql("UPDATE beer SET quantity = quantity - :quantity, version = version + 1 "
+                        + "WHERE id = :id AND quantity >= :quantity")
+                .bind("id", id)
+                .bind("quantity", quantity)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> deleteById(Long id) {
+        return databaseClient.sql("DELETE FROM beer WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static Beer toBeer(Readable row) {
+        return new Beer(row.get("id", Long.class), row.get("name", String.class), row.get("brand", String.class),
+                row.get("max", Integer.class), row.get("quantity", Integer.class),
+                BeerType.valueOf(row.get("type", String.class)), row.get("version", Long.class));
+    }
+}
@@ -0,0 +1,7 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.StockIncrementCarryOver;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StockIncrementCarryOverRepository extends JpaRepository<StockIncrementCarryOver, Long> {
+}
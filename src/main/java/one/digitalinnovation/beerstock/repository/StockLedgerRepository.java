@@ -0,0 +1,33 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.dto.StockLedgerSumDTO;
+import one.digitalinnovation.beerstock.entity.StockLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface StockLedgerRepository extends JpaRepository<StockLedgerEntry, Long> {
+
+    // marca para a geração que vai até coveredUntil os movimentos confirmados que nenhuma geração somou, inclusive os
+    // anteriores à geração passada; o UPDATE trava as linhas marcadas, então a soma da geração lê o mesmo conjunto
+    @Modifying
+    @Query("UPDATE StockLedgerEntry e SET e.coveredUntil = :coveredUntil WHERE e.coveredUntil IS NULL AND e.occurredAt <= :coveredUntil")
+    int markCovered(@Param("coveredUntil") Instant coveredUntil);
+
+    // movimentos de cada cerveja marcados para a geração que vai até coveredUntil
+    @Query("SELECT new one.digitalinnovation.beerstock.dto.StockLedgerSumDTO(e.beerId, COUNT(e), SUM(e.delta)) "
+            + "FROM StockLedgerEntry e WHERE e.coveredUntil = :coveredUntil GROUP BY e.beerId")
+    List<StockLedgerSumDTO> sumByBeer(@Param("coveredUntil") Instant coveredUntil);
+
+    // movimentos de uma cerveja até upTo que o snapshot que vai até after não somou: os posteriores a ele e os que
+    // confirmaram atrasados, lidos pelo índice de cerveja e geração
+    @Query("SELECT new one.digitalinnovation.beerstock.dto.StockLedgerSumDTO(e.beerId, COUNT(e), SUM(e.delta)) "
+            + "FROM StockLedgerEntry e WHERE e.beerId = :beerId AND e.occurredAt <= :upTo "
+            + "AND (e.coveredUntil IS NULL OR e.coveredUntil > :after) GROUP BY e.beerId")
+    Optional<StockLedgerSumDTO> sumForBeer(@Param("beerId") Long beerId, @Param("after") Instant after, @Param("upTo") Instant upTo);
+}
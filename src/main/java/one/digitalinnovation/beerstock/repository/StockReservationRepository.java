@@ -0,0 +1,31 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // estoque preso nas reservas ainda no prazo, pelo índice de cerveja e vencimento
+    @Query("SELECT COALESCE(SUM(r.quantity), 0) FROM StockReservation r WHERE r.beerId = :beerId AND r.expiresAt > :now")
+    long sumActiveQuantity(@Param("beerId") Long beerId, @Param("now") Instant now);
+
+    // apaga a reserva só se ainda estiver no prazo, retorna 0 quando ela venceu ou já foi confirmada ou liberada
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.id = :id AND r.beerId = :beerId AND r.expiresAt > :now")
+    int deleteActive(@Param("id") Long id, @Param("beerId") Long beerId, @Param("now") Instant now);
+
+    // apaga as reservas vencidas entre as informadas, as que foram confirmadas ou liberadas antes já não estão lá
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.id IN :ids AND r.expiresAt <= :now")
+    int deleteExpired(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.beerId = :beerId")
+    int deleteByBeerId(@Param("beerId") Long beerId);
+}
@@ -0,0 +1,26 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.StockSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+
+    // o snapshot mais recente da cerveja que não passa do instante informado
+    Optional<StockSnapshot> findFirstByBeerIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(Long beerId, Instant at);
+
+    // até onde a última geração de snapshots chegou
+    @Query("SELECT MAX(s.coveredUntil) FROM StockSnapshot s")
+    Optional<Instant> findLastCoveredUntil();
+
+    // o snapshot mais recente de cada cerveja informada
+    @Query("SELECT s FROM StockSnapshot s WHERE s.beerId IN :beerIds "
+            + "AND s.coveredUntil = (SELECT MAX(l.coveredUntil) FROM StockSnapshot l WHERE l.beerId = s.beerId)")
+    List<StockSnapshot> findLatestByBeerIdIn(@Param("beerIds") Collection<Long> beerIds);
+}
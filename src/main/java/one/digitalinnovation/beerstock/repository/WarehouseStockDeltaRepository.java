@@ -0,0 +1,30 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.WarehouseStockDelta;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface WarehouseStockDeltaRepository extends JpaRepository<WarehouseStockDelta, Long> {
+
+    // as alterações pendentes mais antigas primeiro, em blocos
+    List<WarehouseStockDelta> findAllByOrderByIdAsc(Pageable pageable);
+
+    List<WarehouseStockDelta> findByBeerId(Long beerId);
+
+    @Query("SELECT SUM(d.delta) FROM WarehouseStockDelta d WHERE d.beerId = :beerId")
+    Optional<Long> sumByBeerId(@Param("beerId") Long beerId);
+
+    // só as alterações dos depósitos, sem as das faixas do modo hot
+    @Query("SELECT SUM(d.delta) FROM WarehouseStockDelta d WHERE d.beerId = :beerId AND d.hot = false")
+    Optional<Long> sumWarehouseByBeerId(@Param("beerId") Long beerId);
+
+    @Modifying
+    @Query("DELETE FROM WarehouseStockDelta d WHERE d.beerId = :beerId")
+    int deleteByBeerId(@Param("beerId") Long beerId);
+}
@@ -0,0 +1,43 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.WarehouseStock;
+import one.digitalinnovation.beerstock.entity.WarehouseStockId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.LockModeType;
+import java.util.List;
+
+public interface WarehouseStockRepository extends JpaRepository<WarehouseStock, WarehouseStockId> {
+
+    List<WarehouseStock> findByBeerIdOrderByWarehouseId(Long beerId);
+
+    // trava os depósitos da cerveja, sempre na mesma ordem, para somar o total sem cruzar com um decremento
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM WarehouseStock s WHERE s.beerId = :beerId ORDER BY s.warehouseId")
+    List<WarehouseStock> findByBeerIdForUpdate(@Param("beerId") Long beerId);
+
+    @Query("SELECT COALESCE(SUM(s.quantity), 0) FROM WarehouseStock s WHERE s.beerId = :beerId")
+    long sumQuantityByBeerId(@Param("beerId") Long beerId);
+
+    // incrementa o estoque do depósito num único UPDATE condicional, retorna 0 quando o depósito não tem a cerveja
+    // ou o máximo seria excedido
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE WarehouseStock s SET s.quantity = s.quantity + :quantity "
+            + "WHERE s.beerId = :beerId AND s.warehouseId = :warehouseId AND s.quantity + :quantity <= :max")
+    int incrementQuantity(@Param("beerId") Long beerId, @Param("warehouseId") Long warehouseId,
+                          @Param("quantity") int quantity, @Param("max") int max);
+
+    // decrementa o estoque do depósito só se ele tiver a quantidade pedida
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE WarehouseStock s SET s.quantity = s.quantity - :quantity "
+            + "WHERE s.beerId = :beerId AND s.warehouseId = :warehouseId AND s.quantity >= :quantity")
+    int decrementQuantity(@Param("beerId") Long beerId, @Param("warehouseId") Long warehouseId, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("DELETE FROM WarehouseStock s WHERE s.beerId = :beerId")
+    int deleteByBeerId(@Param("beerId") Long beerId);
+}
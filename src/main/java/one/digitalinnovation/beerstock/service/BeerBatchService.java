@@ -0,0 +1,233 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.buffer.StockIncrementBuffer;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.config.BatchProperties;
+import one.digitalinnovation.beerstock.dto.BeerCreationResultDTO;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementResultDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerCreationStatus;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+import one.digitalinnovation.beerstock.enums.StockMovementStatus;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// operações em lote: cada bloco de cervejas roda na sua própria transação,
+// então um bloco que falha não desfaz o que os outros já gravaram
+@Service
+@Profile("!journal")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class BeerBatchService {
+
+    private final BeerRepository beerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BatchProperties batchProperties;
+    private final Validator validator;
+    private final BeerCache beerCache;
+    private final StockIncrementBuffer stockIncrementBuffer;
+    private final StockLedgerService stockLedgerService;
+    private final StockIndex stockIndex;
+    private final HotStockService hotStockService;
+    private final StockReservationService stockReservationService;
+    private final WarehouseStockService warehouseStockService;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+
+    public List<BeerCreationResultDTO> createBeers(List<BeerDTO> beerDTOs) {
+        BeerCreationResultDTO[] results = new BeerCreationResultDTO[beerDTOs.size()];
+
+        // valida cada cerveja e descarta os nomes repetidos dentro da própria lista
+        Map<String, Integer> positionsByName = new LinkedHashMap<>();
+        for (int position = 0; position < beerDTOs.size(); position++) {
+            BeerDTO beerDTO = beerDTOs.get(position);
+            String invalidMessage = validate(beerDTO);
+            if (invalidMessage != null) {
+                results[position] = result(beerDTO, BeerCreationStatus.INVALID, null, invalidMessage);
+            } else if (positionsByName.containsKey(beerDTO.getName())) {
+                results[position] = result(beerDTO, BeerCreationStatus.DUPLICATED, null,
+                        String.format("Beer with name %s informed more than once.", beerDTO.getName()));
+            } else {
+                positionsByName.put(beerDTO.getName(), position);
+            }
+        }
+
+        // uma única consulta para descobrir quais nomes já estão cadastrados
+        if (!positionsByName.isEmpty()) {
+            for (Beer registeredBeer : beerRepository.findByNameIn(positionsByName.keySet())) {
+                Integer position = positionsByName.remove(registeredBeer.getName());
+                results[position] = result(beerDTOs.get(position), BeerCreationStatus.DUPLICATED, null,
+                        String.format("Beer with name %s already registered in the system.", registeredBeer.getName()));
+            }
+        }
+
+        List<Integer> positionsToCreate = new ArrayList<>(positionsByName.values());
+        int chunkSize = batchProperties.getChunkSize();
+        for (int from = 0; from < positionsToCreate.size(); from += chunkSize) {
+            List<Integer> chunk = positionsToCreate.subList(from, Math.min(from + chunkSize, positionsToCreate.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> createChunk(chunk, beerDTOs, results));
+            } catch (RuntimeException e) {
+                // o bloco foi desfeito, então nenhuma cerveja dele foi criada
+                chunk.forEach(position -> results[position] = result(beerDTOs.get(position), BeerCreationStatus.FAILED, null, e.getMessage()));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    public List<StockMovementResultDTO> applyMovements(List<StockMovementDTO> movements) {
+        StockMovementResultDTO[] results = new StockMovementResultDTO[movements.size()];
+
+        // agrupa as posições das movimentações por cerveja, mantendo a ordem de chegada
+        Map<Long, List<Integer>> positionsByBeer = new LinkedHashMap<>();
+        for (int position = 0; position < movements.size(); position++) {
+            StockMovementDTO movement = movements.get(position);
+            if (movement == null || movement.getId() == null || movement.getDelta() == null) {
+                results[position] = result(movement, StockMovementStatus.INVALID, null, "Beer id and delta are required.");
+            } else {
+                positionsByBeer.computeIfAbsent(movement.getId(), id -> new ArrayList<>()).add(position);
+            }
+        }
+
+        // as faixas de estoque são conferidas com os incrementos que ainda estavam no buffer já gravados
+        stockIncrementBuffer.flush();
+
+        // ids em ordem crescente para que os UPDATEs saiam sempre na mesma ordem e não gerem deadlock entre lotes
+        List<Long> beerIds = new ArrayList<>(positionsByBeer.keySet());
+        Collections.sort(beerIds);
+        int chunkSize = batchProperties.getChunkSize();
+        for (int from = 0; from < beerIds.size(); from += chunkSize) {
+            List<Long> chunk = beerIds.subList(from, Math.min(from + chunkSize, beerIds.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> applyChunk(chunk, positionsByBeer, movements, results));
+                // depois do commit, para que o buffer releia o estoque já alterado
+                chunk.forEach(stockIncrementBuffer::evict);
+            } catch (RuntimeException e) {
+                // o bloco foi desfeito, então nenhuma movimentação dele foi aplicada
+                chunk.forEach(id -> positionsByBeer.get(id).forEach(position ->
+                        results[position] = result(movements.get(position), StockMovementStatus.FAILED, null, e.getMessage())));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private void applyChunk(List<Long> chunk, Map<Long, List<Integer>> positionsByBeer,
+                            List<StockMovementDTO> movements, StockMovementResultDTO[] results) {
+        Map<Long, Beer> beersById = beerRepository.findAllById(chunk)
+                .stream()
+                .collect(Collectors.toMap(Beer::getId, Function.identity()));
+
+        for (Long id : chunk) {
+            Beer beer = beersById.get(id);
+            for (Integer position : positionsByBeer.get(id)) {
+                StockMovementDTO movement = movements.get(position);
+                if (beer == null) {
+                    results[position] = result(movement, StockMovementStatus.NOT_FOUND, null,
+                            String.format("Beer with id %s not found in the system.", id));
+                    continue;
+                }
+                // em modo hot a movimentação vai para uma das faixas e o total das faixas é o que volta
+                int hotQuantity = hotStockService.apply(id, movement.getDelta(), StockLedgerEntryType.MOVED);
+                if (hotQuantity == HotStockService.REJECTED) {
+                    results[position] = result(movement, StockMovementStatus.REJECTED, null,
+                            String.format("Movement of %s is out of the stock range 0..%s.", movement.getDelta(), beer.getMax()));
+                    continue;
+                }
+                if (hotQuantity != HotStockService.NOT_HOT) {
+                    results[position] = result(movement, StockMovementStatus.APPLIED, hotQuantity, null);
+                    continue;
+                }
+                int quantityAfterMovement = beer.getQuantity() + movement.getDelta();
+                // as saídas têm o mesmo piso do decremento, reservas mais unidades dos depósitos; as entradas só conferem o máximo
+                int minimum = movement.getDelta() < 0
+                        ? stockReservationService.reservedQuantity(id) + warehouseStockService.assignedQuantity(id)
+                        : 0;
+                if (quantityAfterMovement < minimum || quantityAfterMovement > beer.getMax()) {
+                    results[position] = result(movement, StockMovementStatus.REJECTED, beer.getQuantity(),
+                            String.format("Movement of %s is out of the stock range %s..%s.", movement.getDelta(), minimum, beer.getMax()));
+                    continue;
+                }
+                // só altera a entidade, o UPDATE sai em lote no commit com um único comando por cerveja
+                beer.setQuantity(quantityAfterMovement);
+                stockLedgerService.record(id, movement.getDelta(), StockLedgerEntryType.MOVED);
+                stockIndex.add(id, movement.getDelta());
+                beerCache.evict(beer.getName());
+                results[position] = result(movement, StockMovementStatus.APPLIED, quantityAfterMovement, null);
+            }
+        }
+    }
+
+    private void createChunk(List<Integer> chunk, List<BeerDTO> beerDTOs, BeerCreationResultDTO[] results) {
+        List<Beer> beers = new ArrayList<>(chunk.size());
+        for (Integer position : chunk) {
+            Beer beer = beerMapper.toModel(beerDTOs.get(position));
+            // o id sempre vem da sequência, nunca do cliente
+            beer.setId(null);
+            beers.add(beer);
+        }
+        // os INSERTs são enviados em lote no flush
+        List<Beer> savedBeers = beerRepository.saveAll(beers);
+        beerRepository.flush();
+        savedBeers.forEach(beer -> {
+            stockLedgerService.record(beer.getId(), beer.getQuantity(), StockLedgerEntryType.CREATED);
+            stockIndex.put(beer.getId(), beer.getQuantity(), beer.getMax());
+        });
+        // os nomes podem estar guardados no cache como não encontrados
+        beerCache.evictAll(savedBeers.stream().map(Beer::getName).collect(Collectors.toList()));
+        for (int i = 0; i < chunk.size(); i++) {
+            Integer position = chunk.get(i);
+            results[position] = result(beerDTOs.get(position), BeerCreationStatus.CREATED, beerMapper.toDTO(savedBeers.get(i)), null);
+        }
+    }
+
+    private String validate(BeerDTO beerDTO) {
+        if (beerDTO == null) {
+            return "Beer is required.";
+        }
+        Set<ConstraintViolation<BeerDTO>> violations = validator.validate(beerDTO);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private BeerCreationResultDTO result(BeerDTO beerDTO, BeerCreationStatus status, BeerDTO createdBeerDTO, String message) {
+        return BeerCreationResultDTO.builder()
+                .name(beerDTO == null ? null : beerDTO.getName())
+                .status(status)
+                .beer(createdBeerDTO)
+                .message(message)
+                .build();
+    }
+
+    private StockMovementResultDTO result(StockMovementDTO movement, StockMovementStatus status, Integer quantity, String message) {
+        return StockMovementResultDTO.builder()
+                .id(movement == null ? null : movement.getId())
+                .delta(movement == null ? null : movement.getDelta())
+                .status(status)
+                .quantity(quantity)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// cursor opaco da listagem: guarda o último id entregue, para a próxima página continuar a partir dele
+public final class BeerCursor {
+
+    private static final String PREFIX = "id:";
+
+    private BeerCursor() {
+    }
+
+    public static String encode(Long lastId) {
+        byte[] cursor = (PREFIX + lastId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor);
+    }
+
+    public static long decode(String cursor) throws InvalidCursorException {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX)) {
+                throw new InvalidCursorException(cursor);
+            }
+            return Long.parseLong(decoded.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
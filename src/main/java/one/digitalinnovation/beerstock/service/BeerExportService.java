@@ -0,0 +1,52 @@
+package one.digitalinnovation.beerstock.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// exporta o catálogo inteiro em JSON delimitado por linha (NDJSON), uma cerveja por vez,
+// então a memória usada não cresce com o número de cervejas
+@Service
+@Profile("!journal")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class BeerExportService {
+
+    // de quantas em quantas cervejas a saída é enviada ao cliente
+    private static final int FLUSH_INTERVAL = 500;
+
+    private final BeerRepository beerRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+
+    @Transactional(readOnly = true)
+    public void exportAll(OutputStream outputStream) throws IOException {
+        try (Stream<Beer> beers = beerRepository.streamAllOrderById()) {
+            Iterator<Beer> beerIterator = beers.iterator();
+            int exportedBeers = 0;
+            while (beerIterator.hasNext()) {
+                Beer beer = beerIterator.next();
+                outputStream.write(objectMapper.writeValueAsBytes(beerMapper.toDTO(beer)));
+                outputStream.write('\n');
+                // tira a cerveja do contexto de persistência para ela poder ser coletada
+                entityManager.detach(beer);
+                if (++exportedBeers % FLUSH_INTERVAL == 0) {
+                    outputStream.flush();
+                }
+            }
+        }
+        outputStream.flush();
+    }
+}
@@ -0,0 +1,31 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.config.ListingProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerPageDTO;
+
+import java.util.List;
+
+// paginação por cursor usada pelas listagens: cada consulta busca size + 1 cervejas, o item a mais só indica
+// que existe próxima página, e o cursor devolvido é o id da última cerveja entregue
+public final class BeerPages {
+
+    private BeerPages() {
+    }
+
+    // tamanho pedido pelo cliente dentro dos limites configurados, ou o padrão quando ele não informa nenhum
+    public static int boundedPageSize(ListingProperties listingProperties, Integer pageSize) {
+        if (pageSize == null) {
+            return listingProperties.getDefaultPageSize();
+        }
+        return Math.max(1, Math.min(pageSize, listingProperties.getMaxPageSize()));
+    }
+
+    public static BeerPageDTO toPage(List<BeerDTO> beers, int size) {
+        if (beers.size() <= size) {
+            return new BeerPageDTO(beers, null);
+        }
+        List<BeerDTO> page = beers.subList(0, size);
+        return new BeerPageDTO(page, BeerCursor.encode(page.get(size - 1).getId()));
+    }
+}
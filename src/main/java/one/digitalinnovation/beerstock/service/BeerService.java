@@ -1,72 +1,114 @@
 package one.digitalinnovation.beerstock.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.config.ListingProperties;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
-import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.dto.BeerPageDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.dto.StockLevelDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
 import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
-import one.digitalinnovation.beerstock.mapper.BeerMapper;
-import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.exception.InvalidCursorException;
+import one.digitalinnovation.beerstock.exception.InvalidRatioException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
-@Service // indica que é uma classe de serviço 
+@Service // indica que é uma classe de serviço
 @AllArgsConstructor(onConstructor = @__(@Autowired)) // injeta um construtor de maneira simples com o lombok
 public class BeerService {
 
-    private final BeerRepository beerRepository;
-    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+    // um timer só, separado pelas tags class e method que o TimedAspect adiciona
+    public static final String SERVICE_TIMER = "beerstock.service";
 
+    // o banco com JPA ou, com o perfil journal, o diário local
+    private final BeerStore beerStore;
+    private final ListingProperties listingProperties;
+    private final BeerCache beerCache;
+
+    @Timed(value = SERVICE_TIMER, histogram = true)
     public BeerDTO createBeer(BeerDTO beerDTO) throws BeerAlreadyRegisteredException {
-        verifyIfIsAlreadyRegistered(beerDTO.getName());
-        Beer beer = beerMapper.toModel(beerDTO);
-        Beer savedBeer = beerRepository.save(beer);
-        return beerMapper.toDTO(savedBeer);
+        return beerStore.create(beerDTO);
     }
 
+    @Timed(value = SERVICE_TIMER, histogram = true)
     public BeerDTO findByName(String name) throws BeerNotFoundException {
-        Beer foundBeer = beerRepository.findByName(name)
+        return beerCache.get(name, beerStore::findByName)
                 .orElseThrow(() -> new BeerNotFoundException(name));
-        return beerMapper.toDTO(foundBeer);
     }
 
+    // ETag da cerveja, calculado do próprio conteúdo devolvido: muda junto com ele e não guarda nada por nome
+    public String versionTag(BeerDTO beerDTO) {
+        String content = String.join("|", String.valueOf(beerDTO.getId()), beerDTO.getName(), beerDTO.getBrand(),
+                String.valueOf(beerDTO.getMax()), String.valueOf(beerDTO.getQuantity()), String.valueOf(beerDTO.getType()));
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // versão do catálogo para o ETag da listagem, lida da memória antes de consultar a página
+    public String catalogVersionTag() {
+        return beerCache.catalogVersionTag();
+    }
+
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public StockLevelDTO findStockLevel(Long id) throws BeerNotFoundException {
+        return beerStore.findStockLevel(id);
+    }
+
+    @Timed(value = SERVICE_TIMER, histogram = true)
     public List<BeerDTO> listAll() {
-        return beerRepository.findAll()
-                .stream()
-                .map(beerMapper::toDTO)
-                .collect(Collectors.toList());
+        return beerStore.findAll();
     }
 
-    public void deleteById(Long id) throws BeerNotFoundException {
-        verifyIfExists(id);
-        beerRepository.deleteById(id);
+    // lista uma página limitada a partir do cursor, buscando um item a mais só para saber se existe próxima página
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public BeerPageDTO listPage(String cursor, Integer pageSize) throws InvalidCursorException {
+        long afterId = cursor == null ? 0L : BeerCursor.decode(cursor);
+        int size = BeerPages.boundedPageSize(listingProperties, pageSize);
+        return BeerPages.toPage(beerStore.findPage(afterId, size + 1), size);
     }
 
-    private void verifyIfIsAlreadyRegistered(String name) throws BeerAlreadyRegisteredException {
-        Optional<Beer> optSavedBeer = beerRepository.findByName(name);
-        if (optSavedBeer.isPresent()) {
-            throw new BeerAlreadyRegisteredException(name);
+    // mesma paginação por cursor da listagem, só com as cervejas que passam nos filtros informados
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public BeerPageDTO search(String brand, BeerType type, Integer maxQuantity, String cursor, Integer pageSize) throws InvalidCursorException {
+        long afterId = cursor == null ? 0L : BeerCursor.decode(cursor);
+        int size = BeerPages.boundedPageSize(listingProperties, pageSize);
+        return BeerPages.toPage(beerStore.search(brand, type, maxQuantity, afterId, size + 1), size);
+    }
+
+    // a proporção é quantity / max, então 0.2 traz as cervejas com até 20% do estoque máximo
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public List<LowStockBeerDTO> findLowStock(double ratio) throws InvalidRatioException {
+        if (!(ratio >= 0 && ratio <= 1)) {
+            throw new InvalidRatioException(ratio);
         }
+        return beerStore.findLowStock(ratio);
+    }
+
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public List<BrandReorderDTO> reorderReport() {
+        return beerStore.findReorderReport();
     }
 
-    private Beer verifyIfExists(Long id) throws BeerNotFoundException {
-        return beerRepository.findById(id)
-                .orElseThrow(() -> new BeerNotFoundException(id));
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public void deleteById(Long id) throws BeerNotFoundException {
+        beerStore.deleteById(id);
     }
 
+    @Timed(value = SERVICE_TIMER, histogram = true)
     public BeerDTO increment(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
-        Beer beerToIncrementStock = verifyIfExists(id);
-        int quantityAfterIncrement = quantityToIncrement + beerToIncrementStock.getQuantity();
-        if (quantityAfterIncrement <= beerToIncrementStock.getMax()) {
-            beerToIncrementStock.setQuantity(beerToIncrementStock.getQuantity() + quantityToIncrement);
-            Beer incrementedBeerStock = beerRepository.save(beerToIncrementStock);
-            return beerMapper.toDTO(incrementedBeerStock);
-        }
-        throw new BeerStockExceededException(id, quantityToIncrement);
+        return beerStore.increment(id, quantityToIncrement);
+    }
+
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public BeerDTO decrement(Long id, int quantityToDecrement) throws BeerNotFoundException, BeerStockExceededException {
+        return beerStore.decrement(id, quantityToDecrement);
     }
 }
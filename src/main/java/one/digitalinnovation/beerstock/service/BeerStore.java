@@ -0,0 +1,42 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.dto.StockLevelDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+
+import java.util.List;
+import java.util.Optional;
+
+// onde o BeerService guarda as cervejas: o banco com JPA (JpaBeerStore) ou, com o perfil journal, o diário local (JournalBeerStore)
+// a paginação, o cache por nome e os ETags ficam no BeerService; cada implementação tira do BeerCache as cervejas que altera
+public interface BeerStore {
+
+    BeerDTO create(BeerDTO beerDTO) throws BeerAlreadyRegisteredException;
+
+    Optional<BeerDTO> findByName(String name);
+
+    List<BeerDTO> findAll();
+
+    // até limit cervejas com id maior que afterId, em ordem de id
+    List<BeerDTO> findPage(long afterId, int limit);
+
+    // como o findPage, só com as cervejas que passam nos filtros informados
+    List<BeerDTO> search(String brand, BeerType type, Integer maxQuantity, long afterId, int limit);
+
+    List<LowStockBeerDTO> findLowStock(double ratio);
+
+    List<BrandReorderDTO> findReorderReport();
+
+    StockLevelDTO findStockLevel(Long id) throws BeerNotFoundException;
+
+    void deleteById(Long id) throws BeerNotFoundException;
+
+    BeerDTO increment(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException;
+
+    BeerDTO decrement(Long id, int quantityToDecrement) throws BeerNotFoundException, BeerStockExceededException;
+}
@@ -0,0 +1,306 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.buffer.StockIncrementBuffer;
+import one.digitalinnovation.beerstock.config.HotStockProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.BeerStockSlot;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockSlotRepository;
+import one.digitalinnovation.beerstock.repository.StockReservationRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockDeltaRepository;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// modo hot: para as cervejas em promoção, o estoque sai da linha da cerveja e é dividido em faixas (BeerStockSlot)
+// cada alteração cai numa faixa sorteada, então as requisições concorrentes se espalham pelas faixas em vez de disputar
+// a mesma linha; com threads virtuais o id da thread não serve, porque cada requisição ganha uma thread nova
+//
+// garantias:
+// - o total nunca passa do máximo nem fica negativo: cada faixa fica entre 0 e o seu budget, e os budgets somam o máximo
+// - o decremento não leva o total abaixo das reservas no prazo; com reservas ele é conferido com todas as faixas travadas
+// - quando a faixa sorteada não tem a quantidade pedida ou não tem mais budget, todas as faixas são travadas
+//   e o estoque e os budgets são redistribuídos por igual; só então a alteração é recusada se o total não a comporta
+// - como nos depósitos, a quantidade da cerveja recebe as alterações das faixas em até beerstock.warehouse.aggregate-interval,
+//   e o livro de estoque recebe o movimento na transação da alteração
+// - a cerveja sem alterações por beerstock.hot.cool-down volta a ter o estoque só na própria linha
+// - requisições que já estavam alterando a linha da cerveja quando o modo muda entram no total normalmente:
+//   as que não conferem a versão seguram a trava do modo até o UPDATE, e a divisão só lê o estoque depois delas;
+//   as que conferem a versão são repetidas, porque a divisão avança a versão
+// - a faixa travada por um UPDATE condicional que falhou (o H2 mantém a trava) e as travas da redistribuição
+//   podem se cruzar; o banco desfaz uma das transações e o JpaBeerStore repete a alteração
+@Slf4j
+@Service
+@Profile("!journal")
+public class HotStockService implements InitializingBean {
+
+    // a cerveja não está (ou deixou de estar) em modo hot e a alteração segue pela linha da cerveja
+    static final int NOT_HOT = Integer.MIN_VALUE;
+
+    // a alteração deixaria o total fora da faixa 0..máximo
+    static final int REJECTED = -1;
+
+    private final BeerStockSlotRepository slotRepository;
+    private final BeerRepository beerRepository;
+    private final WarehouseStockDeltaRepository warehouseStockDeltaRepository;
+    private final StockReservationRepository reservationRepository;
+    private final WarehouseStockService warehouseStockService;
+    private final StockIncrementBuffer stockIncrementBuffer;
+    private final TransactionTemplate transactionTemplate;
+    private final HotStockProperties hotStockProperties;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+
+    // cervejas em modo hot e a hora da última alteração de cada uma, em nanossegundos
+    private final ConcurrentMap<Long, HotBeer> hotBeers = new ConcurrentHashMap<>();
+
+    // as alterações pela linha da cerveja seguram a leitura da consulta do modo até o UPDATE; a cerveja passa
+    // a ser hot com a escrita, então nenhuma delas chega à linha depois que o estoque é lido para a divisão
+    private final ReentrantReadWriteLock modeLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public HotStockService(BeerStockSlotRepository slotRepository, BeerRepository beerRepository,
+                           WarehouseStockDeltaRepository warehouseStockDeltaRepository,
+                           StockReservationRepository reservationRepository, WarehouseStockService warehouseStockService,
+                           StockIncrementBuffer stockIncrementBuffer,
+                           TransactionTemplate transactionTemplate, HotStockProperties hotStockProperties) {
+        this.slotRepository = slotRepository;
+        this.beerRepository = beerRepository;
+        this.warehouseStockDeltaRepository = warehouseStockDeltaRepository;
+        this.reservationRepository = reservationRepository;
+        this.warehouseStockService = warehouseStockService;
+        this.stockIncrementBuffer = stockIncrementBuffer;
+        this.transactionTemplate = transactionTemplate;
+        this.hotStockProperties = hotStockProperties;
+    }
+
+    // as faixas ficam no banco, então as cervejas que estavam em modo hot continuam nele depois de reiniciar
+    @Override
+    public void afterPropertiesSet() {
+        Map<Long, Integer> slotsByBeer = new HashMap<>();
+        slotRepository.findAll().forEach(slot -> slotsByBeer.merge(slot.getBeerId(), 1, Integer::sum));
+        slotsByBeer.forEach((beerId, slots) -> hotBeers.put(beerId, new HotBeer(slots)));
+    }
+
+    public boolean isHot(Long beerId) {
+        return hotBeers.containsKey(beerId);
+    }
+
+    // segurada por quem consulta o modo e, se a cerveja não for hot, altera a linha dela sem conferir a versão
+    public Lock rowChangeLock() {
+        return modeLock.readLock();
+    }
+
+    // divide o estoque atual da cerveja em faixas iguais; a linha da cerveja fica travada enquanto isso
+    public void enable(Long beerId, int slots) throws BeerNotFoundException {
+        // a cerveja já é hot antes da divisão: as alterações novas esperam as faixas em vez de ir para a linha dela
+        modeLock.writeLock().lock();
+        try {
+            hotBeers.putIfAbsent(beerId, new HotBeer(slots));
+        } finally {
+            modeLock.writeLock().unlock();
+        }
+        // os incrementos do buffer chegam à cerveja antes da divisão, para que entrem no total das faixas
+        stockIncrementBuffer.flush();
+        Optional<Beer> enabledBeer = transactionTemplate.execute(status -> {
+            Optional<Beer> beer = beerRepository.findForUpdateById(beerId);
+            if (!beer.isPresent() || !slotRepository.findByBeerIdForUpdate(beerId).isEmpty()) {
+                return beer;
+            }
+            // o decremento e as movimentações em lote que leram a cerveja antes da divisão são repetidos
+            beerRepository.incrementVersion(beerId);
+            // o total inclui as alterações de depósitos que ainda não chegaram à cerveja
+            int quantity = beer.get().getQuantity() + warehouseStockDeltaRepository.sumByBeerId(beerId).orElse(0L).intValue();
+            List<BeerStockSlot> stripes = new ArrayList<>(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                stripes.add(new BeerStockSlot(beerId, slot, 0, 0));
+            }
+            spread(stripes, quantity, Math.max(quantity, beer.get().getMax()));
+            slotRepository.saveAll(stripes);
+            return beer;
+        });
+        if (!enabledBeer.isPresent()) {
+            hotBeers.remove(beerId);
+            throw new BeerNotFoundException(beerId);
+        }
+        log.info("Beer {} stock split into {} slots", beerId, slots);
+    }
+
+    // junta as faixas de volta na linha da cerveja
+    public void disable(Long beerId) throws BeerNotFoundException {
+        if (!beerRepository.existsById(beerId)) {
+            throw new BeerNotFoundException(beerId);
+        }
+        collapse(beerId);
+    }
+
+    public Optional<BeerDTO> increment(Long beerId, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
+        return change(beerId, quantityToIncrement, quantityToIncrement, StockLedgerEntryType.INCREMENTED);
+    }
+
+    public Optional<BeerDTO> decrement(Long beerId, int quantityToDecrement) throws BeerNotFoundException, BeerStockExceededException {
+        return change(beerId, quantityToDecrement, -quantityToDecrement, StockLedgerEntryType.DECREMENTED);
+    }
+
+    // vazio quando a cerveja não está em modo hot; a quantidade devolvida é a soma das faixas
+    private Optional<BeerDTO> change(Long beerId, int quantity, int delta, StockLedgerEntryType type) throws BeerNotFoundException, BeerStockExceededException {
+        // a cerveja vem do cache de segundo nível
+        Beer beer = beerRepository.findById(beerId)
+                .orElseThrow(() -> new BeerNotFoundException(beerId));
+        Integer total = transactionTemplate.execute(status -> apply(beerId, delta, type));
+        if (total == NOT_HOT) {
+            return Optional.empty();
+        }
+        if (total == REJECTED) {
+            throw new BeerStockExceededException(beerId, quantity);
+        }
+        BeerDTO beerDTO = beerMapper.toDTO(beer);
+        beerDTO.setQuantity(total);
+        return Optional.of(beerDTO);
+    }
+
+    // altera uma faixa sorteada e devolve o novo total das faixas, REJECTED ou NOT_HOT
+    // roda na transação de quem chama, como nas movimentações em lote
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int apply(Long beerId, int delta, StockLedgerEntryType type) {
+        HotBeer hotBeer = hotBeers.get(beerId);
+        if (hotBeer == null) {
+            return NOT_HOT;
+        }
+        int slot = slotFor(hotBeer.slots);
+        int updatedRows = delta >= 0
+                ? slotRepository.incrementQuantity(beerId, slot, delta)
+                : slotRepository.decrementQuantity(beerId, slot, -delta);
+        // lidas depois do UPDATE, com a faixa travada: a reserva trava todas as faixas antes de somar o total
+        long reserved = delta < 0 ? reservationRepository.sumActiveQuantity(beerId, Instant.now()) : 0;
+        int total;
+        if (updatedRows > 0 && reserved == 0) {
+            total = (int) slotRepository.sumQuantity(beerId);
+        } else {
+            List<BeerStockSlot> stripes = slotRepository.findByBeerIdForUpdate(beerId);
+            if (stripes.isEmpty()) {
+                // a divisão pode estar gravando as faixas: ela trava a linha da cerveja até o commit
+                beerRepository.findForUpdateById(beerId);
+                stripes = slotRepository.findByBeerIdForUpdate(beerId);
+            }
+            // as faixas foram juntadas enquanto a alteração chegava
+            if (stripes.isEmpty()) {
+                return NOT_HOT;
+            }
+            int budget = stripes.stream().mapToInt(BeerStockSlot::getBudget).sum();
+            if (updatedRows > 0) {
+                // com reservas, o decremento que coube na faixa ainda confere o total com todas as faixas travadas
+                total = stripes.stream().mapToInt(BeerStockSlot::getQuantity).sum();
+                if (total < reserved) {
+                    // devolve às faixas o que o UPDATE tirou
+                    spread(stripes, total - delta, budget);
+                    return REJECTED;
+                }
+            } else {
+                total = stripes.stream().mapToInt(BeerStockSlot::getQuantity).sum() + delta;
+                if (total < 0 || total < reserved || total > budget) {
+                    return REJECTED;
+                }
+                // as entidades travadas são alteradas e os UPDATEs saem em lote no commit
+                spread(stripes, total, budget);
+            }
+        }
+        warehouseStockService.recordHotPending(beerId, delta, type);
+        hotBeer.lastChange = System.nanoTime();
+        return total;
+    }
+
+    // apaga as faixas da cerveja excluída, na transação da exclusão
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteByBeer(Long beerId) {
+        if (slotRepository.deleteByBeerId(beerId) > 0) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    hotBeers.remove(beerId);
+                }
+            });
+        }
+    }
+
+    // junta as faixas das cervejas sem alterações há mais de beerstock.hot.cool-down
+    @Scheduled(fixedDelayString = "${beerstock.hot.cool-down-check-interval:60000}")
+    public void coolDown() {
+        long coolDown = hotStockProperties.getCoolDown().toNanos();
+        long now = System.nanoTime();
+        hotBeers.forEach((beerId, hotBeer) -> {
+            if (now - hotBeer.lastChange > coolDown) {
+                collapse(beerId);
+                log.info("Beer {} cooled down, stock slots collapsed", beerId);
+            }
+        });
+    }
+
+    // a soma das faixas já está na cerveja ou nas alterações pendentes, então basta apagá-las e somar as pendentes dela
+    // na mesma transação, para que a linha da cerveja volte com o total certo para os UPDATEs condicionais
+    // a trava do modo fica com a escrita até a cerveja sair de hotBeers: nenhuma alteração que não confere a versão
+    // chega à linha antes da soma, e as que já estavam nas faixas entram nela
+    private void collapse(Long beerId) {
+        modeLock.writeLock().lock();
+        try {
+            warehouseStockService.aggregate(beerId, () -> {
+                slotRepository.findByBeerIdForUpdate(beerId);
+                slotRepository.deleteByBeerId(beerId);
+            });
+            hotBeers.remove(beerId);
+        } finally {
+            modeLock.writeLock().unlock();
+        }
+    }
+
+    // redistribui total e budget por igual, com a sobra da divisão nas primeiras faixas
+    // como total <= budget, cada faixa fica com no máximo o seu budget
+    private static void spread(List<BeerStockSlot> stripes, int total, int budget) {
+        int slots = stripes.size();
+        for (int slot = 0; slot < slots; slot++) {
+            BeerStockSlot stripe = stripes.get(slot);
+            stripe.setQuantity(total / slots + (slot < total % slots ? 1 : 0));
+            stripe.setBudget(budget / slots + (slot < budget % slots ? 1 : 0));
+        }
+    }
+
+    // sorteio uniforme, sem estado compartilhado entre as threads
+    private static int slotFor(int slots) {
+        return ThreadLocalRandom.current().nextInt(slots);
+    }
+
+    private static class HotBeer {
+
+        private final int slots;
+
+        private volatile long lastChange = System.nanoTime();
+
+        private HotBeer(int slots) {
+            this.slots = slots;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.dto.StockLevelDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.JournalBeerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// as cervejas no diário local do JournalBeerRepository, ativo com o perfil journal
+// não há transações: cada escrita é um registro no diário, e o nome sai do BeerCache logo depois dela
+@Service
+@Profile("journal")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class JournalBeerStore implements BeerStore {
+
+    private final JournalBeerRepository beerRepository;
+    private final BeerCache beerCache;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+
+    @Override
+    public BeerDTO create(BeerDTO beerDTO) throws BeerAlreadyRegisteredException {
+        Beer savedBeer;
+        try {
+            savedBeer = beerRepository.save(beerMapper.toModel(beerDTO));
+        } catch (DuplicateKeyException e) {
+            throw new BeerAlreadyRegisteredException(beerDTO.getName());
+        }
+        // o nome pode estar guardado no cache como não encontrado
+        beerCache.evict(savedBeer.getName());
+        return beerMapper.toDTO(savedBeer);
+    }
+
+    @Override
+    public Optional<BeerDTO> findByName(String name) {
+        return beerRepository.findByName(name).map(beerMapper::toDTO);
+    }
+
+    @Override
+    public List<BeerDTO> findAll() {
+        return toDTOs(beerRepository.findAll());
+    }
+
+    @Override
+    public List<BeerDTO> findPage(long afterId, int limit) {
+        return search(null, null, null, afterId, limit);
+    }
+
+    @Override
+    public List<BeerDTO> search(String brand, BeerType type, Integer maxQuantity, long afterId, int limit) {
+        return toDTOs(beerRepository.search(brand, type, maxQuantity, afterId, limit));
+    }
+
+    @Override
+    public List<LowStockBeerDTO> findLowStock(double ratio) {
+        return beerRepository.findLowStock(ratio);
+    }
+
+    @Override
+    public List<BrandReorderDTO> findReorderReport() {
+        return beerRepository.findReorderReport();
+    }
+
+    // o índice do diário já está em memória, então serve de índice de estoque
+    @Override
+    public StockLevelDTO findStockLevel(Long id) throws BeerNotFoundException {
+        Beer beer = beerRepository.findById(id)
+                .orElseThrow(() -> new BeerNotFoundException(id));
+        return new StockLevelDTO(id, beer.getQuantity(), beer.getMax());
+    }
+
+    @Override
+    public void deleteById(Long id) throws BeerNotFoundException {
+        Beer beerToDelete = beerRepository.findById(id)
+                .orElseThrow(() -> new BeerNotFoundException(id));
+        if (beerRepository.deleteById(id) == 0) {
+            throw new BeerNotFoundException(id);
+        }
+        beerCache.evict(beerToDelete.getName());
+    }
+
+    @Override
+    public BeerDTO increment(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
+        return afterStockUpdate(id, quantityToIncrement, beerRepository.incrementQuantity(id, quantityToIncrement));
+    }
+
+    @Override
+    public BeerDTO decrement(Long id, int quantityToDecrement) throws BeerNotFoundException, BeerStockExceededException {
+        return afterStockUpdate(id, quantityToDecrement, beerRepository.decrementQuantity(id, quantityToDecrement));
+    }
+
+    // nenhuma cerveja alterada: ou ela não existe ou o estoque sairia da faixa 0..max
+    private BeerDTO afterStockUpdate(Long id, int quantity, int updatedBeers) throws BeerNotFoundException, BeerStockExceededException {
+        Beer beer = beerRepository.findById(id)
+                .orElseThrow(() -> new BeerNotFoundException(id));
+        if (updatedBeers == 0) {
+            throw new BeerStockExceededException(id, quantity);
+        }
+        beerCache.evict(beer.getName());
+        return beerMapper.toDTO(beer);
+    }
+
+    private List<BeerDTO> toDTOs(List<Beer> beers) {
+        return beers.stream()
+                .map(beerMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,237 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.buffer.StockIncrementBuffer;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.dto.StockLevelDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+// as cervejas no banco com JPA, junto com o livro de estoque, o índice em memória, os depósitos, o modo hot e as reservas
+@Service
+@Profile("!journal") // com o perfil journal, o JournalBeerStore
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class JpaBeerStore implements BeerStore {
+
+    private final BeerRepository beerRepository;
+    private final BeerCache beerCache;
+    private final StockIncrementBuffer stockIncrementBuffer;
+    private final StockLedgerService stockLedgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final StockIndex stockIndex;
+    private final WarehouseStockService warehouseStockService;
+    private final HotStockService hotStockService;
+    private final StockReservationService stockReservationService;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+
+    // a cerveja e o movimento com o estoque inicial no livro de estoque são gravados na mesma transação
+    @Override
+    @Transactional
+    public BeerDTO create(BeerDTO beerDTO) throws BeerAlreadyRegisteredException {
+        verifyIfIsAlreadyRegistered(beerDTO.getName());
+        Beer beer = beerMapper.toModel(beerDTO);
+        Beer savedBeer = beerRepository.save(beer);
+        stockLedgerService.record(savedBeer.getId(), savedBeer.getQuantity(), StockLedgerEntryType.CREATED);
+        stockIndex.put(savedBeer.getId(), savedBeer.getQuantity(), savedBeer.getMax());
+        // o nome pode estar guardado no cache como não encontrado
+        beerCache.evict(savedBeer.getName());
+        return beerMapper.toDTO(savedBeer);
+    }
+
+    @Override
+    public Optional<BeerDTO> findByName(String name) {
+        return beerRepository.findByName(name).map(beerMapper::toDTO);
+    }
+
+    @Override
+    public List<BeerDTO> findAll() {
+        return toDTOs(beerRepository.findAll());
+    }
+
+    @Override
+    public List<BeerDTO> findPage(long afterId, int limit) {
+        return toDTOs(beerRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit)));
+    }
+
+    @Override
+    public List<BeerDTO> search(String brand, BeerType type, Integer maxQuantity, long afterId, int limit) {
+        return toDTOs(beerRepository.search(brand, type, maxQuantity, afterId, limit));
+    }
+
+    @Override
+    public List<LowStockBeerDTO> findLowStock(double ratio) {
+        return beerRepository.findLowStock(ratio);
+    }
+
+    @Override
+    public List<BrandReorderDTO> findReorderReport() {
+        return beerRepository.findReorderReport();
+    }
+
+    // lido do índice de estoque, sem ir ao banco nem ao cache por nome
+    @Override
+    public StockLevelDTO findStockLevel(Long id) throws BeerNotFoundException {
+        long stock = stockIndex.getStock(id);
+        if (stock < 0) {
+            throw new BeerNotFoundException(id);
+        }
+        return new StockLevelDTO(id, StockIndex.quantityOf(stock), StockIndex.maxOf(stock));
+    }
+
+    // o livro de estoque zera a cerveja excluída com um movimento do estoque que ela tinha,
+    // contando as alterações dos depósitos que ainda não tinham chegado ao total
+    @Override
+    @Transactional
+    public void deleteById(Long id) throws BeerNotFoundException {
+        Beer beerToDelete = verifyIfExists(id);
+        beerRepository.deleteById(id);
+        int pendingWarehouseStock = warehouseStockService.deleteByBeer(id);
+        hotStockService.deleteByBeer(id);
+        stockReservationService.deleteByBeer(id);
+        stockLedgerService.record(id, -(beerToDelete.getQuantity() + pendingWarehouseStock), StockLedgerEntryType.DELETED);
+        stockIndex.remove(id);
+        beerCache.evict(beerToDelete.getName());
+        stockIncrementBuffer.evict(id);
+    }
+
+    private void verifyIfIsAlreadyRegistered(String name) throws BeerAlreadyRegisteredException {
+        Optional<Beer> optSavedBeer = beerRepository.findByName(name);
+        if (optSavedBeer.isPresent()) {
+            throw new BeerAlreadyRegisteredException(name);
+        }
+    }
+
+    private Beer verifyIfExists(Long id) throws BeerNotFoundException {
+        return beerRepository.findById(id)
+                .orElseThrow(() -> new BeerNotFoundException(id));
+    }
+
+    private List<BeerDTO> toDTOs(List<Beer> beers) {
+        return beers.stream()
+                .map(beerMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    // o UPDATE condicional é atômico no banco, então incrementos concorrentes na mesma cerveja não se perdem
+    // no modo hot duas transações podem se travar ao redistribuir as faixas; a transação desfeita pelo banco é repetida
+    // sem listeners: senão o beerStockMetrics, que é um bean RetryListener, contaria os incrementos como decrementos
+    @Override
+    @Retryable(retryFor = CannotAcquireLockException.class,
+            maxAttemptsExpression = "${beerstock.decrement.max-attempts:5}",
+            backoff = @Backoff(delayExpression = "${beerstock.decrement.backoff-delay:5}",
+                    maxDelayExpression = "${beerstock.decrement.backoff-max-delay:100}",
+                    multiplier = 2, random = true),
+            listeners = "")
+    @Transactional
+    public BeerDTO increment(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
+        // o UPDATE não confere a versão, então a cerveja não pode virar hot entre a consulta do modo e ele
+        Lock rowChangeLock = hotStockService.rowChangeLock();
+        rowChangeLock.lock();
+        try {
+            return incrementStock(id, quantityToIncrement);
+        } finally {
+            rowChangeLock.unlock();
+        }
+    }
+
+    private BeerDTO incrementStock(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
+        // em modo hot o incremento vai para uma das faixas do estoque, sem travar a linha da cerveja
+        if (hotStockService.isHot(id)) {
+            Optional<BeerDTO> incrementedHotBeer = hotStockService.increment(id, quantityToIncrement);
+            if (incrementedHotBeer.isPresent()) {
+                return incrementedHotBeer.get();
+            }
+        }
+        // com o buffer ligado o incremento é aceito em memória e só chega ao banco na próxima descarga
+        if (stockIncrementBuffer.isEnabled()) {
+            return stockIncrementBuffer.increment(id, quantityToIncrement);
+        }
+        int updatedRows = beerRepository.incrementQuantity(id, quantityToIncrement);
+        // nenhuma linha alterada: ou a cerveja não existe ou o incremento passaria do máximo
+        // a leitura ignora o cache de segundo nível, que ainda guarda a quantidade anterior ao UPDATE
+        Beer incrementedBeerStock = beerRepository.findCurrentById(id)
+                .orElseThrow(() -> new BeerNotFoundException(id));
+        if (updatedRows == 0) {
+            throw new BeerStockExceededException(id, quantityToIncrement);
+        }
+        stockLedgerService.record(id, quantityToIncrement, StockLedgerEntryType.INCREMENTED);
+        stockIndex.add(id, quantityToIncrement);
+        beerCache.evict(incrementedBeerStock.getName());
+        return beerMapper.toDTO(incrementedBeerStock);
+    }
+
+    // cada tentativa lê a versão atual e o UPDATE não altera nada se outra requisição mudou a cerveja nesse meio tempo,
+    // então a tentativa é repetida com um atraso aleatório para não colidir de novo com as mesmas requisições
+    @Override
+    @Retryable(retryFor = {ObjectOptimisticLockingFailureException.class, CannotAcquireLockException.class},
+            maxAttemptsExpression = "${beerstock.decrement.max-attempts:5}",
+            backoff = @Backoff(delayExpression = "${beerstock.decrement.backoff-delay:5}",
+                    maxDelayExpression = "${beerstock.decrement.backoff-max-delay:100}",
+                    multiplier = 2, random = true),
+            listeners = "beerStockMetrics")
+    public BeerDTO decrement(Long id, int quantityToDecrement) throws BeerNotFoundException, BeerStockExceededException {
+        if (hotStockService.isHot(id)) {
+            Optional<BeerDTO> decrementedHotBeer = hotStockService.decrement(id, quantityToDecrement);
+            if (decrementedHotBeer.isPresent()) {
+                return decrementedHotBeer.get();
+            }
+        }
+        // os incrementos que ainda estão no buffer chegam ao banco antes da leitura do estoque
+        stockIncrementBuffer.flush();
+        Beer beerToDecrementStock = verifyIfExists(id);
+        int quantityAfterDecrement = beerToDecrementStock.getQuantity() - quantityToDecrement;
+        // o estoque nunca fica negativo
+        if (quantityAfterDecrement < 0) {
+            throw new BeerStockExceededException(id, quantityToDecrement);
+        }
+        // grava com a versão lida, se outra requisição alterou a cerveja antes nenhuma linha muda e a tentativa é repetida
+        // a transação fica só em volta do UPDATE e do movimento no livro, a descarga do buffer acima confirma na sua própria
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (beerRepository.decrementQuantity(id, quantityToDecrement, beerToDecrementStock.getVersion(), Instant.now()) == 0) {
+                    throw new ObjectOptimisticLockingFailureException(Beer.class, id);
+                }
+                stockLedgerService.record(id, -quantityToDecrement, StockLedgerEntryType.DECREMENTED);
+                stockIndex.add(id, -quantityToDecrement);
+            });
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // o UPDATE também não altera nada quando o estoque ficaria abaixo do reservado somado às unidades dos depósitos,
+            // e aí repetir não adianta
+            if (quantityAfterDecrement < stockReservationService.reservedQuantity(id) + warehouseStockService.assignedQuantity(id)) {
+                throw new BeerStockExceededException(id, quantityToDecrement);
+            }
+            throw e;
+        }
+        beerToDecrementStock.setQuantity(quantityAfterDecrement);
+        beerToDecrementStock.setVersion(beerToDecrementStock.getVersion() + 1);
+        beerCache.evict(beerToDecrementStock.getName());
+        stockIncrementBuffer.evict(id);
+        return beerMapper.toDTO(beerToDecrementStock);
+    }
+}
@@ -0,0 +1,113 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.config.ListingProperties;
+import one.digitalinnovation.beerstock.config.ReactiveProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerPageDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.InvalidRatioException;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.ReactiveBeerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// as mesmas regras do BeerService, sem bloquear a thread: os erros chegam como sinais de erro do Mono/Flux
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveBeerService {
+
+    private final ReactiveBeerRepository beerRepository;
+    private final ListingProperties listingProperties;
+    private final ReactiveProperties reactiveProperties;
+    private final TransactionalOperator transactionalOperator;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+
+    public Mono<BeerDTO> createBeer(BeerDTO beerDTO) {
+        return beerRepository.findByName(beerDTO.getName())
+                .flatMap(beer -> Mono.<BeerDTO>error(new BeerAlreadyRegisteredException(beerDTO.getName())))
+                .switchIfEmpty(Mono.defer(() -> beerRepository.save(beerMapper.toModel(beerDTO))
+                        .as(transactionalOperator::transactional)
+                        .map(beerMapper::toDTO)))
+                // outra requisição cadastrou o mesmo nome entre a busca e o insert
+                .onErrorMap(DuplicateKeyException.class, e -> new BeerAlreadyRegisteredException(beerDTO.getName()));
+    }
+
+    public Mono<BeerDTO> findByName(String name) {
+        return beerRepository.findByName(name)
+                .map(beerMapper::toDTO)
+                .switchIfEmpty(Mono.error(() -> new BeerNotFoundException(name)));
+    }
+
+    public Mono<BeerPageDTO> listPage(String cursor, Integer pageSize) {
+        return search(null, null, null, cursor, pageSize);
+    }
+
+    // paginação por cursor como no BeerService, buscando um item a mais só para saber se existe próxima página
+    public Mono<BeerPageDTO> search(String brand, BeerType type, Integer maxQuantity, String cursor, Integer pageSize) {
+        int size = BeerPages.boundedPageSize(listingProperties, pageSize);
+        return Mono.fromCallable(() -> cursor == null ? 0L : BeerCursor.decode(cursor))
+                .flatMapMany(afterId -> beerRepository.search(brand, type, maxQuantity, afterId, size + 1))
+                .map(beerMapper::toDTO)
+                .collectList()
+                .map(beers -> BeerPages.toPage(beers, size));
+    }
+
+    public Flux<LowStockBeerDTO> findLowStock(double ratio) {
+        if (!(ratio >= 0 && ratio <= 1)) {
+            return Flux.error(new InvalidRatioException(ratio));
+        }
+        return beerRepository.findLowStock(ratio);
+    }
+
+    public Flux<BrandReorderDTO> reorderReport() {
+        return beerRepository.findReorderReport();
+    }
+
+    // o banco só é lido conforme o cliente consome, de prefetch em prefetch cervejas
+    public Flux<BeerDTO> exportAll() {
+        return beerRepository.streamAllOrderById()
+                .limitRate(reactiveProperties.getPrefetch())
+                .map(beerMapper::toDTO);
+    }
+
+    public Mono<Void> deleteById(Long id) {
+        return beerRepository.deleteById(id)
+                .filter(deletedRows -> deletedRows > 0)
+                .switchIfEmpty(Mono.error(() -> new BeerNotFoundException(id)))
+                .then();
+    }
+
+    // nenhuma linha alterada: ou a cerveja não existe ou o incremento passaria do máximo
+    public Mono<BeerDTO> increment(Long id, int quantityToIncrement) {
+        return beerRepository.incrementQuantity(id, quantityToIncrement)
+                .flatMap(updatedRows -> afterStockUpdate(id, quantityToIncrement, updatedRows))
+                .as(transactionalOperator::transactional);
+    }
+
+    // nenhuma linha alterada: ou a cerveja não existe ou o estoque ficaria negativo
+    public Mono<BeerDTO> decrement(Long id, int quantityToDecrement) {
+        return beerRepository.decrementQuantity(id, quantityToDecrement)
+                .flatMap(updatedRows -> afterStockUpdate(id, quantityToDecrement, updatedRows))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<BeerDTO> afterStockUpdate(Long id, int quantity, long updatedRows) {
+        return beerRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new BeerNotFoundException(id)))
+                .flatMap(beer -> updatedRows == 0
+                        ? Mono.error(new BeerStockExceededException(id, quantity))
+                        : Mono.just(beerMapper.toDTO(beer)));
+    }
+}
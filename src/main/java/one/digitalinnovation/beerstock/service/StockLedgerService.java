@@ -0,0 +1,101 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.config.BatchProperties;
+import one.digitalinnovation.beerstock.config.LedgerProperties;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.StockLedgerSumDTO;
+import one.digitalinnovation.beerstock.entity.StockLedgerEntry;
+import one.digitalinnovation.beerstock.entity.StockSnapshot;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.repository.StockLedgerRepository;
+import one.digitalinnovation.beerstock.repository.StockSnapshotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// livro de estoque: cada alteração de quantidade vira um movimento, e snapshots periódicos resumem os movimentos antigos
+// o estoque num instante é o último snapshot antes dele mais os movimentos até o instante que o snapshot não somou,
+// sem percorrer o livro inteiro
+// cada geração marca os movimentos que soma, em vez de somar um intervalo de instantes: o instante do movimento é
+// o da gravação, e a transação que confirma depois que uma geração cobriu esse instante entra na geração seguinte
+@Service
+@Profile("!journal")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockLedgerService {
+
+    private final StockLedgerRepository stockLedgerRepository;
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerProperties ledgerProperties;
+    private final BatchProperties batchProperties;
+
+    // só grava dentro da transação de quem alterou a quantidade, então o movimento e a alteração são confirmados juntos
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long beerId, int delta, StockLedgerEntryType type) {
+        stockLedgerRepository.save(new StockLedgerEntry(null, beerId, delta, type, now(), null));
+    }
+
+    @Transactional(readOnly = true)
+    public BeerStockDTO stockAt(Long beerId, Instant at) throws BeerNotFoundException {
+        Optional<StockSnapshot> snapshot = stockSnapshotRepository.findFirstByBeerIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(beerId, at);
+        Instant after = snapshot.map(StockSnapshot::getCoveredUntil).orElse(Instant.EPOCH);
+        Optional<StockLedgerSumDTO> movements = stockLedgerRepository.sumForBeer(beerId, after, at);
+        // sem snapshot e sem movimentos a cerveja ainda não existia no instante pedido
+        if (!snapshot.isPresent() && !movements.isPresent()) {
+            throw new BeerNotFoundException(beerId);
+        }
+        int quantity = snapshot.map(StockSnapshot::getQuantity).orElse(0)
+                + movements.map(sum -> sum.getDelta().intValue()).orElse(0);
+        return new BeerStockDTO(beerId, quantity, at);
+    }
+
+    // gera um snapshot para cada cerveja com movimentos ainda não somados, somando-os ao snapshot anterior dela
+    // os movimentos continuam no livro para a auditoria, os snapshots só limitam quantos deles cada consulta soma
+    @Scheduled(fixedDelayString = "${beerstock.ledger.snapshot-interval:60000}")
+    public void takeSnapshots() {
+        Instant coveredUntil = now().minusMillis(ledgerProperties.getSnapshotDelay());
+        transactionTemplate.executeWithoutResult(status -> {
+            Instant lastCoveredUntil = stockSnapshotRepository.findLastCoveredUntil().orElse(Instant.EPOCH);
+            if (!coveredUntil.isAfter(lastCoveredUntil)) {
+                return;
+            }
+            if (stockLedgerRepository.markCovered(coveredUntil) == 0) {
+                return;
+            }
+            List<StockLedgerSumDTO> sums = stockLedgerRepository.sumByBeer(coveredUntil);
+            int chunkSize = batchProperties.getChunkSize();
+            for (int from = 0; from < sums.size(); from += chunkSize) {
+                List<StockLedgerSumDTO> chunk = sums.subList(from, Math.min(from + chunkSize, sums.size()));
+                Map<Long, Integer> previousQuantities = stockSnapshotRepository
+                        .findLatestByBeerIdIn(chunk.stream().map(StockLedgerSumDTO::getBeerId).collect(Collectors.toList()))
+                        .stream()
+                        .collect(Collectors.toMap(StockSnapshot::getBeerId, StockSnapshot::getQuantity));
+                List<StockSnapshot> snapshots = new ArrayList<>(chunk.size());
+                for (StockLedgerSumDTO sum : chunk) {
+                    int quantity = previousQuantities.getOrDefault(sum.getBeerId(), 0) + sum.getDelta().intValue();
+                    snapshots.add(new StockSnapshot(null, sum.getBeerId(), quantity, coveredUntil));
+                }
+                stockSnapshotRepository.saveAll(snapshots);
+            }
+        });
+    }
+
+    // o banco guarda microssegundos, então o instante já é gravado como será lido
+    private Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+}
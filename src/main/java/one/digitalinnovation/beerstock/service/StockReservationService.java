@@ -0,0 +1,248 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.config.BatchProperties;
+import one.digitalinnovation.beerstock.config.ReservationProperties;
+import one.digitalinnovation.beerstock.dto.AvailableStockDTO;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.StockReservationDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockReservation;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockSlotRepository;
+import one.digitalinnovation.beerstock.repository.StockReservationRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockDeltaRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockRepository;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+// reservas de estoque para o checkout: a compra separa o estoque por alguns minutos e depois confirma ou libera,
+// sem manter uma transação aberta na linha da cerveja enquanto isso
+// o estoque disponível é o total da cerveja menos as unidades dos depósitos e as reservas ainda no prazo: as reservas
+// saem só do estoque fora das lojas, que é o mesmo que a confirmação baixa na linha da cerveja
+//
+// garantias:
+// - cada reserva trava a linha da cerveja só durante a própria transação, então reservas concorrentes passam uma por vez
+//   e nunca separam mais do que o disponível
+// - a reserva avança a versão da cerveja, e o decremento otimista e as movimentações em lote, que conferem as reservas,
+//   repetem ou recusam a alteração que leu o estoque antes dela
+// - a reserva vencida deixa de contar no disponível na hora; a limpeza só apaga as linhas, tirando da DelayQueue
+//   apenas as reservas vencidas, sem percorrer a tabela
+// - confirmar, liberar e vencer apagam a mesma linha com DELETE condicional, então só um dos três acontece
+// - os decrementos das faixas do modo hot também conferem as reservas: a reserva trava as faixas da cerveja antes de
+//   somar o total, e eles leem as reservas com a própria faixa já travada; os depósitos nunca levam estoque reservado,
+//   e a reserva só trava as linhas deles para que o total e as unidades dos depósitos sejam lidos juntos
+// - a confirmação nunca deixa a linha da cerveja abaixo das unidades que estão nos depósitos
+@Slf4j
+@Service
+@Profile("!journal")
+public class StockReservationService implements InitializingBean {
+
+    private final StockReservationRepository reservationRepository;
+    private final BeerRepository beerRepository;
+    private final WarehouseStockDeltaRepository warehouseStockDeltaRepository;
+    private final WarehouseStockRepository warehouseStockRepository;
+    private final BeerStockSlotRepository slotRepository;
+    private final HotStockService hotStockService;
+    private final StockLedgerService stockLedgerService;
+    private final StockIndex stockIndex;
+    private final BeerCache beerCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ReservationProperties reservationProperties;
+    private final BatchProperties batchProperties;
+    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+
+    // reservas em ordem de vencimento; só as vencidas saem no poll
+    private final DelayQueue<Expiration> expirations = new DelayQueue<>();
+
+    @Autowired
+    public StockReservationService(StockReservationRepository reservationRepository, BeerRepository beerRepository,
+                                   WarehouseStockDeltaRepository warehouseStockDeltaRepository,
+                                   WarehouseStockRepository warehouseStockRepository, BeerStockSlotRepository slotRepository,
+                                   HotStockService hotStockService,
+                                   StockLedgerService stockLedgerService, StockIndex stockIndex, BeerCache beerCache,
+                                   TransactionTemplate transactionTemplate, ReservationProperties reservationProperties,
+                                   BatchProperties batchProperties) {
+        this.reservationRepository = reservationRepository;
+        this.beerRepository = beerRepository;
+        this.warehouseStockDeltaRepository = warehouseStockDeltaRepository;
+        this.warehouseStockRepository = warehouseStockRepository;
+        this.slotRepository = slotRepository;
+        this.hotStockService = hotStockService;
+        this.stockLedgerService = stockLedgerService;
+        this.stockIndex = stockIndex;
+        this.beerCache = beerCache;
+        this.transactionTemplate = transactionTemplate;
+        this.reservationProperties = reservationProperties;
+        this.batchProperties = batchProperties;
+    }
+
+    // as reservas feitas antes de reiniciar voltam para a fila, para que a limpeza também as alcance
+    @Override
+    public void afterPropertiesSet() {
+        reservationRepository.findAll().forEach(reservation -> expirations.add(new Expiration(reservation.getId(), reservation.getExpiresAt())));
+    }
+
+    @Transactional
+    public StockReservationDTO reserve(Long beerId, int quantity) throws BeerNotFoundException, BeerStockExceededException {
+        // os depósitos e as faixas primeiro, na mesma ordem dos decrementos deles, que só travam a cerveja depois
+        warehouseStockRepository.findByBeerIdForUpdate(beerId);
+        slotRepository.findByBeerIdForUpdate(beerId);
+        // a trava da linha faz as reservas da mesma cerveja passarem uma por vez
+        Beer beer = beerRepository.findForUpdateById(beerId)
+                .orElseThrow(() -> new BeerNotFoundException(beerId));
+        Instant now = Instant.now();
+        if (available(beer, now) < quantity) {
+            throw new BeerStockExceededException(beerId, quantity);
+        }
+        StockReservation reservation = reservationRepository.save(
+                new StockReservation(null, beerId, quantity, now.plus(reservationProperties.getTtl())));
+        beerRepository.incrementVersion(beerId);
+        // a reserva desfeita deixa na fila uma entrada que a limpeza ignora
+        expirations.add(new Expiration(reservation.getId(), reservation.getExpiresAt()));
+        return toDTO(reservation);
+    }
+
+    // baixa o estoque reservado; a quantidade devolvida é a da linha da cerveja, ou o total das faixas em modo hot
+    @Transactional(rollbackFor = Exception.class)
+    public BeerDTO confirm(Long beerId, Long reservationId) throws ReservationNotFoundException, BeerNotFoundException, BeerStockExceededException {
+        StockReservation reservation = reservationRepository.findById(reservationId)
+                .filter(found -> found.getBeerId().equals(beerId))
+                .orElseThrow(() -> new ReservationNotFoundException(beerId, reservationId));
+        if (reservationRepository.deleteActive(reservationId, beerId, Instant.now()) == 0) {
+            throw new ReservationNotFoundException(beerId, reservationId);
+        }
+        int quantity = reservation.getQuantity();
+        Beer beer = beerRepository.findById(beerId)
+                .orElseThrow(() -> new BeerNotFoundException(beerId));
+        // o UPDATE da linha não confere a versão, então a cerveja não pode virar hot entre a consulta do modo e ele
+        Lock rowChangeLock = hotStockService.rowChangeLock();
+        rowChangeLock.lock();
+        try {
+            int hotQuantity = hotStockService.apply(beerId, -quantity, StockLedgerEntryType.DECREMENTED);
+            if (hotQuantity == HotStockService.REJECTED) {
+                throw new BeerStockExceededException(beerId, quantity);
+            }
+            if (hotQuantity != HotStockService.NOT_HOT) {
+                BeerDTO hotBeerDTO = beerMapper.toDTO(beer);
+                hotBeerDTO.setQuantity(hotQuantity);
+                return hotBeerDTO;
+            }
+            if (beerRepository.decrementReservedQuantity(beerId, quantity) == 0) {
+                throw new BeerStockExceededException(beerId, quantity);
+            }
+        } finally {
+            rowChangeLock.unlock();
+        }
+        stockLedgerService.record(beerId, -quantity, StockLedgerEntryType.DECREMENTED);
+        stockIndex.add(beerId, -quantity);
+        beerCache.evict(beer.getName());
+        beer = beerRepository.findCurrentById(beerId)
+                .orElseThrow(() -> new BeerNotFoundException(beerId));
+        return beerMapper.toDTO(beer);
+    }
+
+    @Transactional
+    public void release(Long beerId, Long reservationId) throws ReservationNotFoundException {
+        if (reservationRepository.deleteActive(reservationId, beerId, Instant.now()) == 0) {
+            throw new ReservationNotFoundException(beerId, reservationId);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public AvailableStockDTO findAvailable(Long beerId) throws BeerNotFoundException {
+        Beer beer = beerRepository.findCurrentById(beerId)
+                .orElseThrow(() -> new BeerNotFoundException(beerId));
+        int reserved = reservedQuantity(beerId);
+        int total = total(beer);
+        return new AvailableStockDTO(beerId, total, reserved, total - (int) warehouseStockRepository.sumQuantityByBeerId(beerId) - reserved);
+    }
+
+    // estoque preso nas reservas no prazo; lido depois da cerveja, para que a versão lida cubra as reservas somadas
+    public int reservedQuantity(Long beerId) {
+        return (int) reservationRepository.sumActiveQuantity(beerId, Instant.now());
+    }
+
+    // apaga as reservas da cerveja excluída, na transação da exclusão
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteByBeer(Long beerId) {
+        reservationRepository.deleteByBeerId(beerId);
+    }
+
+    // apaga as reservas vencidas, em blocos; as que já foram confirmadas ou liberadas não apagam nada
+    @Scheduled(fixedDelayString = "${beerstock.reservation.sweep-interval:1000}")
+    public void sweep() {
+        List<Long> expiredIds = new ArrayList<>();
+        for (Expiration expiration = expirations.poll(); expiration != null; expiration = expirations.poll()) {
+            expiredIds.add(expiration.reservationId);
+        }
+        int chunkSize = batchProperties.getChunkSize();
+        int deleted = 0;
+        for (int from = 0; from < expiredIds.size(); from += chunkSize) {
+            List<Long> chunk = expiredIds.subList(from, Math.min(from + chunkSize, expiredIds.size()));
+            Integer deletedInChunk = transactionTemplate.execute(status -> reservationRepository.deleteExpired(chunk, Instant.now()));
+            deleted += deletedInChunk;
+        }
+        if (deleted > 0) {
+            log.info("Released {} expired stock reservations", deleted);
+        }
+    }
+
+    private int available(Beer beer, Instant now) {
+        return total(beer) - (int) warehouseStockRepository.sumQuantityByBeerId(beer.getId())
+                - (int) reservationRepository.sumActiveQuantity(beer.getId(), now);
+    }
+
+    // como no modo hot, o total inclui as alterações de depósitos e faixas que ainda não chegaram à cerveja
+    private int total(Beer beer) {
+        return beer.getQuantity() + warehouseStockDeltaRepository.sumByBeerId(beer.getId()).orElse(0L).intValue();
+    }
+
+    private StockReservationDTO toDTO(StockReservation reservation) {
+        return new StockReservationDTO(reservation.getId(), reservation.getBeerId(), reservation.getQuantity(), reservation.getExpiresAt());
+    }
+
+    private static final class Expiration implements Delayed {
+
+        private final Long reservationId;
+
+        private final Instant expiresAt;
+
+        private Expiration(Long reservationId, Instant expiresAt) {
+            this.reservationId = reservationId;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(Instant.now(), expiresAt));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return expiresAt.compareTo(((Expiration) other).expiresAt);
+        }
+    }
+}
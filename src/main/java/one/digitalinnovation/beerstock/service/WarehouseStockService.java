@@ -0,0 +1,250 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.buffer.StockIncrementBuffer;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.config.BatchProperties;
+import one.digitalinnovation.beerstock.dto.WarehouseStockDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.WarehouseStock;
+import one.digitalinnovation.beerstock.entity.WarehouseStockDelta;
+import one.digitalinnovation.beerstock.entity.WarehouseStockId;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockDeltaRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+// estoque por depósito: cada loja incrementa e decrementa só a sua linha de WarehouseStock
+// a quantidade da cerveja continua sendo o total de todos os depósitos, e é ela que a API /api/v1/beers devolve;
+// em vez de somar os depósitos a cada leitura, as alterações ficam pendentes e são somadas à cerveja periodicamente
+//
+// garantias:
+// - alterações em depósitos diferentes não disputam nenhuma linha: um UPDATE no depósito e dois INSERTs
+// - o estoque de um depósito nunca fica negativo, e o máximo da cerveja vale para o total de todos os depósitos:
+//   o incremento de um depósito confere o total com a linha da cerveja travada, então os incrementos da mesma cerveja
+//   passam um por vez nesse ponto, enquanto os decrementos seguem sem tocar na cerveja
+// - as reservas saem do estoque fora dos depósitos, então o decremento de um depósito nunca leva o estoque reservado
+//   e não precisa conferir as reservas nem travar a linha da cerveja
+// - o total da cerveja chega às alterações dos depósitos em até beerstock.warehouse.aggregate-interval;
+//   o livro de estoque já recebe o movimento na transação da alteração
+// - o estoque alterado pelas rotas sem depósito é o que não está em nenhuma loja e entra no total do mesmo jeito;
+//   o decremento sem depósito nunca baixa unidades que estão num depósito
+@Slf4j
+@Service
+@Profile("!journal")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class WarehouseStockService {
+
+    private final WarehouseStockRepository warehouseStockRepository;
+    private final WarehouseStockDeltaRepository warehouseStockDeltaRepository;
+    private final BeerRepository beerRepository;
+    private final StockLedgerService stockLedgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final BatchProperties batchProperties;
+    private final BeerCache beerCache;
+    private final StockIndex stockIndex;
+    private final StockIncrementBuffer stockIncrementBuffer;
+    private final ReentrantLock aggregateLock = new ReentrantLock();
+
+    @Transactional(readOnly = true)
+    public List<WarehouseStockDTO> findByBeer(Long beerId) throws BeerNotFoundException {
+        verifyIfExists(beerId);
+        return warehouseStockRepository.findByBeerIdOrderByWarehouseId(beerId)
+                .stream()
+                .map(this::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    // o primeiro incremento de uma cerveja num depósito cria a linha dele
+    public WarehouseStockDTO increment(Long beerId, Long warehouseId, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
+        // a cerveja vem do cache de segundo nível e só é lida para descartar de cara o depósito que passaria do máximo
+        Beer beer = verifyIfExists(beerId);
+        createIfAbsent(beerId, warehouseId);
+        WarehouseStock stock = transactionTemplate.execute(status -> {
+            if (warehouseStockRepository.incrementQuantity(beerId, warehouseId, quantityToIncrement, beer.getMax()) == 0) {
+                return null;
+            }
+            if (!fitsMax(beerId, quantityToIncrement)) {
+                status.setRollbackOnly();
+                return null;
+            }
+            return record(beerId, warehouseId, quantityToIncrement, StockLedgerEntryType.INCREMENTED);
+        });
+        if (stock == null) {
+            throw new BeerStockExceededException(beerId, quantityToIncrement);
+        }
+        return toDTO(stock);
+    }
+
+    public WarehouseStockDTO decrement(Long beerId, Long warehouseId, int quantityToDecrement) throws BeerNotFoundException, BeerStockExceededException {
+        verifyIfExists(beerId);
+        WarehouseStock stock = transactionTemplate.execute(status -> {
+            if (warehouseStockRepository.decrementQuantity(beerId, warehouseId, quantityToDecrement) == 0) {
+                return null;
+            }
+            return record(beerId, warehouseId, -quantityToDecrement, StockLedgerEntryType.DECREMENTED);
+        });
+        // nenhuma linha alterada: o depósito não tem a cerveja ou não tem a quantidade pedida
+        if (stock == null) {
+            throw new BeerStockExceededException(beerId, quantityToDecrement);
+        }
+        return toDTO(stock);
+    }
+
+    // unidades da quantidade da cerveja que estão nos depósitos: as linhas dos depósitos menos as alterações deles que
+    // ainda não chegaram à cerveja; o que sobra da quantidade é o estoque fora de qualquer loja, o único que as rotas sem
+    // depósito podem baixar
+    // as alterações das faixas do modo hot ficam de fora, porque não mudam nenhuma linha de depósito
+    public int assignedQuantity(Long beerId) {
+        long pending = warehouseStockDeltaRepository.sumWarehouseByBeerId(beerId).orElse(0L);
+        return (int) (warehouseStockRepository.sumQuantityByBeerId(beerId) - pending);
+    }
+
+    // grava o movimento no livro de estoque e a alteração pendente de uma faixa do modo hot na transação de quem
+    // alterou a faixa
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordHotPending(Long beerId, int delta, StockLedgerEntryType type) {
+        recordPending(beerId, delta, type, true);
+    }
+
+    // apaga os depósitos e as alterações pendentes da cerveja excluída, na transação da exclusão
+    // devolve a soma das alterações que ainda não tinham chegado ao total, para que o livro de estoque zere a cerveja
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int deleteByBeer(Long beerId) {
+        int pending = warehouseStockDeltaRepository.sumByBeerId(beerId).orElse(0L).intValue();
+        warehouseStockRepository.deleteByBeerId(beerId);
+        warehouseStockDeltaRepository.deleteByBeerId(beerId);
+        return pending;
+    }
+
+    // soma as alterações pendentes dos depósitos à quantidade total das cervejas, um bloco por transação
+    // as cervejas de cada bloco são alteradas em ordem de id, como no BeerBatchService, e cada uma recebe um UPDATE só
+    // uma soma por vez: duas somas lendo as mesmas alterações as contariam duas vezes
+    @Scheduled(fixedDelayString = "${beerstock.warehouse.aggregate-interval:1000}")
+    public void aggregate() {
+        int chunkSize = batchProperties.getChunkSize();
+        aggregateLock.lock();
+        try {
+            int aggregated;
+            do {
+                Map<Long, Integer> deltas = new TreeMap<>();
+                aggregated = transactionTemplate.execute(status -> aggregateChunk(chunkSize, deltas));
+                // depois do commit, para que o buffer releia o estoque já alterado
+                deltas.keySet().forEach(stockIncrementBuffer::evict);
+            } while (aggregated == chunkSize);
+        } finally {
+            aggregateLock.unlock();
+        }
+    }
+
+    // soma à cerveja só as alterações pendentes dela, numa transação que antes roda o passo de quem chama, como apagar
+    // as faixas do modo hot; segura a trava da soma periódica, que senão poderia ler e somar as mesmas alterações
+    public void aggregate(Long beerId, Runnable before) {
+        aggregateLock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                before.run();
+                // as alterações são apagadas pelos ids lidos, então as que chegam depois da leitura ficam para a próxima soma
+                List<WarehouseStockDelta> pending = warehouseStockDeltaRepository.findByBeerId(beerId);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                int delta = pending.stream().mapToInt(WarehouseStockDelta::getDelta).sum();
+                if (beerRepository.addQuantity(beerId, delta) > 0) {
+                    stockIndex.add(beerId, delta);
+                }
+                warehouseStockDeltaRepository.deleteAllInBatch(pending);
+                beerRepository.findById(beerId).ifPresent(beer -> beerCache.evict(beer.getName()));
+            });
+            stockIncrementBuffer.evict(beerId);
+        } finally {
+            aggregateLock.unlock();
+        }
+    }
+
+    // devolve quantas alterações pendentes foram somadas, e em deltas a soma de cada cerveja
+    private int aggregateChunk(int chunkSize, Map<Long, Integer> deltas) {
+        List<WarehouseStockDelta> pending = warehouseStockDeltaRepository.findAllByOrderByIdAsc(PageRequest.of(0, chunkSize));
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        pending.forEach(delta -> deltas.merge(delta.getBeerId(), delta.getDelta(), Integer::sum));
+        List<String> names = beerRepository.findAllById(deltas.keySet())
+                .stream()
+                .map(Beer::getName)
+                .collect(Collectors.toList());
+        deltas.forEach((beerId, delta) -> {
+            // a cerveja pode ter sido excluída depois da alteração, então o UPDATE não altera nada
+            if (beerRepository.addQuantity(beerId, delta) > 0) {
+                stockIndex.add(beerId, delta);
+            }
+        });
+        warehouseStockDeltaRepository.deleteAllInBatch(pending);
+        beerCache.evictAll(names);
+        return pending.size();
+    }
+
+    // o total é lido com a linha da cerveja travada, depois do UPDATE do depósito, na mesma ordem da reserva; como as
+    // alterações pendentes entram no total, a soma periódica nunca leva a cerveja acima do máximo
+    private boolean fitsMax(Long beerId, int quantityToIncrement) {
+        Beer beer = beerRepository.findForUpdateById(beerId).orElse(null);
+        if (beer == null) {
+            return false;
+        }
+        long total = beer.getQuantity() + warehouseStockDeltaRepository.sumByBeerId(beerId).orElse(0L);
+        return total + quantityToIncrement <= beer.getMax();
+    }
+
+    // em depósitos diferentes cada linha é criada uma vez; se duas requisições criam a mesma ao mesmo tempo, a segunda
+    // recebe a violação da chave primária e segue com a linha que a primeira criou
+    private void createIfAbsent(Long beerId, Long warehouseId) {
+        WarehouseStockId id = new WarehouseStockId(beerId, warehouseId);
+        if (warehouseStockRepository.existsById(id)) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> warehouseStockRepository.saveAndFlush(new WarehouseStock(beerId, warehouseId, 0)));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Warehouse {} stock of beer {} created concurrently", warehouseId, beerId);
+        }
+    }
+
+    // o movimento vai para o livro de estoque e para as alterações pendentes na transação do UPDATE do depósito
+    private WarehouseStock record(Long beerId, Long warehouseId, int delta, StockLedgerEntryType type) {
+        recordPending(beerId, delta, type, false);
+        return warehouseStockRepository.findById(new WarehouseStockId(beerId, warehouseId)).get();
+    }
+
+    private void recordPending(Long beerId, int delta, StockLedgerEntryType type, boolean hot) {
+        stockLedgerService.record(beerId, delta, type);
+        warehouseStockDeltaRepository.save(new WarehouseStockDelta(null, beerId, delta, hot));
+    }
+
+    private Beer verifyIfExists(Long beerId) throws BeerNotFoundException {
+        return beerRepository.findById(beerId)
+                .orElseThrow(() -> new BeerNotFoundException(beerId));
+    }
+
+    private WarehouseStockDTO toDTO(WarehouseStock stock) {
+        return new WarehouseStockDTO(stock.getBeerId(), stock.getWarehouseId(), stock.getQuantity());
+    }
+}
@@ -0,0 +1,96 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.service.BeerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// busca por nome e incremento de estoque passando pela BeerService de verdade, com o H2 em memória
+// os incrementos rodam com uma thread por núcleo, use -t 1, -t 2... para comparar com menos threads
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeerServiceBenchmark {
+
+    // uma cerveja por thread no cenário sem disputa
+    private static final int SPREAD_BEERS = 64;
+
+    private ConfigurableApplicationContext context;
+
+    private BeerService beerService;
+
+    private final List<Long> beerIds = new ArrayList<>();
+
+    private final AtomicInteger nextBeer = new AtomicInteger();
+
+    private String beerName;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        beerService = context.getBean(BeerService.class);
+        BeerRepository beerRepository = context.getBean(BeerRepository.class);
+        for (int i = 0; i < SPREAD_BEERS; i++) {
+            beerIds.add(beerRepository.save(BenchmarkContext.beer("Beer " + i)).getId());
+        }
+        beerName = "Beer 0";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // cada thread fica com a sua própria cerveja
+    @State(Scope.Thread)
+    public static class ThreadBeer {
+
+        private Long beerId;
+
+        @Setup(Level.Trial)
+        public void setUp(BeerServiceBenchmark benchmark) {
+            beerId = benchmark.beerIds.get(benchmark.nextBeer.getAndIncrement() % SPREAD_BEERS);
+        }
+    }
+
+    @Benchmark
+    public BeerDTO findByName() throws Exception {
+        return beerService.findByName(beerName);
+    }
+
+    // todas as threads disputando a mesma linha
+    @Benchmark
+    @Threads(Threads.MAX)
+    public BeerDTO incrementSameBeer() throws Exception {
+        return beerService.increment(beerIds.get(0), 1);
+    }
+
+    // cada thread na sua linha, mostra o custo do incremento sem a disputa
+    @Benchmark
+    @Threads(Threads.MAX)
+    public BeerDTO incrementSpreadBeers(ThreadBeer threadBeer) throws Exception {
+        return beerService.increment(threadBeer.beerId, 1);
+    }
+}
@@ -0,0 +1,72 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.service.HotStockService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// incrementos concorrentes numa cerveja só, com o estoque na linha da cerveja e dividido em faixas
+// a diferença depende dos núcleos da máquina: com um núcleo só as threads não chegam a disputar a linha
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class HotStockBenchmark {
+
+    private static final int SLOTS = 16;
+
+    private ConfigurableApplicationContext context;
+
+    private BeerService beerService;
+
+    private Long singleRowBeerId;
+
+    private Long stripedBeerId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start();
+        beerService = context.getBean(BeerService.class);
+        singleRowBeerId = createBeer("Beer 0").getId();
+        stripedBeerId = createBeer("Beer 1").getId();
+        context.getBean(HotStockService.class).enable(stripedBeerId, SLOTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BeerDTO incrementSingleRow() throws Exception {
+        return beerService.increment(singleRowBeerId, 1);
+    }
+
+    @Benchmark
+    public BeerDTO incrementStriped() throws Exception {
+        return beerService.increment(stripedBeerId, 1);
+    }
+
+    private BeerDTO createBeer(String name) throws Exception {
+        return beerService.createBeer(BeerMapper.INSTANCE.toDTO(BenchmarkContext.beer(name)));
+    }
+}
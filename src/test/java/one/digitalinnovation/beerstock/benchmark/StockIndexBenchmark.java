@@ -0,0 +1,87 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.service.BeerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// leitura do estoque de uma cerveja pelo índice em memória comparada aos caminhos que passam pelo JPA
+// rode com -prof gc para ver a alocação por leitura de cada caminho
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockIndexBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private StockIndex stockIndex;
+
+    private BeerService beerService;
+
+    private BeerRepository beerRepository;
+
+    private Long beerId;
+
+    private String beerName;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start();
+        stockIndex = context.getBean(StockIndex.class);
+        beerService = context.getBean(BeerService.class);
+        beerRepository = context.getBean(BeerRepository.class);
+        // pela BeerService, para que a cerveja também chegue ao índice
+        BeerDTO beerDTO = beerService.createBeer(BeerMapper.INSTANCE.toDTO(BenchmarkContext.beer("Beer 0")));
+        beerId = beerDTO.getId();
+        beerName = beerDTO.getName();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int stockIndex() {
+        return stockIndex.getQuantity(beerId);
+    }
+
+    // DTO guardado no cache por nome da BeerService
+    @Benchmark
+    public int cachedFindByName() throws Exception {
+        return beerService.findByName(beerName).getQuantity();
+    }
+
+    // entidade vinda do cache de segundo nível do Hibernate
+    @Benchmark
+    public Optional<Beer> jpaFindById() {
+        return beerRepository.findById(beerId);
+    }
+
+    // SELECT no banco, como o incremento faz para devolver a quantidade nova
+    @Benchmark
+    public Optional<Beer> jpaFindCurrentById() {
+        return beerRepository.findCurrentById(beerId);
+    }
+}
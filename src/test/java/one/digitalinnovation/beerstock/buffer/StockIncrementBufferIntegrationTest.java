@@ -0,0 +1,329 @@
+package one.digitalinnovation.beerstock.buffer;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.config.WriteBehindProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.StockIncrementCarryOverRepository;
+import one.digitalinnovation.beerstock.repository.StockJournalCheckpointRepository;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.service.StockLedgerService;
+import one.digitalinnovation.beerstock.service.WarehouseStockService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static one.digitalinnovation.beerstock.metrics.SqlStatementAssertions.assertStatementCount;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// testa o buffer de incrementos ligado, com a descarga agendada de hora em hora para que só os testes descarreguem
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehind;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.write-behind.enabled=true",
+        "beerstock.write-behind.flush-interval=3600000",
+        "beerstock.write-behind.max-pending-increments=100000",
+        "beerstock.write-behind.journal-directory=target/write-behind/${random.uuid}"
+})
+public class StockIncrementBufferIntegrationTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private StockIncrementBuffer stockIncrementBuffer;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private StockJournalCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private StockIncrementCarryOverRepository carryOverRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BeerCache beerCache;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private StockIndex stockIndex;
+
+    @Autowired
+    private WriteBehindProperties writeBehindProperties;
+
+    @Autowired
+    private WarehouseStockService warehouseStockService;
+
+    @TempDir
+    Path journalDirectory;
+
+    @AfterEach
+    void tearDown() {
+        stockIncrementBuffer.flush();
+        beerRepository.deleteAll();
+    }
+
+    @Test
+    // só a primeira conferência lê a cerveja, os incrementos seguintes não vão ao banco até a descarga
+    void whenIncrementsAreBufferedThenTheyReachTheDatabaseOnlyOnFlush() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(500, 10);
+
+        assertStatementCount(1, 0, 0, 0, () -> beerService.increment(createdBeerDTO.getId(), 1));
+        assertStatementCount(0, 0, 0, 0, () -> {
+            for (int i = 0; i < 48; i++) {
+                beerService.increment(createdBeerDTO.getId(), 1);
+            }
+        });
+        BeerDTO incrementedBeerDTO = beerService.increment(createdBeerDTO.getId(), 1);
+
+        assertThat(incrementedBeerDTO.getQuantity(), is(equalTo(60)));
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(10)));
+
+        stockIncrementBuffer.flush();
+
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(60)));
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(60)));
+    }
+
+    @Test
+    // a conferência do máximo já soma os incrementos que ainda não chegaram ao banco
+    void whenBufferedIncrementsReachMaxThenNextIncrementIsRejected() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 90);
+
+        beerService.increment(createdBeerDTO.getId(), 10);
+
+        assertThrows(BeerStockExceededException.class, () -> beerService.increment(createdBeerDTO.getId(), 1));
+        stockIncrementBuffer.flush();
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(100)));
+    }
+
+    @Test
+    // incrementos concorrentes na mesma cerveja param exatamente no máximo
+    void whenConcurrentIncrementsExceedMaxThenStockStopsAtMax() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(300, 0);
+        AtomicInteger acceptedIncrements = new AtomicInteger();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        try {
+                            beerService.increment(createdBeerDTO.getId(), 1);
+                            acceptedIncrements.incrementAndGet();
+                        } catch (BeerStockExceededException e) {
+                            // esperado quando o estoque chega no máximo
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        stockIncrementBuffer.flush();
+
+        assertThat(acceptedIncrements.get(), is(equalTo(300)));
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(300)));
+    }
+
+    @Test
+    // o decremento descarrega o buffer antes de ler o estoque, então enxerga os incrementos já confirmados
+    void whenBufferedIncrementIsFollowedByDecrementThenDecrementSeesIt() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 0);
+
+        beerService.increment(createdBeerDTO.getId(), 5);
+        BeerDTO decrementedBeerDTO = beerService.decrement(createdBeerDTO.getId(), 5);
+
+        assertThat(decrementedBeerDTO.getQuantity(), is(equalTo(0)));
+        assertThat(beerService.increment(createdBeerDTO.getId(), 100).getQuantity(), is(equalTo(100)));
+    }
+
+    @Test
+    // sem descarga nem desligamento, o buffer seguinte aplica o que ficou no diário
+    void whenBufferStopsWithoutFlushThenJournaledIncrementsAreRecovered() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+
+        StockIncrementBuffer crashedBuffer = newBuffer();
+        crashedBuffer.increment(createdBeerDTO.getId(), 5);
+        crashedBuffer.increment(createdBeerDTO.getId(), 7);
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(10)));
+
+        StockIncrementBuffer restartedBuffer = newBuffer();
+        try {
+            assertThat(databaseQuantity(createdBeerDTO), is(equalTo(22)));
+        } finally {
+            restartedBuffer.destroy();
+        }
+
+        // o segmento já aplicado não volta a ser aplicado
+        newBuffer().destroy();
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(22)));
+    }
+
+    @Test
+    // a descarga disparada pelo limite de pendentes grava na própria transação, então o rollback da requisição não a desfaz
+    void whenFlushIsTriggeredInsideARolledBackTransactionThenIncrementsAreKept() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+
+        StockIncrementBuffer buffer = newBuffer(2);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    buffer.increment(createdBeerDTO.getId(), 3);
+                    buffer.increment(createdBeerDTO.getId(), 4);
+                } catch (BeerNotFoundException | BeerStockExceededException e) {
+                    throw new IllegalStateException(e);
+                }
+                status.setRollbackOnly();
+            });
+            assertThat(databaseQuantity(createdBeerDTO), is(equalTo(17)));
+        } finally {
+            buffer.destroy();
+        }
+
+        // o segmento gravado não volta a ser aplicado na subida
+        newBuffer(100_000).destroy();
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(17)));
+    }
+
+    @Test
+    // com descargas frequentes cruzando as releituras feitas depois dos decrementos, nenhum incremento confirmado se perde
+    void whenFlushesCrossStaleReadsThenNoAcknowledgedIncrementIsLost() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(150, 0);
+        AtomicInteger acceptedIncrements = new AtomicInteger();
+        AtomicInteger acceptedDecrements = new AtomicInteger();
+        int maxPendingIncrements = writeBehindProperties.getMaxPendingIncrements();
+        writeBehindProperties.setMaxPendingIncrements(5);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        try {
+                            if (j % 5 == 4) {
+                                beerService.decrement(createdBeerDTO.getId(), 1);
+                                acceptedDecrements.incrementAndGet();
+                            } else {
+                                beerService.increment(createdBeerDTO.getId(), 1);
+                                acceptedIncrements.incrementAndGet();
+                            }
+                        } catch (BeerStockExceededException e) {
+                            // esperado perto do máximo ou com o estoque zerado
+                        } catch (OptimisticLockingFailureException e) {
+                            // o decremento desistiu depois das tentativas, sem baixar nada
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+            writeBehindProperties.setMaxPendingIncrements(maxPendingIncrements);
+        }
+        stockIncrementBuffer.flush();
+
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(acceptedIncrements.get() - acceptedDecrements.get())));
+    }
+
+    @Test
+    // o estoque que subiu por fora do buffer antes da descarga não descarta o incremento confirmado: ele continua
+    // pendente, contando no máximo, e chega ao banco na descarga seguinte em que couber
+    void whenStockRisesOutsideTheBufferBeforeFlushThenAcknowledgedIncrementIsKept() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(10, 0);
+
+        beerService.increment(createdBeerDTO.getId(), 5);
+        warehouseStockService.increment(createdBeerDTO.getId(), 1L, 8);
+        warehouseStockService.aggregate();
+        stockIncrementBuffer.flush();
+
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(8)));
+        assertThrows(BeerStockExceededException.class, () -> beerService.increment(createdBeerDTO.getId(), 1));
+
+        warehouseStockService.decrement(createdBeerDTO.getId(), 1L, 5);
+        warehouseStockService.aggregate();
+        stockIncrementBuffer.flush();
+
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(8)));
+        assertThat(carryOverRepository.count(), is(equalTo(0L)));
+    }
+
+    @Test
+    // ao desligar, os incrementos pendentes chegam ao banco
+    void whenBufferIsDestroyedThenPendingIncrementsAreFlushed() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+
+        StockIncrementBuffer buffer = newBuffer();
+        buffer.increment(createdBeerDTO.getId(), 3);
+        buffer.destroy();
+
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(13)));
+    }
+
+    private StockIncrementBuffer newBuffer() throws Exception {
+        return newBuffer(100_000);
+    }
+
+    // outra instância do buffer no mesmo banco, com o diário numa pasta só do teste
+    private StockIncrementBuffer newBuffer(int maxPendingIncrements) throws Exception {
+        WriteBehindProperties writeBehindProperties = new WriteBehindProperties();
+        writeBehindProperties.setEnabled(true);
+        writeBehindProperties.setMaxPendingIncrements(maxPendingIncrements);
+        writeBehindProperties.setJournalDirectory(journalDirectory.toString());
+        StockIncrementBuffer buffer = new StockIncrementBuffer(writeBehindProperties, beerRepository,
+                checkpointRepository, carryOverRepository, transactionTemplate, beerCache, stockLedgerService, stockIndex);
+        buffer.afterPropertiesSet();
+        return buffer;
+    }
+
+    private int databaseQuantity(BeerDTO beerDTO) {
+        return beerRepository.findCurrentById(beerDTO.getId()).get().getQuantity();
+    }
+
+    private BeerDTO createBeer(int max, int quantity) throws BeerAlreadyRegisteredException {
+        BeerDTO beerDTO = BeerDTOBuilder.builder()
+                .id(null)
+                .max(max)
+                .quantity(quantity)
+                .build()
+                .toBeerDTO();
+        return beerService.createBeer(beerDTO);
+    }
+}
@@ -0,0 +1,87 @@
+package one.digitalinnovation.beerstock.cache;
+
+import one.digitalinnovation.beerstock.config.IdempotencyProperties;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.IdempotencyKeyReusedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// testa as respostas guardadas por Idempotency-Key sem o Spring
+public class IdempotencyStoreTest {
+
+    private static final int THREADS = 8;
+
+    private final IdempotencyStore idempotencyStore = new IdempotencyStore(new IdempotencyProperties());
+
+    @Test
+    // a mesma chave chegando em várias threads roda a operação uma vez só, e todas recebem o mesmo resultado
+    void whenSameKeyArrivesConcurrentlyThenOperationRunsOnce() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    return idempotencyStore.execute("increment", "key", List.of(1L, 10), () -> {
+                        Thread.sleep(50);
+                        return runs.incrementAndGet();
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS), is(equalTo(1)));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(runs.get(), is(equalTo(1)));
+    }
+
+    @Test
+    // a recusa da regra de negócio é repetida, e a mesma chave com outra requisição é recusada
+    void whenKeyIsRepeatedThenCheckedExceptionIsReplayedAndOtherRequestIsRejected() {
+        AtomicInteger runs = new AtomicInteger();
+        IdempotencyStore.IdempotentOperation<Integer, BeerStockExceededException, RuntimeException> exceeded = () -> {
+            runs.incrementAndGet();
+            throw new BeerStockExceededException(1L, 10);
+        };
+
+        assertThrows(BeerStockExceededException.class, () -> idempotencyStore.execute("increment", "key", List.of(1L, 10), exceeded));
+        assertThrows(BeerStockExceededException.class, () -> idempotencyStore.execute("increment", "key", List.of(1L, 10), exceeded));
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotencyStore.execute("increment", "key", List.of(1L, 5), exceeded));
+
+        assertThat(runs.get(), is(equalTo(1)));
+    }
+
+    @Test
+    // a falha inesperada não fica guardada, então a mesma chave roda de novo
+    void whenOperationFailsUnexpectedlyThenKeyCanBeRetried() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> idempotencyStore.execute("create", "key", "beer", () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException();
+        }));
+        int result = idempotencyStore.execute("create", "key", "beer", runs::incrementAndGet);
+
+        assertThat(result, is(equalTo(2)));
+    }
+}
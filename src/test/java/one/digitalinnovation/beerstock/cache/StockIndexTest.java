@@ -0,0 +1,78 @@
+package one.digitalinnovation.beerstock.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+// testa o índice de estoque sem o Spring e sem transação, então as escritas chegam ao índice na hora
+public class StockIndexTest {
+
+    private static final int THREADS = 8;
+
+    private final StockIndex stockIndex = new StockIndex(null, null);
+
+    @Test
+    // quantidade e máximo voltam como foram gravados, e a cerveja excluída deixa de ser encontrada
+    void whenBeerIsPutAndRemovedThenReadsFollow() {
+        stockIndex.put(1L, 10, 50);
+        stockIndex.add(1L, 5);
+        stockIndex.put(2L, 0, Integer.MAX_VALUE);
+
+        assertThat(stockIndex.getQuantity(1L), is(equalTo(15)));
+        assertThat(stockIndex.getMax(1L), is(equalTo(50)));
+        assertThat(StockIndex.maxOf(stockIndex.getStock(2L)), is(equalTo(Integer.MAX_VALUE)));
+
+        stockIndex.remove(1L);
+        stockIndex.add(1L, 5);
+
+        assertThat(stockIndex.getQuantity(1L), is(equalTo(StockIndex.UNKNOWN)));
+        assertThat(stockIndex.getQuantity(3L), is(equalTo(StockIndex.UNKNOWN)));
+        assertThat(stockIndex.size(), is(equalTo(1)));
+    }
+
+    @Test
+    // somas concorrentes não se perdem nem enquanto cadastros fazem a tabela crescer várias vezes
+    void whenStockIsAddedWhileTableGrowsThenNoAddIsLost() throws Exception {
+        int hotBeers = 16;
+        int addsPerThread = 20_000;
+        for (long id = 1; id <= hotBeers; id++) {
+            stockIndex.put(id, 0, Integer.MAX_VALUE);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executorService.submit(() -> {
+                for (long id = hotBeers + 1; id <= 100_000; id++) {
+                    stockIndex.put(id, 1, 1);
+                }
+            }));
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < addsPerThread; j++) {
+                        stockIndex.add(j % hotBeers + 1, 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        for (long id = 1; id <= hotBeers; id++) {
+            assertThat(stockIndex.getQuantity(id), is(equalTo(THREADS * addsPerThread / hotBeers)));
+        }
+        assertThat(stockIndex.size(), is(equalTo(100_000)));
+    }
+}
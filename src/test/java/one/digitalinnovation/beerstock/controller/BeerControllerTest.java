@@ -1,34 +1,74 @@
 package one.digitalinnovation.beerstock.controller;
 
 import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.cache.IdempotencyStore;
+import one.digitalinnovation.beerstock.config.IdempotencyProperties;
+import one.digitalinnovation.beerstock.dto.BeerCreationResultDTO;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerPageDTO;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
 import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.dto.StockLevelDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementResultDTO;
+import one.digitalinnovation.beerstock.dto.HotStockDTO;
+import one.digitalinnovation.beerstock.dto.StockReservationDTO;
+import one.digitalinnovation.beerstock.dto.WarehouseStockDTO;
+import one.digitalinnovation.beerstock.enums.BeerCreationStatus;
+import one.digitalinnovation.beerstock.enums.StockMovementStatus;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import one.digitalinnovation.beerstock.exception.InvalidCursorException;
+import one.digitalinnovation.beerstock.exception.InvalidRatioException;
+import one.digitalinnovation.beerstock.service.BeerBatchService;
+import one.digitalinnovation.beerstock.service.BeerExportService;
 import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.service.StockLedgerService;
+import one.digitalinnovation.beerstock.service.HotStockService;
+import one.digitalinnovation.beerstock.service.StockReservationService;
+import one.digitalinnovation.beerstock.service.WarehouseStockService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
 
 import static one.digitalinnovation.beerstock.utils.JsonConvertionUtils.asJsonString;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.mock.http.server.reactive.MockServerHttpRequest.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -49,11 +89,38 @@ public class BeerControllerTest {
     // caminho do decremento
     private static final String BEER_API_SUBPATH_DECREMENT_URL = "/decrement";
 
+    // caminho da criação de cervejas em lote
+    private static final String BEER_API_SUBPATH_BULK_URL = "/bulk";
+
+    // caminho das movimentações de estoque em lote
+    private static final String BEER_API_SUBPATH_STOCK_MOVEMENTS_URL = "/stock-movements";
+
     private MockMvc mockMvc;
 
     @Mock
     private BeerService beerService;
 
+    @Mock
+    private BeerBatchService beerBatchService;
+
+    @Mock
+    private BeerExportService beerExportService;
+
+    @Mock
+    private StockLedgerService stockLedgerService;
+
+    @Mock
+    private WarehouseStockService warehouseStockService;
+
+    @Mock
+    private HotStockService hotStockService;
+
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Spy
+    private IdempotencyStore idempotencyStore = new IdempotencyStore(new IdempotencyProperties());
+
     @InjectMocks
     private BeerController beerController;
 
@@ -176,8 +243,8 @@ public class BeerControllerTest {
         BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
 
         //when
-        // mostra todas as cervejas da lista e retorna uma lista imutável contendo a beerDTO
-        when(beerService.listAll()).thenReturn(Collections.singletonList(beerDTO));
+        // mostra a primeira página de cervejas contendo a beerDTO
+        when(beerService.listPage(null, null)).thenReturn(new BeerPageDTO(Collections.singletonList(beerDTO), null));
 
         // then
         // passa o endereço que permite acessar uma API e seus vários recursos
@@ -186,6 +253,8 @@ public class BeerControllerTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 // espera um status ok 
                 .andExpect(status().isOk())
+                // é a última página, então não tem cursor
+                .andExpect(header().doesNotExist(BeerController.NEXT_CURSOR_HEADER))
                 // pega o primeiro nome da lista
                 .andExpect(jsonPath("$[0].name", is(beerDTO.getName())))
                 // pega a primeira marca da lista
@@ -202,8 +271,8 @@ public class BeerControllerTest {
         BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
 
         //when
-        // mostra todas as cervejas da lista e retorna uma lista imutável contendo a beerDTO
-        when(beerService.listAll()).thenReturn(Collections.singletonList(beerDTO));
+        // mostra a primeira página de cervejas contendo a beerDTO
+        when(beerService.listPage(null, null)).thenReturn(new BeerPageDTO(Collections.singletonList(beerDTO), null));
 
         // then
         // passa o endereço que permite acessar uma API e seus vários recursos
@@ -214,6 +283,241 @@ public class BeerControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    // a listagem devolve a versão do catálogo como ETag e, quando o cliente já tem essa versão, responde 304 sem consultar a página
+    void whenGETListIsCalledWithCurrentETagThenNotModifiedIsReturned() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        when(beerService.catalogVersionTag()).thenReturn("1-5");
+        when(beerService.listPage(null, null)).thenReturn(new BeerPageDTO(Collections.singletonList(beerDTO), null));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-5\""));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1-5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(beerService, times(1)).listPage(null, null);
+    }
+
+    @Test
+    // a cerveja alterada depois do ETag do cliente é devolvida inteira com o ETag novo
+    void whenGETIsCalledWithOldETagThenBeerIsReturned() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        when(beerService.findByName(beerDTO.getName())).thenReturn(beerDTO);
+        when(beerService.versionTag(beerDTO)).thenReturn("1-7");
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + beerDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1-5\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-7\""))
+                .andExpect(jsonPath("$.name", is(beerDTO.getName())));
+    }
+
+    @Test
+    // o nome inexistente responde 404 mesmo com If-None-Match, nunca 304
+    void whenGETIsCalledWithETagForMissingBeerThenNotFoundIsReturned() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        when(beerService.findByName(beerDTO.getName())).thenThrow(BeerNotFoundException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + beerDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1-0\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    // quando existe uma próxima página o cursor é devolvido no cabeçalho
+    void whenGETListWithCursorIsCalledThenNextCursorHeaderIsReturned() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+
+        when(beerService.listPage("abc", 1)).thenReturn(new BeerPageDTO(Collections.singletonList(beerDTO), "def"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH)
+                .param("cursor", "abc")
+                .param("size", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BeerController.NEXT_CURSOR_HEADER, "def"))
+                .andExpect(jsonPath("$[0].name", is(beerDTO.getName())));
+    }
+
+    @Test
+    // os filtros da busca são repassados para a service e o cursor volta no cabeçalho
+    void whenGETSearchIsCalledWithFiltersThenFilteredBeersAreReturned() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+
+        when(beerService.search(beerDTO.getBrand(), beerDTO.getType(), 5, null, null))
+                .thenReturn(new BeerPageDTO(Collections.singletonList(beerDTO), "def"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/search")
+                .param("brand", beerDTO.getBrand())
+                .param("type", beerDTO.getType().name())
+                .param("maxQuantity", "5")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BeerController.NEXT_CURSOR_HEADER, "def"))
+                .andExpect(jsonPath("$[0].name", is(beerDTO.getName())));
+    }
+
+    @Test
+    // um tipo de cerveja que não existe retorna um status BadRequest
+    void whenGETSearchIsCalledWithInvalidTypeThenBadRequestStatusIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/search")
+                .param("type", "WATER")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    // sem proporção informada a consulta de estoque baixo usa 0.2
+    void whenGETLowStockIsCalledThenLowStockBeersAreReturned() throws Exception {
+        LowStockBeerDTO lowStockBeer = LowStockBeerDTO.builder().id(1L).name("Brahma").quantity(5).max(50).quantityToReorder(45).build();
+
+        when(beerService.findLowStock(0.2)).thenReturn(Collections.singletonList(lowStockBeer));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/low-stock")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("Brahma")))
+                .andExpect(jsonPath("$[0].quantityToReorder", is(45)));
+    }
+
+    @Test
+    // uma proporção inválida retorna um status BadRequest
+    void whenGETLowStockIsCalledWithInvalidRatioThenBadRequestStatusIsReturned() throws Exception {
+        when(beerService.findLowStock(2.0)).thenThrow(InvalidRatioException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/low-stock")
+                .param("ratio", "2.0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    // o instante informado chega ao livro de estoque como Instant
+    void whenGETStockIsCalledWithInstantThenStockAtThatInstantIsReturned() throws Exception {
+        Instant at = Instant.parse("2024-05-01T10:15:30Z");
+        when(stockLedgerService.stockAt(1L, at)).thenReturn(new BeerStockDTO(1L, 7, at));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/1/stock")
+                .param("at", "2024-05-01T10:15:30Z")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.quantity", is(7)));
+    }
+
+    @Test
+    // sem movimentos até o instante a cerveja não é encontrada
+    void whenGETStockIsCalledForUnknownBeerThenNotFoundStatusIsReturned() throws Exception {
+        when(stockLedgerService.stockAt(any(), any())).thenThrow(BeerNotFoundException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/1/stock")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    // o estoque do índice em memória vem com quantidade e máximo
+    void whenGETQuantityIsCalledThenStockLevelIsReturned() throws Exception {
+        when(beerService.findStockLevel(VALID_BEER_ID)).thenReturn(new StockLevelDTO(VALID_BEER_ID, 10, 50));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/quantity")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(10)))
+                .andExpect(jsonPath("$.max", is(50)));
+    }
+
+    @Test
+    // o incremento num depósito devolve só o estoque daquele depósito
+    void whenPATCHIsCalledToIncrementWarehouseThenWarehouseStockIsReturned() throws Exception {
+        when(warehouseStockService.increment(VALID_BEER_ID, 7L, 5)).thenReturn(new WarehouseStockDTO(VALID_BEER_ID, 7L, 5));
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/warehouses/7" + BEER_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDTO(5))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.warehouseId", is(7)))
+                .andExpect(jsonPath("$.quantity", is(5)));
+    }
+
+    @Test
+    // a reserva criada volta com o id e o vencimento, e a reserva já encerrada não é encontrada
+    void whenPOSTReservationIsCalledThenReservationIsCreated() throws Exception {
+        Instant expiresAt = Instant.parse("2024-05-01T10:20:30Z");
+        when(stockReservationService.reserve(VALID_BEER_ID, 3)).thenReturn(new StockReservationDTO(9L, VALID_BEER_ID, 3, expiresAt));
+        doThrow(new ReservationNotFoundException(VALID_BEER_ID, 9L)).when(stockReservationService).release(VALID_BEER_ID, 9L);
+
+        mockMvc.perform(MockMvcRequestBuilders.post(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDTO(3))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(9)))
+                .andExpect(jsonPath("$.quantity", is(3)));
+        mockMvc.perform(MockMvcRequestBuilders.delete(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/reservations/9"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    // o modo hot aceita de 2 a 64 faixas
+    void whenPUTHotIsCalledThenBeerStockIsSplitIntoSlots() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/hot")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new HotStockDTO(8))))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(MockMvcRequestBuilders.put(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/hot")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new HotStockDTO(1))))
+                .andExpect(status().isBadRequest());
+
+        verify(hotStockService).enable(VALID_BEER_ID, 8);
+    }
+
+    @Test
+    // o relatório de reposição traz uma linha por marca
+    void whenGETReorderReportIsCalledThenReportIsReturned() throws Exception {
+        when(beerService.reorderReport()).thenReturn(Collections.singletonList(new BrandReorderDTO("Ambev", 2L, 50L)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/reorder-report")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].brand", is("Ambev")))
+                .andExpect(jsonPath("$[0].quantityToReorder", is(50)));
+    }
+
+    @Test
+    // quando o cursor é inválido um status BadRequest é retornado
+    void whenGETListWithInvalidCursorIsCalledThenBadRequestStatusIsReturned() throws Exception {
+        when(beerService.listPage("abc", null)).thenThrow(InvalidCursorException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH)
+                .param("cursor", "abc")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    // quando a exportação é chamada as cervejas são escritas na resposta como NDJSON
+    void whenGETExportIsCalledThenBeersAreStreamedAsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(0);
+            outputStream.write("{\"name\":\"Brahma\"}\n{\"name\":\"Skol\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(beerExportService).exportAll(any(OutputStream.class));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", BeerController.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string("{\"name\":\"Brahma\"}\n{\"name\":\"Skol\"}\n"));
+    }
+
     @Test
     // quando o método DELETE é chamado sem validação nenhum status é retornado
     void whenDELETEIsCalledWithValidIdThenNoContentStatusIsReturned() throws Exception {
@@ -279,6 +583,34 @@ public class BeerControllerTest {
                 .andExpect(jsonPath("$.quantity", is(beerDTO.getQuantity())));
     }
 
+    @Test
+    // quando o incremento é repetido com a mesma Idempotency-Key a resposta é a mesma e o estoque só sobe uma vez
+    void whenPATCHIsRepeatedWithSameIdempotencyKeyThenIncrementIsAppliedOnce() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        beerDTO.setQuantity(beerDTO.getQuantity() + quantityDTO.getQuantity());
+
+        when(beerService.increment(VALID_BEER_ID, quantityDTO.getQuantity())).thenReturn(beerDTO);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_INCREMENT_URL)
+                    .header(BeerController.IDEMPOTENCY_KEY_HEADER, "order-42")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(asJsonString(quantityDTO))).andExpect(status().isOk())
+                    .andExpect(jsonPath("$.quantity", is(beerDTO.getQuantity())));
+        }
+
+        // a mesma chave com outra quantidade é recusada
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_INCREMENT_URL)
+                .header(BeerController.IDEMPOTENCY_KEY_HEADER, "order-42")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(QuantityDTO.builder().quantity(5).build()))).andExpect(status().isUnprocessableEntity());
+
+        verify(beerService, times(1)).increment(VALID_BEER_ID, quantityDTO.getQuantity());
+    }
+
 //    @Test
 //    void whenPATCHIsCalledToIncrementGreatherThanMaxThenBadRequestStatusIsReturned() throws Exception {
 //        QuantityDTO quantityDTO = QuantityDTO.builder()
@@ -308,52 +640,108 @@ public class BeerControllerTest {
 //                .andExpect(status().isNotFound());
 //    }
 //
-//    @Test
-//    void whenPATCHIsCalledToDecrementDiscountThenOKstatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(5)
-//                .build();
-//
-//        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        beerDTO.setQuantity(beerDTO.getQuantity() + quantityDTO.getQuantity());
-//
-//        when(beerService.decrement(VALID_BEER_ID, quantityDTO.getQuantity())).thenReturn(beerDTO);
-//
-//        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO))).andExpect(status().isOk())
-//                .andExpect(jsonPath("$.name", is(beerDTO.getName())))
-//                .andExpect(jsonPath("$.brand", is(beerDTO.getBrand())))
-//                .andExpect(jsonPath("$.type", is(beerDTO.getType().toString())))
-//                .andExpect(jsonPath("$.quantity", is(beerDTO.getQuantity())));
-//    }
-//
-//    @Test
-//    void whenPATCHIsCalledToDEcrementLowerThanZeroThenBadRequestStatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(60)
-//                .build();
-//
-//        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        beerDTO.setQuantity(beerDTO.getQuantity() + quantityDTO.getQuantity());
-//
-//        when(beerService.decrement(VALID_BEER_ID, quantityDTO.getQuantity())).thenThrow(BeerStockExceededException.class);
-//
-//        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
-//    }
-//
-//    @Test
-//    void whenPATCHIsCalledWithInvalidBeerIdToDecrementThenNotFoundStatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(5)
-//                .build();
-//
-//        when(beerService.decrement(INVALID_BEER_ID, quantityDTO.getQuantity())).thenThrow(BeerNotFoundException.class);
-//        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + INVALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO)))
-//                .andExpect(status().isNotFound());
-//    }
+    @Test
+    void whenPATCHIsCalledToDecrementDiscountThenOKstatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        beerDTO.setQuantity(beerDTO.getQuantity() + quantityDTO.getQuantity());
+
+        when(beerService.decrement(VALID_BEER_ID, quantityDTO.getQuantity())).thenReturn(beerDTO);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is(beerDTO.getName())))
+                .andExpect(jsonPath("$.brand", is(beerDTO.getBrand())))
+                .andExpect(jsonPath("$.type", is(beerDTO.getType().toString())))
+                .andExpect(jsonPath("$.quantity", is(beerDTO.getQuantity())));
+    }
+
+    @Test
+    void whenPATCHIsCalledToDEcrementLowerThanZeroThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(60)
+                .build();
+
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        beerDTO.setQuantity(beerDTO.getQuantity() + quantityDTO.getQuantity());
+
+        when(beerService.decrement(VALID_BEER_ID, quantityDTO.getQuantity())).thenThrow(BeerStockExceededException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPATCHIsCalledWithInvalidBeerIdToDecrementThenNotFoundStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        when(beerService.decrement(INVALID_BEER_ID, quantityDTO.getQuantity())).thenThrow(BeerNotFoundException.class);
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + INVALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    // quando o decremento esgota as tentativas por conflito de versão um status Conflict é retornado
+    void whenPATCHIsCalledToDecrementWithExhaustedRetriesThenConflictStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        when(beerService.decrement(VALID_BEER_ID, quantityDTO.getQuantity())).thenThrow(ObjectOptimisticLockingFailureException.class);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    // quando o método POST de movimentações é chamado o resultado de cada movimentação é retornado
+    void whenPOSTIsCalledWithStockMovementsThenResultOfEachMovementIsReturned() throws Exception {
+        List<StockMovementDTO> movements = List.of(
+                StockMovementDTO.builder().id(VALID_BEER_ID).delta(5).build(),
+                StockMovementDTO.builder().id(INVALID_BEER_ID).delta(-1).build());
+        List<StockMovementResultDTO> results = List.of(
+                StockMovementResultDTO.builder().id(VALID_BEER_ID).delta(5).status(StockMovementStatus.APPLIED).quantity(15).build(),
+                StockMovementResultDTO.builder().id(INVALID_BEER_ID).delta(-1).status(StockMovementStatus.NOT_FOUND).build());
+
+        when(beerBatchService.applyMovements(movements)).thenReturn(results);
+
+        mockMvc.perform(post(BEER_API_URL_PATH + BEER_API_SUBPATH_STOCK_MOVEMENTS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(movements)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(StockMovementStatus.APPLIED.toString())))
+                .andExpect(jsonPath("$[0].quantity", is(15)))
+                .andExpect(jsonPath("$[1].status", is(StockMovementStatus.NOT_FOUND.toString())));
+    }
+
+    @Test
+    // quando o método POST de criação em lote é chamado o resultado de cada cerveja é retornado
+    void whenPOSTIsCalledWithBulkBeersThenResultOfEachBeerIsReturned() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        List<BeerDTO> beerDTOs = List.of(beerDTO, beerDTO);
+        List<BeerCreationResultDTO> results = List.of(
+                BeerCreationResultDTO.builder().name(beerDTO.getName()).status(BeerCreationStatus.CREATED).beer(beerDTO).build(),
+                BeerCreationResultDTO.builder().name(beerDTO.getName()).status(BeerCreationStatus.DUPLICATED).build());
+
+        when(beerBatchService.createBeers(beerDTOs)).thenReturn(results);
+
+        mockMvc.perform(post(BEER_API_URL_PATH + BEER_API_SUBPATH_BULK_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(beerDTOs)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(BeerCreationStatus.CREATED.toString())))
+                .andExpect(jsonPath("$[0].beer.name", is(beerDTO.getName())))
+                .andExpect(jsonPath("$[1].status", is(BeerCreationStatus.DUPLICATED.toString())));
+    }
 }
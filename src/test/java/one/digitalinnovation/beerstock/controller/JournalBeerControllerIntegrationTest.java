@@ -0,0 +1,160 @@
+package one.digitalinnovation.beerstock.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.service.BeerStore;
+import one.digitalinnovation.beerstock.service.HotStockService;
+import one.digitalinnovation.beerstock.service.JournalBeerStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.sql.DataSource;
+
+import static one.digitalinnovation.beerstock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// testa a API com o perfil journal de ponta a ponta: sem banco, com as cervejas no diário de uma pasta só do teste
+@ActiveProfiles("journal")
+@SpringBootTest(properties = "beerstock.journal.directory=target/journal/${random.uuid}")
+@AutoConfigureMockMvc
+public class JournalBeerControllerIntegrationTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    // o perfil não sobe o banco nem os serviços que dependem dele; o BeerService atende pelo JournalBeerStore
+    void whenJournalProfileIsActiveThenNoDatabaseIsCreated() {
+        assertThat(applicationContext.getBeanNamesForType(DataSource.class), is(emptyArray()));
+        assertThat(applicationContext.getBeanNamesForType(HotStockService.class), is(emptyArray()));
+        assertThat(applicationContext.getBean(BeerStore.class), is(instanceOf(JournalBeerStore.class)));
+    }
+
+    @Test
+    // cadastro, busca, movimentação de estoque e exclusão com os mesmos status da versão com banco
+    void whenBeerIsCreatedMovedAndDeletedThenSameStatusAsDatabaseVersionIsReturned() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).max(50).quantity(10).build().toBeerDTO();
+
+        mockMvc.perform(MockMvcRequestBuilders.post(BEER_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(beerDTO)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(MockMvcRequestBuilders.post(BEER_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(beerDTO)))
+                .andExpect(status().isBadRequest());
+
+        BeerDTO foundBeerDTO = findByName(beerDTO.getName());
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + foundBeerDTO.getId() + "/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDTO(15))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(25)));
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + foundBeerDTO.getId() + "/decrement")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDTO(30))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.patch(BEER_API_URL_PATH + "/" + foundBeerDTO.getId() + "/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDTO(30))))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/search")
+                .param("maxQuantity", "25"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(beerDTO.getName())));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete(BEER_API_URL_PATH + "/" + foundBeerDTO.getId()))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + beerDTO.getName()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    // o BeerController atende o perfil com o estoque por id, os GETs condicionais e o Idempotency-Key
+    void whenJournalProfileIsActiveThenStockLevelEtagsAndIdempotencyKeysAreServed() throws Exception {
+        // acima do filtro de estoque da busca do outro teste
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("Journal Lager").max(100).quantity(30).build().toBeerDTO();
+        mockMvc.perform(MockMvcRequestBuilders.post(BEER_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(beerDTO)))
+                .andExpect(status().isCreated());
+        BeerDTO foundBeerDTO = findByName(beerDTO.getName());
+        String incrementPath = BEER_API_URL_PATH + "/" + foundBeerDTO.getId() + "/increment";
+
+        String beerEtag = mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + beerDTO.getName()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + beerDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, beerEtag))
+                .andExpect(status().isNotModified());
+        String catalogEtag = mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // a mesma chave repete a resposta sem incrementar de novo
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(MockMvcRequestBuilders.patch(incrementPath)
+                    .header(BeerController.IDEMPOTENCY_KEY_HEADER, "journal-increment")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(asJsonString(new QuantityDTO(5))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.quantity", is(35)));
+        }
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + foundBeerDTO.getId() + "/quantity"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(35)))
+                .andExpect(jsonPath("$.max", is(100)));
+
+        // o incremento tirou a cerveja do cache e mudou os dois ETags
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + beerDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, beerEtag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(35)));
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, catalogEtag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + (foundBeerDTO.getId() + 1000) + "/quantity"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    // as rotas dos serviços que dependem do banco respondem 501
+    void whenDatabaseOnlyOperationIsCalledThenNotImplementedIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put(BEER_API_URL_PATH + "/1/hot")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"slots\": 4}"))
+                .andExpect(status().isNotImplemented());
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/1/available"))
+                .andExpect(status().isNotImplemented());
+    }
+
+    private BeerDTO findByName(String name) throws Exception {
+        String body = mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + name))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, BeerDTO.class);
+    }
+}
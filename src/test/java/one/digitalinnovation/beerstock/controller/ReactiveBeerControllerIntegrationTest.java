@@ -0,0 +1,188 @@
+package one.digitalinnovation.beerstock.controller;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.service.ReactiveBeerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+// testa a variante reativa da API de ponta a ponta, no Netty e com o R2DBC no banco H2 em memória
+@ActiveProfiles("reactive")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.reactive.url=r2dbc:h2:mem:///reactive?options=DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+public class ReactiveBeerControllerIntegrationTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveBeerService reactiveBeerService;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @AfterEach
+    void tearDown() {
+        databaseClient.sql("DELETE FROM beer").then().block();
+    }
+
+    @Test
+    // a cerveja cadastrada pode ser buscada pelo nome
+    void whenBeerIsCreatedThenItIsFoundByName() {
+        BeerDTO createdBeerDTO = createBeer("Brahma", 50, 10);
+
+        webTestClient.get().uri(BEER_API_URL_PATH + "/Brahma")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(createdBeerDTO.getId())
+                .jsonPath("$.brand").isEqualTo("Ambev")
+                .jsonPath("$.quantity").isEqualTo(10);
+    }
+
+    @Test
+    // as validações do BeerDTO e os erros de negócio têm os mesmos status da versão MVC
+    void whenRequestIsInvalidThenSameStatusAsMvcIsReturned() {
+        BeerDTO beerWithoutBrand = BeerDTOBuilder.builder().id(null).brand(null).build().toBeerDTO();
+        webTestClient.post().uri(BEER_API_URL_PATH).bodyValue(beerWithoutBrand)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        createBeer("Brahma", 50, 10);
+        webTestClient.post().uri(BEER_API_URL_PATH).bodyValue(BeerDTOBuilder.builder().id(null).build().toBeerDTO())
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri(BEER_API_URL_PATH + "/Unknown")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webTestClient.get().uri(BEER_API_URL_PATH + "?cursor=invalid")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    // o incremento e o decremento respeitam o máximo, o estoque nunca fica negativo e o QuantityDTO é validado
+    void whenStockIsMovedThenLimitsAreRespected() {
+        BeerDTO createdBeerDTO = createBeer("Brahma", 50, 10);
+        String beerPath = BEER_API_URL_PATH + "/" + createdBeerDTO.getId();
+
+        webTestClient.patch().uri(beerPath + "/increment").bodyValue(new QuantityDTO(5))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.quantity").isEqualTo(15);
+        webTestClient.patch().uri(beerPath + "/increment").bodyValue(new QuantityDTO(40))
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.patch().uri(beerPath + "/increment").bodyValue(new QuantityDTO(101))
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.patch().uri(beerPath + "/decrement").bodyValue(new QuantityDTO(16))
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.patch().uri(beerPath + "/decrement").bodyValue(new QuantityDTO(15))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.quantity").isEqualTo(0);
+        webTestClient.patch().uri(BEER_API_URL_PATH + "/" + Long.MAX_VALUE + "/increment").bodyValue(new QuantityDTO(1))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    // as páginas seguem o cursor do cabeçalho X-Next-Cursor até a última
+    void whenPagesAreFollowedByCursorThenEveryBeerIsListedOnce() {
+        for (int i = 0; i < 5; i++) {
+            createBeer("Beer " + i, 50, 10);
+        }
+
+        String nextCursor = webTestClient.get().uri(BEER_API_URL_PATH + "?size=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BeerDTO.class).hasSize(3)
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(BeerController.NEXT_CURSOR_HEADER);
+
+        webTestClient.get().uri(BEER_API_URL_PATH + "?size=3&cursor=" + nextCursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(BeerController.NEXT_CURSOR_HEADER)
+                .expectBodyList(BeerDTO.class).hasSize(2);
+    }
+
+    @Test
+    // a exportação entrega uma cerveja por linha e a exclusão tira a cerveja do catálogo
+    void whenBeersAreExportedThenEachBeerIsALine() {
+        BeerDTO firstBeerDTO = createBeer("Brahma", 50, 10);
+        createBeer("Skol", 50, 10);
+
+        List<BeerDTO> exported = webTestClient.get().uri(BEER_API_URL_PATH + "/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BeerDTO.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+        assertThat(exported, hasSize(2));
+
+        webTestClient.delete().uri(BEER_API_URL_PATH + "/" + firstBeerDTO.getId())
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.delete().uri(BEER_API_URL_PATH + "/" + firstBeerDTO.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    // a exportação só entrega as cervejas que o assinante pediu
+    void whenExportIsConsumedSlowlyThenOnlyRequestedBeersAreEmitted() {
+        for (int i = 0; i < 5; i++) {
+            createBeer("Beer " + i, 50, 10);
+        }
+
+        StepVerifier.create(reactiveBeerService.exportAll(), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(2)
+                .expectNextCount(2)
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(3)
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    private BeerDTO createBeer(String name, int max, int quantity) {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name(name).max(max).quantity(quantity).build().toBeerDTO();
+        BeerDTO createdBeerDTO = webTestClient.post().uri(BEER_API_URL_PATH).bodyValue(beerDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BeerDTO.class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(createdBeerDTO.getName(), is(equalTo(name)));
+        return createdBeerDTO;
+    }
+}
@@ -0,0 +1,74 @@
+package one.digitalinnovation.beerstock.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+// testa o diário mapeado em memória direto, sem o repositório
+public class MappedBeerJournalTest {
+
+    private static final byte TYPE = 1;
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    // depois de reabrir o diário, o sync de um registro novo manda ao disco o trecho onde ele foi gravado
+    void whenJournalIsReopenedThenSyncForcesTheAppendedRecord() throws IOException {
+        MappedBeerJournal journal = new MappedBeerJournal(journalDirectory, 4096, (type, payload) -> { });
+        journal.sync(journal.append(TYPE, payload("Brahma")));
+        journal.close();
+
+        List<String> replayed = new ArrayList<>();
+        RecordingJournal reopened = new RecordingJournal(journalDirectory, replayed);
+        int recordStart = MappedBeerJournal.HEADER_SIZE + "Brahma".length();
+        int recordEnd = recordStart + MappedBeerJournal.HEADER_SIZE + "Skol".length();
+        reopened.sync(reopened.append(TYPE, payload("Skol")));
+
+        assertThat(reopened.forcedFrom, is(lessThanOrEqualTo(recordStart)));
+        assertThat(reopened.forcedTo, is(greaterThanOrEqualTo(recordEnd)));
+
+        // queda: o diário não é fechado, e a próxima abertura lê o que o sync garantiu
+        List<String> afterCrash = new ArrayList<>();
+        new MappedBeerJournal(journalDirectory, 4096, (type, payload) -> afterCrash.add(StandardCharsets.UTF_8.decode(payload).toString()));
+
+        assertThat(replayed, contains("Brahma"));
+        assertThat(afterCrash, contains("Brahma", "Skol"));
+    }
+
+    private static ByteBuffer payload(String name) {
+        return ByteBuffer.wrap(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // guarda o último trecho enviado ao disco
+    private static class RecordingJournal extends MappedBeerJournal {
+
+        private int forcedFrom = -1;
+
+        private int forcedTo = -1;
+
+        RecordingJournal(Path directory, List<String> replayed) throws IOException {
+            super(directory, 4096, (type, payload) -> replayed.add(StandardCharsets.UTF_8.decode(payload).toString()));
+        }
+
+        @Override
+        void force(MappedByteBuffer buffer, int index, int length) {
+            forcedFrom = index;
+            forcedTo = index + length;
+            super.force(buffer, index, length);
+        }
+    }
+}
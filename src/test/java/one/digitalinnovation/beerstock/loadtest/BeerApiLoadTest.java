@@ -0,0 +1,222 @@
+package one.digitalinnovation.beerstock.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// teste de carga de ponta a ponta: sobe a aplicação numa porta aleatória e dispara a mistura de chamadas de vários clientes
+// só roda com -Dloadtest=true (perfil loadtest) e grava o relatório em target/loadtest
+// os clientes esperam cada resposta antes da próxima chamada, então a vazão medida é a máxima que a aplicação sustentou
+// com -Dspring.threads.virtual.enabled=true a aplicação atende em threads virtuais e o relatório vai para target/loadtest/virtual
+// com -Dspring.profiles.active=reactive quem atende é a variante WebFlux e o relatório vai para target/loadtest/reactive
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.reactive.url=r2dbc:h2:mem:///loadtest?options=DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "logging.level.root=WARN"
+})
+public class BeerApiLoadTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+
+    private final LoadTestSettings settings = new LoadTestSettings();
+
+    // HTTP/1.1 como os clientes da API, sem a tentativa de upgrade para HTTP/2 em cada conexão
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final LoadTestReport report = new LoadTestReport(LoadTestSettings.ROUTES);
+
+    // cervejas que existem no momento, por id, para as buscas, incrementos e exclusões
+    private final ConcurrentSkipListMap<Long, String> beers = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong nextName = new AtomicLong();
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${spring.main.web-application-type:servlet}")
+    private String webApplicationType;
+
+    @Test
+    void whenRoutesAreUnderLoadThenLatenciesStayWithinThresholds() throws Exception {
+        for (int i = 0; i < settings.seedBeers; i++) {
+            create();
+        }
+        report.reset();
+
+        long warmupEnd = System.nanoTime() + settings.warmup.toNanos();
+        long end = warmupEnd + settings.duration.toNanos();
+        ExecutorService clients = Executors.newFixedThreadPool(settings.clients);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < settings.clients; i++) {
+                futures.add(clients.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        call(pickRoute());
+                    }
+                    return null;
+                }));
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, warmupEnd - System.nanoTime()));
+            report.reset();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        Map<String, Histogram> histograms = report.finish();
+        report.write(Paths.get("target", "loadtest", mode()), histograms, settings.duration.toMillis() / 1000.0);
+
+        List<String> violations = new ArrayList<>();
+        histograms.forEach((route, histogram) -> {
+            if (report.serverErrors(route) > 0) {
+                violations.add(String.format("%s returned %d server errors", route, report.serverErrors(route)));
+            }
+            long maxP99Millis = settings.maxP99Millis(route);
+            double p99Millis = LoadTestReport.millis(histogram.getValueAtPercentile(99));
+            if (maxP99Millis > 0 && p99Millis > maxP99Millis) {
+                violations.add(String.format("%s p99 of %.2f ms is above %d ms", route, p99Millis, maxP99Millis));
+            }
+        });
+        assertTrue(violations.isEmpty(), String.join("; ", violations));
+    }
+
+    private String mode() {
+        if ("reactive".equalsIgnoreCase(webApplicationType)) {
+            return "reactive";
+        }
+        return virtualThreads ? "virtual" : "platform";
+    }
+
+    private String pickRoute() {
+        int total = settings.mix.values().stream().mapToInt(Integer::intValue).sum();
+        int drawn = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<String, Integer> entry : settings.mix.entrySet()) {
+            drawn -= entry.getValue();
+            if (drawn < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty loadtest.mix");
+    }
+
+    private void call(String route) throws Exception {
+        switch (route) {
+            case "create":
+                create();
+                break;
+            case "find":
+                send(route, get("/" + randomBeer().getValue()));
+                break;
+            case "list":
+                send(route, get("?size=50"));
+                break;
+            case "increment":
+                send(route, patch("/" + randomBeer().getKey() + "/increment", "{\"quantity\":1}"));
+                break;
+            case "decrement":
+                send(route, patch("/" + randomBeer().getKey() + "/decrement", "{\"quantity\":1}"));
+                break;
+            case "delete":
+                delete();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown route: " + route);
+        }
+    }
+
+    private Long create() throws Exception {
+        String name = "Load-" + nextName.incrementAndGet();
+        String body = String.format("{\"name\":\"%s\",\"brand\":\"Load\",\"max\":500,\"quantity\":50,\"type\":\"LAGER\"}", name);
+        HttpResponse<String> response = send("create", request("").POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            return null;
+        }
+        Long id = objectMapper.readTree(response.body()).get("id").asLong();
+        beers.put(id, name);
+        return id;
+    }
+
+    // a cerveja sai do mapa antes da chamada para que nenhum outro cliente a use depois de excluída
+    // com poucas cervejas sobrando, o cliente cria uma só para excluir, e a criação conta na rota create
+    private void delete() throws Exception {
+        Long id = null;
+        if (beers.size() > settings.seedBeers / 2) {
+            Long candidate = randomBeer().getKey();
+            id = beers.remove(candidate) == null ? null : candidate;
+        }
+        if (id == null && (id = create()) != null) {
+            beers.remove(id);
+        }
+        if (id != null) {
+            send("delete", request("/" + id).DELETE().build());
+        }
+    }
+
+    // sorteia um id entre o menor e o maior e pega a cerveja seguinte, sem copiar o mapa a cada chamada
+    private Map.Entry<Long, String> randomBeer() {
+        long drawn = ThreadLocalRandom.current().nextLong(beers.firstKey(), beers.lastKey() + 1);
+        Map.Entry<Long, String> beer = beers.ceilingEntry(drawn);
+        return beer != null ? beer : beers.firstEntry();
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest patch(String path, String body) {
+        return request(path).method("PATCH", HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + BEER_API_URL_PATH + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json");
+    }
+
+    private void send(String route, HttpRequest request) throws Exception {
+        send(route, request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    // mede do envio até a resposta inteira chegar
+    private <T> HttpResponse<T> send(String route, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<T> response = httpClient.send(request, bodyHandler);
+        report.record(route, System.nanoTime() - start, response.statusCode());
+        return response;
+    }
+}
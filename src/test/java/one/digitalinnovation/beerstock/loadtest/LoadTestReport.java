@@ -0,0 +1,114 @@
+package one.digitalinnovation.beerstock.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// latências de cada rota em histogramas HdrHistogram, gravadas pelos clientes sem travar uns aos outros
+final class LoadTestReport {
+
+    // até 1 minuto com 3 dígitos de precisão
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+
+    LoadTestReport(Iterable<String> routeNames) {
+        routeNames.forEach(name -> routes.put(name, new Route()));
+    }
+
+    void record(String route, long latencyNanos, int status) {
+        Route recorded = routes.get(route);
+        recorded.recorder.recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+        if (status >= 500) {
+            recorded.serverErrors.increment();
+        } else if (status >= 400) {
+            recorded.clientErrors.increment();
+        }
+    }
+
+    // descarta o que foi gravado no aquecimento
+    void reset() {
+        routes.values().forEach(Route::reset);
+    }
+
+    // fecha a medição e devolve o histograma acumulado de cada rota que foi chamada
+    Map<String, Histogram> finish() {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        routes.forEach((name, route) -> {
+            Histogram histogram = route.recorder.getIntervalHistogram();
+            if (histogram.getTotalCount() > 0) {
+                histograms.put(name, histogram);
+            }
+        });
+        return histograms;
+    }
+
+    long serverErrors(String route) {
+        return routes.get(route).serverErrors.sum();
+    }
+
+    // um resumo por rota e a distribuição completa de cada uma em um .hgrm, que abre no HdrHistogram plotter
+    void write(Path directory, Map<String, Histogram> histograms, double seconds) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintStream summary = new PrintStream(Files.newOutputStream(directory.resolve("report.txt")))) {
+            summary.printf("%-10s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+                    "route", "requests", "req/s", "4xx", "5xx", "p50 ms", "p99 ms", "p999 ms", "max ms");
+            Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                total.add(entry.getValue());
+                Histogram histogram = entry.getValue();
+                Route route = routes.get(entry.getKey());
+                summary.printf("%-10s %10d %10.1f %10d %10d %10.2f %10.2f %10.2f %10.2f%n",
+                        entry.getKey(),
+                        histogram.getTotalCount(),
+                        histogram.getTotalCount() / seconds,
+                        route.clientErrors.sum(),
+                        route.serverErrors.sum(),
+                        millis(histogram.getValueAtPercentile(50)),
+                        millis(histogram.getValueAtPercentile(99)),
+                        millis(histogram.getValueAtPercentile(99.9)),
+                        millis(histogram.getMaxValue()));
+                try (PrintStream distribution = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                    histogram.outputPercentileDistribution(distribution, 1_000_000.0);
+                }
+            }
+            // todas as rotas juntas, a linha usada para comparar execuções
+            summary.printf("%-10s %10d %10.1f %10s %10s %10.2f %10.2f %10.2f %10.2f%n",
+                    "total",
+                    total.getTotalCount(),
+                    total.getTotalCount() / seconds,
+                    "", "",
+                    millis(total.getValueAtPercentile(50)),
+                    millis(total.getValueAtPercentile(99)),
+                    millis(total.getValueAtPercentile(99.9)),
+                    millis(total.getMaxValue()));
+        }
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class Route {
+
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+
+        private final LongAdder clientErrors = new LongAdder();
+
+        private final LongAdder serverErrors = new LongAdder();
+
+        private void reset() {
+            recorder.reset();
+            clientErrors.reset();
+            serverErrors.reset();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package one.digitalinnovation.beerstock.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// configurações do teste de carga, lidas das propriedades de sistema loadtest.*
+final class LoadTestSettings {
+
+    // rotas que o teste sabe chamar
+    static final List<String> ROUTES = Arrays.asList("create", "find", "list", "increment", "decrement", "delete");
+
+    // peso de cada rota quando o cliente sorteia a próxima chamada
+    private static final String DEFAULT_MIX = "create=10,find=40,list=15,increment=15,decrement=10,delete=10";
+
+    final int clients = Integer.getInteger("loadtest.clients", 32);
+
+    final Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT5S"));
+
+    final Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+
+    // cervejas cadastradas antes de começar, para que as buscas e os incrementos tenham onde cair
+    final int seedBeers = Integer.getInteger("loadtest.seed-beers", 200);
+
+    final Map<String, Integer> mix = parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX));
+
+    // p99 máximo em milissegundos para a rota, 0 quando não há limite
+    long maxP99Millis(String route) {
+        return Long.getLong("loadtest.max-p99-ms." + route, Long.getLong("loadtest.max-p99-ms", 0L));
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] routeAndWeight = entry.trim().split("=");
+            if (routeAndWeight.length != 2 || !ROUTES.contains(routeAndWeight[0].trim())) {
+                throw new IllegalArgumentException("Invalid loadtest.mix entry: " + entry);
+            }
+            weights.put(routeAndWeight[0].trim(), Integer.parseInt(routeAndWeight[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,202 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.config.MetricsProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.service.BeerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// testa as métricas publicadas pelo BeerService e pelo BeerRepository, com o registro do Prometheus ligado
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class BeerMetricsIntegrationTest {
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private BeerStockGauges beerStockGauges;
+
+    @Autowired
+    private MetricsProperties metricsProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PrometheusMeterRegistry prometheusMeterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        metricsProperties.getTrackedBeerIds().clear();
+        beerRepository.deleteAll();
+    }
+
+    @Test
+    // cada método do serviço tem o seu timer, com o histograma publicado para o Prometheus
+    void whenServiceMethodIsCalledThenTimerWithHistogramIsPublished() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        beerService.findByName(createdBeerDTO.getName());
+
+        long calls = meterRegistry.get(BeerService.SERVICE_TIMER).tag("method", "findByName").timer().count();
+        assertThat(calls, is(greaterThanOrEqualTo(1L)));
+
+        String scrape = prometheusMeterRegistry.scrape();
+        assertThat(scrape, containsString("beerstock_service_seconds_bucket"));
+        assertThat(scrape, containsString("method=\"findByName\""));
+    }
+
+    @Test
+    // os erros de negócio são contados por tipo de exceção
+    void whenBusinessErrorsAreThrownThenTheirCountersAreIncremented() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        double notFound = errorCount(BeerNotFoundException.class);
+        double alreadyRegistered = errorCount(BeerAlreadyRegisteredException.class);
+        double stockExceeded = errorCount(BeerStockExceededException.class);
+
+        assertThrows(BeerNotFoundException.class, () -> beerService.findByName("Unknown beer"));
+        assertThrows(BeerAlreadyRegisteredException.class, () -> beerService.createBeer(createdBeerDTO));
+        assertThrows(BeerStockExceededException.class, () -> beerService.decrement(createdBeerDTO.getId(), 11));
+
+        assertThat(errorCount(BeerNotFoundException.class), is(equalTo(notFound + 1)));
+        assertThat(errorCount(BeerAlreadyRegisteredException.class), is(equalTo(alreadyRegistered + 1)));
+        assertThat(errorCount(BeerStockExceededException.class), is(equalTo(stockExceeded + 1)));
+    }
+
+    @Test
+    // o gauge por tipo soma o estoque de todas as cervejas daquele tipo
+    void whenStockIsRefreshedThenGaugeHasTheUnitsPerType() throws Exception {
+        createBeer("Lager 1", BeerType.LAGER, 100, 10);
+        createBeer("Lager 2", BeerType.LAGER, 100, 15);
+        createBeer("Stout 1", BeerType.STOUT, 100, 7);
+
+        beerStockGauges.refresh();
+
+        assertThat(stockUnits(BeerType.LAGER), is(equalTo(25.0)));
+        assertThat(stockUnits(BeerType.STOUT), is(equalTo(7.0)));
+        assertThat(stockUnits(BeerType.IPA), is(equalTo(0.0)));
+    }
+
+    @Test
+    // só as cervejas configuradas ganham tag própria, as demais são somadas em "other"
+    void whenStockChangesThenOnlyTrackedBeersHaveTheirOwnTag() throws Exception {
+        BeerDTO trackedBeerDTO = createBeer("Tracked", BeerType.LAGER, 100, 10);
+        BeerDTO otherBeerDTO = createBeer("Other", BeerType.LAGER, 100, 10);
+        metricsProperties.getTrackedBeerIds().add(trackedBeerDTO.getId());
+        double others = stockOperations("increment", BeerServiceMetrics.OTHER_BEERS);
+
+        beerService.increment(trackedBeerDTO.getId(), 1);
+        beerService.increment(trackedBeerDTO.getId(), 1);
+        beerService.increment(otherBeerDTO.getId(), 1);
+
+        assertThat(stockOperations("increment", String.valueOf(trackedBeerDTO.getId())), is(equalTo(2.0)));
+        assertThat(stockOperations("increment", BeerServiceMetrics.OTHER_BEERS), is(equalTo(others + 1)));
+        assertThat(prometheusMeterRegistry.scrape(), not(containsString("beer=\"" + otherBeerDTO.getId() + "\"")));
+    }
+
+    @Test
+    // só o decremento entra nas métricas de conflito, o incremento também é repetido mas não é contado como decremento
+    void whenStockIsIncrementedThenDecrementCallsAreNotCounted() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        double decrementCalls = meterRegistry.get("beerstock.stock.decrement.calls").functionCounter().count();
+
+        beerService.increment(createdBeerDTO.getId(), 1);
+        beerService.increment(createdBeerDTO.getId(), 1);
+        beerService.decrement(createdBeerDTO.getId(), 1);
+
+        assertThat(meterRegistry.get("beerstock.stock.decrement.calls").functionCounter().count(), is(equalTo(decrementCalls + 1)));
+    }
+
+    @Test
+    // as chamadas ao repositório, inclusive as herdadas do JpaRepository, também têm timer
+    void whenRepositoryIsCalledThenTimerIsPublished() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        beerRepository.findById(createdBeerDTO.getId());
+
+        long calls = meterRegistry.get(BeerRepositoryMetrics.REPOSITORY_CALLS).tag("method", "findById").timer().count();
+        assertThat(calls, is(greaterThanOrEqualTo(1L)));
+    }
+
+    @Test
+    // cada requisição devolve quantos comandos SQL rodou e entra na distribuição da rota, sem o nome da cerveja
+    void whenRequestRunsSqlThenStatementCountIsReturnedAndPublished() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+
+        mockMvc.perform(get("/api/v1/beers/" + createdBeerDTO.getName()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementFilter.STATEMENT_COUNT_HEADER, "1"));
+        mockMvc.perform(get("/api/v1/beers/Unknown"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().exists(SqlStatementFilter.STATEMENT_COUNT_HEADER));
+
+        long requests = meterRegistry.get(SqlStatementFilter.SQL_STATEMENTS)
+                .tags("method", "GET", "uri", "/api/v1/beers/{name}")
+                .summary()
+                .count();
+        assertThat(requests, is(greaterThanOrEqualTo(2L)));
+    }
+
+    private double errorCount(Class<? extends Exception> exception) {
+        return meterRegistry.get(BeerServiceMetrics.ERRORS).tag("exception", exception.getSimpleName()).counter().count();
+    }
+
+    private double stockUnits(BeerType type) {
+        return meterRegistry.get(BeerStockGauges.STOCK_UNITS).tag("type", type.name()).gauge().value();
+    }
+
+    private double stockOperations(String operation, String beer) {
+        return meterRegistry.find(BeerServiceMetrics.STOCK_OPERATIONS)
+                .tags("operation", operation, BeerServiceMetrics.BEER_TAG, beer)
+                .counters()
+                .stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private BeerDTO createBeer(int max, int quantity) throws BeerAlreadyRegisteredException {
+        return createBeer("Brahma", BeerType.LAGER, max, quantity);
+    }
+
+    private BeerDTO createBeer(String name, BeerType type, int max, int quantity) throws BeerAlreadyRegisteredException {
+        BeerDTO beerDTO = BeerDTOBuilder.builder()
+                .id(null)
+                .name(name)
+                .type(type)
+                .max(max)
+                .quantity(quantity)
+                .build()
+                .toBeerDTO();
+        return beerService.createBeer(beerDTO);
+    }
+}
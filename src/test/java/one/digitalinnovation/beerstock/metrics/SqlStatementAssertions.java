@@ -0,0 +1,54 @@
+package one.digitalinnovation.beerstock.metrics;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+// conta os comandos SQL de um trecho de código nos testes de integração,
+// para que o teste falhe quando um caminho passa a fazer mais consultas do que antes
+public final class SqlStatementAssertions {
+
+    private SqlStatementAssertions() {
+    }
+
+    @FunctionalInterface
+    public interface StatementBlock {
+        void run() throws Exception;
+    }
+
+    // roda o trecho na thread atual e devolve os comandos preparados por ele
+    public static SqlStatementCount countStatements(StatementBlock block) throws Exception {
+        SqlStatementCount count = SqlStatementCounter.start();
+        try {
+            block.run();
+        } finally {
+            SqlStatementCounter.stop();
+        }
+        return count;
+    }
+
+    public static SqlStatementCount assertStatementCount(int selects, int inserts, int updates, int deletes, StatementBlock block) throws Exception {
+        SqlStatementCount count = countStatements(block);
+        String expected = String.format("%d selects, %d inserts, %d updates, %d deletes", selects, inserts, updates, deletes);
+        assertThat("expected " + expected + " but got " + count, count.getSelects() == selects
+                && count.getInserts() == inserts && count.getUpdates() == updates && count.getDeletes() == deletes);
+        return count;
+    }
+
+    public static SqlStatementCount assertMaxStatements(int maxStatements, StatementBlock block) throws Exception {
+        SqlStatementCount count = countStatements(block);
+        assertThat(count.toString(), count.getTotal(), is(lessThanOrEqualTo(maxStatements)));
+        return count;
+    }
+
+    // nenhum select pode se repetir, o mesmo comando rodando várias vezes costuma ser um N+1
+    public static SqlStatementCount assertNoRepeatedSelects(StatementBlock block) throws Exception {
+        SqlStatementCount count = countStatements(block);
+        Map<String, Integer> repeatedSelects = count.getRepeatedSelects(2);
+        assertThat(count.toString(), repeatedSelects, is(anEmptyMap()));
+        return count;
+    }
+}
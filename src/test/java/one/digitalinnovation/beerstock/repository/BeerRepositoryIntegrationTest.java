@@ -0,0 +1,187 @@
+package one.digitalinnovation.beerstock.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BrandReorderDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static one.digitalinnovation.beerstock.metrics.SqlStatementAssertions.assertStatementCount;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsStringIgnoringCase;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+// testa as consultas do BeerRepository no banco H2 em memória, com o cache de segundo nível ligado
+@SpringBootTest
+public class BeerRepositoryIntegrationTest {
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    private Beer savedBeer;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Beer beer = BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder().id(null).build().toBeerDTO());
+        savedBeer = beerRepository.save(beer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        beerRepository.deleteAll();
+    }
+
+    @Test
+    // buscas repetidas pelo id vêm do cache de segundo nível, sem nenhum SQL
+    void whenBeerIsFoundByIdRepeatedlyThenNoSqlIsIssued() throws Exception {
+        beerRepository.findById(savedBeer.getId());
+        statistics.clear();
+
+        // contado só na thread do teste, as tarefas agendadas também usam o banco
+        assertStatementCount(0, 0, 0, 0, () -> {
+            for (int i = 0; i < 5; i++) {
+                assertThat(beerRepository.findById(savedBeer.getId()).isPresent(), is(true));
+            }
+        });
+
+        assertThat(statistics.getSecondLevelCacheHitCount(), is(greaterThanOrEqualTo(5L)));
+        assertThat(meterRegistry.get("hibernate.second.level.cache.requests").tags("region", "beer", "result", "hit")
+                .functionCounter().count(), is(greaterThanOrEqualTo(5.0)));
+    }
+
+    @Test
+    // buscas repetidas pelo nome vêm do cache de consultas e a cerveja do cache de segundo nível
+    void whenBeerIsFoundByNameRepeatedlyThenNoSqlIsIssued() throws Exception {
+        beerRepository.findByName(savedBeer.getName());
+        statistics.clear();
+
+        assertStatementCount(0, 0, 0, 0, () -> {
+            for (int i = 0; i < 5; i++) {
+                assertThat(beerRepository.findByName(savedBeer.getName()).isPresent(), is(true));
+            }
+        });
+
+        assertThat(statistics.getQueryCacheHitCount(), is(equalTo(5L)));
+        assertThat(meterRegistry.get("hibernate.cache.query.requests").tags("result", "hit").functionCounter().count(), is(equalTo(5.0)));
+    }
+
+    @Test
+    // o UPDATE de estoque invalida o cache, então a próxima busca lê a quantidade nova do banco
+    void whenStockIsIncrementedThenCachedBeerIsRefreshed() {
+        beerRepository.findById(savedBeer.getId());
+
+        transactionTemplate.executeWithoutResult(status -> beerRepository.incrementQuantity(savedBeer.getId(), 1));
+
+        assertThat(beerRepository.findById(savedBeer.getId()).get().getQuantity(), is(equalTo(savedBeer.getQuantity() + 1)));
+    }
+
+    @Test
+    // a busca só devolve as cervejas que passam em todos os filtros informados, em ordem de id
+    void whenBeersAreSearchedThenOnlyMatchingBeersAreReturned() {
+        Beer lowStockAle = BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder().id(null).name("Low Ale").type(BeerType.ALE).quantity(2).build().toBeerDTO());
+        Beer fullAle = BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder().id(null).name("Full Ale").type(BeerType.ALE).quantity(40).build().toBeerDTO());
+        Beer lowStockAleFromOtherBrand = BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder().id(null).name("Other Ale").brand("Heineken").type(BeerType.ALE).quantity(1).build().toBeerDTO());
+        beerRepository.saveAll(Arrays.asList(lowStockAle, fullAle, lowStockAleFromOtherBrand));
+
+        List<Beer> beers = beerRepository.search(savedBeer.getBrand(), BeerType.ALE, 5, 0L, 10);
+
+        assertThat(beers.stream().map(Beer::getName).collect(Collectors.toList()), is(equalTo(Collections.singletonList("Low Ale"))));
+        assertThat(beerRepository.search(null, BeerType.ALE, null, 0L, 10), hasSize(3));
+        assertThat(beerRepository.search(null, BeerType.ALE, null, lowStockAle.getId(), 10), hasSize(2));
+    }
+
+    @Test
+    // as cervejas com pouco estoque vêm como projeção, sem carregar nenhuma entidade
+    void whenLowStockIsQueriedThenProjectionsAreReturnedWithoutLoadingEntities() {
+        Beer lowStockBeer = BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder().id(null).name("Low").max(50).quantity(5).build().toBeerDTO());
+        beerRepository.save(lowStockBeer);
+        statistics.clear();
+
+        // a cerveja do setUp está com 20% do máximo e fica de fora
+        List<LowStockBeerDTO> lowStockBeers = beerRepository.findLowStock(0.15);
+
+        assertThat(lowStockBeers, hasSize(1));
+        assertThat(lowStockBeers.get(0).getName(), is(equalTo("Low")));
+        assertThat(lowStockBeers.get(0).getQuantityToReorder(), is(equalTo(45)));
+        assertThat(statistics.getEntityLoadCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    // o relatório de reposição soma max - quantity por marca, com a marca que mais precisa primeiro
+    void whenReorderReportIsQueriedThenQuantitiesAreSummedByBrand() {
+        beerRepository.saveAll(Arrays.asList(
+                BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder().id(null).name("Ambev 2").max(50).quantity(40).build().toBeerDTO()),
+                BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder().id(null).name("Heineken 1").brand("Heineken").max(100).quantity(0).build().toBeerDTO()),
+                BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder().id(null).name("Heineken 2").brand("Heineken").max(30).quantity(30).build().toBeerDTO())));
+
+        List<BrandReorderDTO> report = beerRepository.findReorderReport();
+
+        // a cerveja do setUp tem max 50 e quantity 10
+        assertThat(report, is(equalTo(Arrays.asList(
+                new BrandReorderDTO("Heineken", 1L, 100L),
+                new BrandReorderDTO(savedBeer.getBrand(), 2L, 50L)))));
+    }
+
+    @Test
+    // o filtro por marca e tipo usa o índice composto em vez de percorrer a tabela
+    void whenBeersAreFilteredByBrandAndTypeThenCompositeIndexIsUsed() {
+        String plan = explain("SELECT * FROM beer WHERE brand = 'Ambev' AND type = 'LAGER' AND id > 0 ORDER BY id");
+
+        assertThat(plan, containsStringIgnoringCase("idx_beer_brand_type"));
+    }
+
+    @Test
+    // o filtro só por marca usa o começo do índice de marca e tipo
+    void whenBeersAreFilteredByBrandThenCompositeIndexIsUsed() {
+        String plan = explain("SELECT * FROM beer WHERE brand = 'Ambev' AND id > 0 ORDER BY id");
+
+        assertThat(plan, containsStringIgnoringCase("idx_beer_brand_type"));
+    }
+
+    @Test
+    // o filtro por tipo com estoque baixo usa o índice de tipo e quantidade
+    void whenLowStockBeersAreFilteredByTypeThenTypeQuantityIndexIsUsed() {
+        String plan = explain("SELECT * FROM beer WHERE type = 'LAGER' AND quantity <= 5 AND id > 0 ORDER BY id");
+
+        assertThat(plan, containsStringIgnoringCase("idx_beer_type_quantity"));
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+}
@@ -0,0 +1,168 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.config.JournalProperties;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.journal.MappedBeerJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// testa o repositório do perfil journal sem o Spring, reabrindo o diário da pasta temporária como numa nova subida
+public class JournalBeerRepositoryTest {
+
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path journalDirectory;
+
+    private final List<JournalBeerRepository> openRepositories = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        openRepositories.forEach(JournalBeerRepository::destroy);
+    }
+
+    @Test
+    // cadastros, alterações de estoque e exclusões voltam iguais depois de reabrir o diário
+    void whenJournalIsReopenedThenBeersAreReplayed() throws Exception {
+        JournalBeerRepository repository = open(4096);
+        Beer brahma = repository.save(beer("Brahma", 50, 10));
+        Beer skol = repository.save(beer("Skol", 30, 0));
+        repository.incrementQuantity(brahma.getId(), 15);
+        repository.decrementQuantity(brahma.getId(), 5);
+        repository.deleteById(skol.getId());
+
+        JournalBeerRepository reopened = open(4096);
+
+        Beer replayedBrahma = reopened.findByName("Brahma").get();
+        assertThat(replayedBrahma.getQuantity(), is(equalTo(20)));
+        assertThat(replayedBrahma.getVersion(), is(equalTo(2L)));
+        assertFalse(reopened.findById(skol.getId()).isPresent());
+        // a compactação da subida não devolve o id da cerveja excluída
+        assertThat(reopened.save(beer("Bohemia", 10, 1)).getId(), is(greaterThan(skol.getId())));
+    }
+
+    @Test
+    // o segmento cheio dá lugar ao próximo, e a subida seguinte resume todos num segmento só
+    void whenSegmentsFillUpThenReopenCompactsThem() throws Exception {
+        JournalBeerRepository repository = open(256);
+        Beer beer = repository.save(beer("Brahma", 1000, 0));
+        for (int i = 0; i < 100; i++) {
+            repository.incrementQuantity(beer.getId(), 1);
+        }
+        assertThat(MappedBeerJournal.segments(journalDirectory).size(), is(greaterThan(1)));
+
+        JournalBeerRepository reopened = open(256);
+
+        assertThat(reopened.findById(beer.getId()).get().getQuantity(), is(equalTo(100)));
+        assertThat(MappedBeerJournal.segments(journalDirectory).size(), is(equalTo(1)));
+        assertThat(open(256).findById(beer.getId()).get().getQuantity(), is(equalTo(100)));
+    }
+
+    @Test
+    // um registro com o checksum errado no fim do diário é de uma gravação interrompida e é descartado
+    void whenLastRecordIsCorruptedThenItIsDiscardedAndWritesContinue() throws Exception {
+        JournalBeerRepository repository = open(4096);
+        Beer beer = repository.save(beer("Brahma", 50, 10));
+        repository.incrementQuantity(beer.getId(), 5);
+        repository.destroy();
+        // o incremento é o último registro: 12 bytes de conteúdo depois do cabeçalho
+        Path segment = MappedBeerJournal.segments(journalDirectory).get(1L);
+        int incrementOffset = recordsEnd(segment) - MappedBeerJournal.HEADER_SIZE - Long.BYTES - Integer.BYTES;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), incrementOffset + MappedBeerJournal.HEADER_SIZE + Long.BYTES);
+        }
+
+        JournalBeerRepository reopened = open(4096);
+        assertThat(reopened.findById(beer.getId()).get().getQuantity(), is(equalTo(10)));
+        reopened.incrementQuantity(beer.getId(), 1);
+
+        assertThat(open(4096).findById(beer.getId()).get().getQuantity(), is(equalTo(11)));
+    }
+
+    @Test
+    // as escritas passam uma por vez pelo repositório, então incrementos concorrentes param exatamente no máximo
+    void whenConcurrentIncrementsExceedMaxThenStockStopsAtMax() throws Exception {
+        JournalBeerRepository repository = open(64 * 1024);
+        Beer beer = repository.save(beer("Brahma", 300, 0));
+        AtomicInteger acceptedIncrements = new AtomicInteger();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        acceptedIncrements.addAndGet(repository.incrementQuantity(beer.getId(), 1));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(acceptedIncrements.get(), is(equalTo(300)));
+        assertThat(open(64 * 1024).findById(beer.getId()).get().getQuantity(), is(equalTo(300)));
+    }
+
+    @Test
+    // o nome continua único, como na tabela do JPA, e o estoque não fica negativo
+    void whenNameIsAlreadyRegisteredThenSaveIsRejected() throws Exception {
+        JournalBeerRepository repository = open(4096);
+        repository.save(beer("Brahma", 50, 10));
+
+        assertThrows(DuplicateKeyException.class, () -> repository.save(beer("Brahma", 20, 1)));
+        assertThat(repository.decrementQuantity(repository.findByName("Brahma").get().getId(), 11), is(equalTo(0)));
+    }
+
+    private JournalBeerRepository open(int segmentSize) throws IOException {
+        JournalProperties journalProperties = new JournalProperties();
+        journalProperties.setDirectory(journalDirectory.toString());
+        journalProperties.setSegmentSize(segmentSize);
+        JournalBeerRepository repository = new JournalBeerRepository(journalProperties);
+        repository.afterPropertiesSet();
+        openRepositories.add(repository);
+        return repository;
+    }
+
+    // percorre os tamanhos dos registros até o primeiro zero
+    private int recordsEnd(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            while (buffer.getInt(position) != 0) {
+                position += MappedBeerJournal.HEADER_SIZE + buffer.getInt(position);
+            }
+            return position;
+        }
+    }
+
+    private Beer beer(String name, int max, int quantity) {
+        return new Beer(null, name, "Ambev", max, quantity, BeerType.LAGER, null);
+    }
+}
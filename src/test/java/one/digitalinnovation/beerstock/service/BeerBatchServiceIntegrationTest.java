@@ -0,0 +1,130 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.config.BatchProperties;
+import one.digitalinnovation.beerstock.dto.BeerCreationResultDTO;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementResultDTO;
+import one.digitalinnovation.beerstock.enums.BeerCreationStatus;
+import one.digitalinnovation.beerstock.enums.StockMovementStatus;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+// testa as operações em lote com o banco H2 em memória, sem mocks
+@SpringBootTest
+public class BeerBatchServiceIntegrationTest {
+
+    @Autowired
+    private BeerBatchService beerBatchService;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private BatchProperties batchProperties;
+
+    @AfterEach
+    void tearDown() {
+        batchProperties.setChunkSize(500);
+        beerRepository.deleteAll();
+    }
+
+    @Test
+    // as movimentações de uma mesma cerveja são somadas na ordem e cada uma tem o seu resultado
+    void whenMovementsAreAppliedThenEachMovementHasItsResult() throws Exception {
+        BeerDTO beerDTO = createBeer("Brahma", 50, 10);
+
+        List<StockMovementResultDTO> results = beerBatchService.applyMovements(Arrays.asList(
+                movement(beerDTO.getId(), 20),
+                movement(beerDTO.getId(), -5),
+                movement(beerDTO.getId(), 30),
+                movement(Long.MAX_VALUE, 1),
+                StockMovementDTO.builder().id(beerDTO.getId()).build()));
+
+        assertThat(results, hasSize(5));
+        assertThat(results.get(0).getStatus(), is(equalTo(StockMovementStatus.APPLIED)));
+        assertThat(results.get(0).getQuantity(), is(equalTo(30)));
+        assertThat(results.get(1).getStatus(), is(equalTo(StockMovementStatus.APPLIED)));
+        assertThat(results.get(1).getQuantity(), is(equalTo(25)));
+        // passaria do máximo de 50, então só essa movimentação é rejeitada
+        assertThat(results.get(2).getStatus(), is(equalTo(StockMovementStatus.REJECTED)));
+        assertThat(results.get(3).getStatus(), is(equalTo(StockMovementStatus.NOT_FOUND)));
+        assertThat(results.get(4).getStatus(), is(equalTo(StockMovementStatus.INVALID)));
+        assertThat(beerService.findByName("Brahma").getQuantity(), is(equalTo(25)));
+    }
+
+    @Test
+    // as cervejas são divididas em blocos e todos os blocos são gravados
+    void whenMovementsSpanSeveralChunksThenAllChunksAreApplied() throws Exception {
+        batchProperties.setChunkSize(2);
+        List<StockMovementDTO> movements = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            BeerDTO beerDTO = createBeer("Beer " + i, 100, 0);
+            movements.add(movement(beerDTO.getId(), i + 1));
+            movements.add(movement(beerDTO.getId(), i + 1));
+        }
+
+        List<StockMovementResultDTO> results = beerBatchService.applyMovements(movements);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(results.get(i * 2 + 1).getStatus(), is(equalTo(StockMovementStatus.APPLIED)));
+            assertThat(beerService.findByName("Beer " + i).getQuantity(), is(equalTo((i + 1) * 2)));
+        }
+    }
+
+    @Test
+    // cervejas novas são criadas e as repetidas ou inválidas são informadas item a item
+    void whenBeersAreCreatedInBulkThenDuplicatesAndInvalidBeersAreReported() throws Exception {
+        createBeer("Brahma", 50, 10);
+        BeerDTO invalidBeerDTO = BeerDTOBuilder.builder().id(null).name("Skol").build().toBeerDTO();
+        invalidBeerDTO.setBrand(null);
+
+        List<BeerCreationResultDTO> results = beerBatchService.createBeers(Arrays.asList(
+                BeerDTOBuilder.builder().id(null).name("Brahma").build().toBeerDTO(),
+                BeerDTOBuilder.builder().id(null).name("Heineken").build().toBeerDTO(),
+                BeerDTOBuilder.builder().id(null).name("Heineken").build().toBeerDTO(),
+                invalidBeerDTO,
+                BeerDTOBuilder.builder().id(99L).name("Stella").build().toBeerDTO()));
+
+        assertThat(results, hasSize(5));
+        assertThat(results.get(0).getStatus(), is(equalTo(BeerCreationStatus.DUPLICATED)));
+        assertThat(results.get(1).getStatus(), is(equalTo(BeerCreationStatus.CREATED)));
+        assertThat(results.get(1).getBeer().getId(), is(notNullValue()));
+        assertThat(results.get(2).getStatus(), is(equalTo(BeerCreationStatus.DUPLICATED)));
+        assertThat(results.get(3).getStatus(), is(equalTo(BeerCreationStatus.INVALID)));
+        assertThat(results.get(4).getStatus(), is(equalTo(BeerCreationStatus.CREATED)));
+        assertThat(beerService.findByName("Heineken").getName(), is(equalTo("Heineken")));
+        assertThat(beerRepository.count(), is(equalTo(3L)));
+    }
+
+    private BeerDTO createBeer(String name, int max, int quantity) throws Exception {
+        return beerService.createBeer(BeerDTOBuilder.builder()
+                .id(null)
+                .name(name)
+                .max(max)
+                .quantity(quantity)
+                .build()
+                .toBeerDTO());
+    }
+
+    private StockMovementDTO movement(Long id, int delta) {
+        return StockMovementDTO.builder().id(id).delta(delta).build();
+    }
+}
@@ -0,0 +1,60 @@
+package one.digitalinnovation.beerstock.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+// testa a exportação com o banco H2 em memória, sem mocks
+@SpringBootTest
+public class BeerExportServiceIntegrationTest {
+
+    @Autowired
+    private BeerExportService beerExportService;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        beerRepository.deleteAll();
+    }
+
+    @Test
+    // cada cerveja vira uma linha de JSON, na ordem dos ids
+    void whenExportIsCalledThenEveryBeerIsWrittenAsOneJsonLine() throws Exception {
+        List<BeerDTO> createdBeers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            createdBeers.add(beerService.createBeer(BeerDTOBuilder.builder().id(null).name("Beer " + i).build().toBeerDTO()));
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        beerExportService.exportAll(outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(List.of(lines), hasSize(3));
+        for (int i = 0; i < 3; i++) {
+            assertThat(objectMapper.readValue(lines[i], BeerDTO.class), is(equalTo(createdBeers.get(i))));
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerPageDTO;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static one.digitalinnovation.beerstock.metrics.SqlStatementAssertions.assertNoRepeatedSelects;
+import static one.digitalinnovation.beerstock.metrics.SqlStatementAssertions.assertStatementCount;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// testa o BeerService com o banco H2 em memória, sem mocks
+@SpringBootTest
+public class BeerServiceIntegrationTest {
+
+    private static final int THREADS = 8;
+
+    private static final int INCREMENTS_PER_THREAD = 50;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private StockIndex stockIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        beerRepository.deleteAll();
+    }
+
+    @Test
+    // várias threads incrementando a mesma cerveja não podem perder incrementos
+    void whenIncrementIsCalledConcurrentlyThenNoIncrementIsLost() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(500, 0);
+
+        runConcurrently(() -> {
+            for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                beerService.increment(createdBeerDTO.getId(), 1);
+            }
+            return null;
+        });
+
+        BeerDTO foundBeerDTO = beerService.findByName(createdBeerDTO.getName());
+        assertThat(foundBeerDTO.getQuantity(), is(equalTo(THREADS * INCREMENTS_PER_THREAD)));
+        assertThat(stockIndex.getQuantity(createdBeerDTO.getId()), is(equalTo(THREADS * INCREMENTS_PER_THREAD)));
+    }
+
+    @Test
+    // incrementos concorrentes nunca passam do máximo e só os que couberam são aceitos
+    void whenConcurrentIncrementsExceedMaxThenStockStopsAtMax() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 0);
+        AtomicInteger acceptedIncrements = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                try {
+                    beerService.increment(createdBeerDTO.getId(), 1);
+                    acceptedIncrements.incrementAndGet();
+                } catch (BeerStockExceededException e) {
+                    // esperado quando o estoque chega no máximo
+                }
+            }
+            return null;
+        });
+
+        BeerDTO foundBeerDTO = beerService.findByName(createdBeerDTO.getName());
+        assertThat(foundBeerDTO.getQuantity(), is(equalTo(100)));
+        assertThat(acceptedIncrements.get(), is(equalTo(100)));
+    }
+
+    @Test
+    // a busca por nome que já estava no cache enxerga o estoque alterado depois do commit
+    void whenStockChangesThenCachedBeerIsEvicted() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        beerService.findByName(createdBeerDTO.getName());
+
+        beerService.increment(createdBeerDTO.getId(), 5);
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(15)));
+
+        beerService.decrement(createdBeerDTO.getId(), 3);
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(12)));
+
+        beerService.deleteById(createdBeerDTO.getId());
+        assertThrows(BeerNotFoundException.class, () -> beerService.findByName(createdBeerDTO.getName()));
+    }
+
+    @Test
+    // o índice de estoque acompanha o cadastro, as alterações confirmadas e a exclusão, e ignora as desfeitas
+    void whenStockChangesThenStockIndexFollowsCommittedChanges() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        assertThat(beerService.findStockLevel(createdBeerDTO.getId()).getMax(), is(equalTo(100)));
+
+        beerService.increment(createdBeerDTO.getId(), 5);
+        beerService.decrement(createdBeerDTO.getId(), 3);
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                beerService.increment(createdBeerDTO.getId(), 50);
+            } catch (BeerNotFoundException | BeerStockExceededException e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+        assertThat(beerService.findStockLevel(createdBeerDTO.getId()).getQuantity(), is(equalTo(12)));
+
+        beerService.deleteById(createdBeerDTO.getId());
+        assertThrows(BeerNotFoundException.class, () -> beerService.findStockLevel(createdBeerDTO.getId()));
+    }
+
+    @Test
+    // o incremento devolve a quantidade nova mesmo com a cerveja já guardada no cache de segundo nível
+    void whenIncrementIsCalledThenReturnedBeerHasTheNewQuantity() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        beerRepository.findById(createdBeerDTO.getId());
+
+        BeerDTO incrementedBeerDTO = beerService.increment(createdBeerDTO.getId(), 5);
+
+        assertThat(incrementedBeerDTO.getQuantity(), is(equalTo(15)));
+    }
+
+    @Test
+    // o incremento em uma cerveja que não existe lança a exceção de não encontrada
+    void whenIncrementIsCalledWithInvalidIdThenThrowException() {
+        assertThrows(BeerNotFoundException.class, () -> beerService.increment(Long.MAX_VALUE, 1));
+    }
+
+    @Test
+    // decrementos concorrentes são repetidos nos conflitos de versão e nenhum decremento aceito se perde
+    void whenDecrementIsCalledConcurrentlyThenNoDecrementIsLost() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(500, 100);
+        AtomicInteger acceptedDecrements = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < 10; i++) {
+                try {
+                    beerService.decrement(createdBeerDTO.getId(), 1);
+                    acceptedDecrements.incrementAndGet();
+                } catch (OptimisticLockingFailureException e) {
+                    // esperado quando as tentativas se esgotam
+                }
+            }
+            return null;
+        });
+
+        BeerDTO foundBeerDTO = beerService.findByName(createdBeerDTO.getName());
+        assertThat(foundBeerDTO.getQuantity(), is(equalTo(100 - acceptedDecrements.get())));
+        assertThat(stockIndex.getQuantity(createdBeerDTO.getId()), is(equalTo(100 - acceptedDecrements.get())));
+    }
+
+    @Test
+    // decrementos concorrentes nunca deixam o estoque negativo
+    void whenConcurrentDecrementsExceedStockThenStockNeverGoesBelowZero() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(500, 20);
+        AtomicInteger acceptedDecrements = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < 10; i++) {
+                try {
+                    beerService.decrement(createdBeerDTO.getId(), 1);
+                    acceptedDecrements.incrementAndGet();
+                } catch (BeerStockExceededException | OptimisticLockingFailureException e) {
+                    // esperado quando o estoque acaba ou as tentativas se esgotam
+                }
+            }
+            return null;
+        });
+
+        BeerDTO foundBeerDTO = beerService.findByName(createdBeerDTO.getName());
+        assertThat(foundBeerDTO.getQuantity(), is(greaterThanOrEqualTo(0)));
+        assertThat(foundBeerDTO.getQuantity(), is(equalTo(20 - acceptedDecrements.get())));
+    }
+
+    @Test
+    // percorrer as páginas pelo cursor entrega todas as cervejas uma única vez, em ordem de id
+    void whenPagesAreFollowedByCursorThenEveryBeerIsListedOnce() throws Exception {
+        List<Long> createdIds = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            createdIds.add(beerService.createBeer(BeerDTOBuilder.builder().id(null).name("Beer " + i).build().toBeerDTO()).getId());
+        }
+
+        List<Long> listedIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            BeerPageDTO beerPage = beerService.listPage(cursor, 3);
+            beerPage.getBeers().forEach(beerDTO -> listedIds.add(beerDTO.getId()));
+            cursor = beerPage.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(listedIds, is(equalTo(createdIds)));
+    }
+
+    @Test
+    // o cadastro faz só a busca pelo nome, o insert da cerveja e o do movimento no livro de estoque
+    void whenBeerIsCreatedThenOneSelectAndTwoInsertsAreRun() throws Exception {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).build().toBeerDTO();
+
+        assertStatementCount(1, 2, 0, 0, () -> beerService.createBeer(beerDTO));
+    }
+
+    @Test
+    // a segunda busca pelo mesmo nome vem do cache, sem nenhum SQL
+    void whenBeerIsFoundByNameTwiceThenOnlyTheFirstSearchRunsSql() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+
+        assertStatementCount(1, 0, 0, 0, () -> beerService.findByName(createdBeerDTO.getName()));
+        assertStatementCount(0, 0, 0, 0, () -> beerService.findByName(createdBeerDTO.getName()));
+    }
+
+    @Test
+    // cada movimentação de estoque faz um UPDATE, uma leitura da cerveja e o insert do movimento no livro de estoque
+    void whenStockIsMovedThenOneSelectOneInsertAndOneUpdateAreRun() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+
+        assertStatementCount(1, 1, 1, 0, () -> beerService.increment(createdBeerDTO.getId(), 1));
+        assertStatementCount(1, 1, 1, 0, () -> beerService.decrement(createdBeerDTO.getId(), 1));
+    }
+
+    @Test
+    // a página inteira vem de uma consulta só, sem um select por cerveja
+    void whenPageIsListedThenASingleSelectIsRun() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            beerService.createBeer(BeerDTOBuilder.builder().id(null).name("Beer " + i).build().toBeerDTO());
+        }
+
+        assertStatementCount(1, 0, 0, 0, () -> beerService.listPage(null, 10));
+        assertNoRepeatedSelects(() -> beerService.listAll());
+    }
+
+    @Test
+    // a versão do catálogo só avança depois do commit, e o ETag da cerveja só muda com o conteúdo dela
+    void whenBeerChangesThenVersionTagsAdvanceAfterCommit() throws Exception {
+        BeerDTO changedBeerDTO = beerService.createBeer(BeerDTOBuilder.builder().id(null).name("Changed").build().toBeerDTO());
+        BeerDTO otherBeerDTO = beerService.createBeer(BeerDTOBuilder.builder().id(null).name("Other").build().toBeerDTO());
+        String changedTag = beerService.versionTag(beerService.findByName(changedBeerDTO.getName()));
+        String otherTag = beerService.versionTag(beerService.findByName(otherBeerDTO.getName()));
+        String catalogTag = beerService.catalogVersionTag();
+
+        beerService.findByName(changedBeerDTO.getName());
+        beerService.listPage(null, 10);
+        assertThat(beerService.catalogVersionTag(), is(equalTo(catalogTag)));
+        assertThat(beerService.versionTag(beerService.findByName(changedBeerDTO.getName())), is(equalTo(changedTag)));
+
+        String tagBeforeCommit = transactionTemplate.execute(status -> {
+            try {
+                beerService.increment(changedBeerDTO.getId(), 1);
+            } catch (BeerNotFoundException | BeerStockExceededException e) {
+                throw new IllegalStateException(e);
+            }
+            return beerService.catalogVersionTag();
+        });
+        assertThat(tagBeforeCommit, is(equalTo(catalogTag)));
+        assertThat(beerService.catalogVersionTag(), is(not(equalTo(catalogTag))));
+        assertThat(beerService.versionTag(beerService.findByName(changedBeerDTO.getName())), is(not(equalTo(changedTag))));
+        assertThat(beerService.versionTag(beerService.findByName(otherBeerDTO.getName())), is(equalTo(otherTag)));
+
+        beerService.deleteById(changedBeerDTO.getId());
+        assertThrows(BeerNotFoundException.class, () -> beerService.findByName(changedBeerDTO.getName()));
+    }
+
+    private BeerDTO createBeer(int max, int quantity) throws BeerAlreadyRegisteredException {
+        BeerDTO beerDTO = BeerDTOBuilder.builder()
+                .id(null)
+                .max(max)
+                .quantity(quantity)
+                .build()
+                .toBeerDTO();
+        return beerService.createBeer(beerDTO);
+    }
+
+    private void runConcurrently(Callable<Void> task) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
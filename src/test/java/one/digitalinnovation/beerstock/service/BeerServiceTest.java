@@ -1,25 +1,45 @@
 package one.digitalinnovation.beerstock.service;
 
+import one.digitalinnovation.beerstock.buffer.StockIncrementBuffer;
 import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.cache.BeerCache;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.config.CacheProperties;
+import one.digitalinnovation.beerstock.config.ListingProperties;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerPageDTO;
+import one.digitalinnovation.beerstock.dto.LowStockBeerDTO;
 import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
 import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.InvalidCursorException;
+import one.digitalinnovation.beerstock.exception.InvalidRatioException;
 import one.digitalinnovation.beerstock.mapper.BeerMapper;
 import one.digitalinnovation.beerstock.repository.BeerRepository;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.function.Consumer;
+
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -47,12 +67,51 @@ public class BeerServiceTest {
     @Mock
     private BeerRepository beerRepository;
 
+    // configuração real da listagem: página padrão de 50 e máxima de 500
+    @Spy
+    private ListingProperties listingProperties = new ListingProperties();
+
+    // cache real, criado vazio a cada teste
+    @Spy
+    private BeerCache beerCache = new BeerCache(new CacheProperties());
+
+    // buffer de incrementos desligado, os incrementos vão direto ao repositório
+    @Mock
+    private StockIncrementBuffer stockIncrementBuffer;
+
+    @Mock
+    private StockLedgerService stockLedgerService;
+
+    // o decremento grava dentro de um TransactionTemplate, que nos testes só executa o bloco
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private StockIndex stockIndex;
+
+    @Mock
+    private WarehouseStockService warehouseStockService;
+
+    @Mock
+    private HotStockService hotStockService;
+
+    @Mock
+    private StockReservationService stockReservationService;
+
     private BeerMapper beerMapper = BeerMapper.INSTANCE;
 
     // cria uma instância da classe e injeta os mocks que são criados com as anotações @Mock(ou @Spy) nesta instância
     @InjectMocks
+    private JpaBeerStore beerStore;
+
+    // o serviço sobre o JpaBeerStore, como no perfil padrão
     private BeerService beerService;
 
+    @BeforeEach
+    void setUp() {
+        beerService = new BeerService(beerStore, listingProperties, beerCache);
+    }
+
 
     // valida se a cerveja foi criada com sucesso
     @Test
@@ -140,6 +199,44 @@ public class BeerServiceTest {
         assertThrows(BeerNotFoundException.class, () -> beerService.findByName(expectedFoundBeerDTO.getName()));
     }
 
+    @Test
+    // a segunda busca pelo mesmo nome vem do cache, sem ir de novo ao banco
+    void whenBeerNameIsSearchedTwiceThenRepositoryIsCalledOnce() throws BeerNotFoundException {
+        BeerDTO expectedFoundBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer expectedFoundBeer = beerMapper.toModel(expectedFoundBeerDTO);
+
+        when(beerRepository.findByName(expectedFoundBeer.getName())).thenReturn(Optional.of(expectedFoundBeer));
+
+        beerService.findByName(expectedFoundBeerDTO.getName());
+        BeerDTO foundBeerDTO = beerService.findByName(expectedFoundBeerDTO.getName());
+
+        assertThat(foundBeerDTO, is(equalTo(expectedFoundBeerDTO)));
+        verify(beerRepository, times(1)).findByName(expectedFoundBeerDTO.getName());
+    }
+
+    @Test
+    // um nome não encontrado também fica no cache, até a cerveja ser criada
+    void whenNotRegisteredBeerIsCreatedThenCachedMissIsEvicted() throws BeerAlreadyRegisteredException, BeerNotFoundException {
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer expectedSavedBeer = beerMapper.toModel(expectedBeerDTO);
+
+        when(beerRepository.findByName(expectedBeerDTO.getName()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(expectedSavedBeer));
+        when(beerRepository.save(expectedSavedBeer)).thenReturn(expectedSavedBeer);
+
+        assertThrows(BeerNotFoundException.class, () -> beerService.findByName(expectedBeerDTO.getName()));
+        assertThrows(BeerNotFoundException.class, () -> beerService.findByName(expectedBeerDTO.getName()));
+        verify(beerRepository, times(1)).findByName(expectedBeerDTO.getName());
+
+        beerService.createBeer(expectedBeerDTO);
+        BeerDTO foundBeerDTO = beerService.findByName(expectedBeerDTO.getName());
+
+        assertThat(foundBeerDTO, is(equalTo(expectedBeerDTO)));
+        verify(beerCache).evict(expectedBeerDTO.getName());
+    }
+
     @Test
     // quando a lista de cervejas for chamada vai retornar uma lista de cervejas
     void whenListBeerIsCalledThenReturnAListOfBeers() {
@@ -179,6 +276,75 @@ public class BeerServiceTest {
         assertThat(foundListBeersDTO, is(empty()));
     }
 
+    @Test
+    // quando a página é chamada sem cursor começa do início e devolve o cursor da próxima página
+    void whenListPageIsCalledWithMoreBeersThanSizeThenReturnNextCursor() throws InvalidCursorException {
+        Beer firstBeer = beerMapper.toModel(BeerDTOBuilder.builder().id(1L).name("Brahma").build().toBeerDTO());
+        Beer secondBeer = beerMapper.toModel(BeerDTOBuilder.builder().id(2L).name("Skol").build().toBeerDTO());
+
+        // pede um item a mais que o tamanho da página para saber se existe próxima
+        when(beerRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(firstBeer, secondBeer));
+
+        BeerPageDTO beerPage = beerService.listPage(null, 1);
+
+        assertThat(beerPage.getBeers(), hasSize(1));
+        assertThat(beerPage.getBeers().get(0).getName(), is(equalTo("Brahma")));
+        // o cursor devolvido continua a partir do último id da página
+        when(beerRepository.findByIdGreaterThanOrderByIdAsc(1L, PageRequest.of(0, 2))).thenReturn(Collections.singletonList(secondBeer));
+        BeerPageDTO nextBeerPage = beerService.listPage(beerPage.getNextCursor(), 1);
+
+        assertThat(nextBeerPage.getBeers().get(0).getName(), is(equalTo("Skol")));
+        assertThat(nextBeerPage.getNextCursor(), is(nullValue()));
+    }
+
+    @Test
+    // o tamanho da página pedido pelo cliente é limitado pelo máximo configurado
+    void whenListPageIsCalledWithSizeGreaterThanMaxThenSizeIsCapped() throws InvalidCursorException {
+        when(beerRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, listingProperties.getMaxPageSize() + 1)))
+                .thenReturn(Collections.emptyList());
+
+        BeerPageDTO beerPage = beerService.listPage(null, 1_000_000);
+
+        assertThat(beerPage.getBeers(), is(empty()));
+    }
+
+    @Test
+    // a busca repassa os filtros para o repositório e pagina pelo cursor como a listagem
+    void whenSearchIsCalledThenFilteredPageIsReturned() throws InvalidCursorException {
+        Beer beer = beerMapper.toModel(BeerDTOBuilder.builder().build().toBeerDTO());
+
+        when(beerRepository.search("Ambev", BeerType.LAGER, 5, 0L, 2)).thenReturn(Arrays.asList(beer, beer));
+
+        BeerPageDTO beerPage = beerService.search("Ambev", BeerType.LAGER, 5, null, 1);
+
+        assertThat(beerPage.getBeers(), hasSize(1));
+        assertThat(beerPage.getNextCursor(), is(equalTo(BeerCursor.encode(beer.getId()))));
+    }
+
+    @Test
+    // a consulta de estoque baixo é feita inteira no repositório
+    void whenLowStockIsCalledThenRepositoryProjectionIsReturned() throws InvalidRatioException {
+        LowStockBeerDTO lowStockBeer = LowStockBeerDTO.builder().id(1L).name("Brahma").quantity(5).max(50).quantityToReorder(45).build();
+
+        when(beerRepository.findLowStock(0.2)).thenReturn(Collections.singletonList(lowStockBeer));
+
+        assertThat(beerService.findLowStock(0.2), is(equalTo(Collections.singletonList(lowStockBeer))));
+    }
+
+    @Test
+    // uma proporção fora de 0..1 lança a exceção de proporção inválida sem consultar o banco
+    void whenLowStockIsCalledWithInvalidRatioThenThrowException() {
+        assertThrows(InvalidRatioException.class, () -> beerService.findLowStock(1.5));
+        assertThrows(InvalidRatioException.class, () -> beerService.findLowStock(Double.NaN));
+        verifyNoInteractions(beerRepository);
+    }
+
+    @Test
+    // um cursor que não foi gerado pela listagem lança a exceção de cursor inválido
+    void whenListPageIsCalledWithInvalidCursorThenThrowException() {
+        assertThrows(InvalidCursorException.class, () -> beerService.listPage("not a cursor", null));
+    }
+
     @Test
     // método que faz a exclusão de cervejas
     void whenExclusionIsCalledWithValidIdThenABeerShouldBeDeleted() throws BeerNotFoundException{
@@ -214,17 +380,21 @@ public class BeerServiceTest {
         // cria a entidade cerveja encontrada
         Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
 
-        //when
-        // encontra a cerveja por id e retorna a mesma
-        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-
-        // salva a cerveja e retorna a esperada
-        when(beerRepository.save(expectedBeer)).thenReturn(expectedBeer);
-
         // quantidade de cervejas que quer adicionar
         int quantityToIncrement = 10;
         // a quantidade de cervejas após o incremento é igual a cerveja que vai retornar
         int expectedQuantityAfterIncrement = expectedBeerDTO.getQuantity() + quantityToIncrement;
+        expectedBeer.setQuantity(expectedQuantityAfterIncrement);
+
+        //when
+        // a cerveja não vira hot durante o incremento
+        when(hotStockService.rowChangeLock()).thenReturn(new ReentrantLock());
+
+        // o UPDATE condicional altera uma linha
+        when(beerRepository.incrementQuantity(expectedBeerDTO.getId(), quantityToIncrement)).thenReturn(1);
+
+        // encontra a cerveja por id já incrementada
+        when(beerRepository.findCurrentById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
 
         // then
         // informa o id da cerveja que quer incrementar
@@ -246,12 +416,18 @@ public class BeerServiceTest {
         // cria a entidade cerveja encontrada
         Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
 
-        // encontra a cerveja por id e retorna a mesma
-        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-
         // quantidade de cervejas que quer adicionar
         int quantityToIncrement = 80;
 
+        // a cerveja não vira hot durante o incremento
+        when(hotStockService.rowChangeLock()).thenReturn(new ReentrantLock());
+
+        // o UPDATE condicional não altera nenhuma linha porque o máximo seria excedido
+        when(beerRepository.incrementQuantity(expectedBeerDTO.getId(), quantityToIncrement)).thenReturn(0);
+
+        // encontra a cerveja por id e retorna a mesma
+        when(beerRepository.findCurrentById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
+
         // informa o id da cerveja que quer incrementar
         assertThrows(BeerStockExceededException.class, () -> beerService.increment(expectedBeerDTO.getId(), quantityToIncrement));
     }
@@ -265,12 +441,18 @@ public class BeerServiceTest {
         // cria a entidade cerveja encontrada
         Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
 
-        // encontra a cerveja por id e retorna a mesma
-        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-
         // quantidade de cervejas que quer adicionar
         int quantityToIncrement = 45;
 
+        // a cerveja não vira hot durante o incremento
+        when(hotStockService.rowChangeLock()).thenReturn(new ReentrantLock());
+
+        // o UPDATE condicional não altera nenhuma linha porque o máximo seria excedido
+        when(beerRepository.incrementQuantity(expectedBeerDTO.getId(), quantityToIncrement)).thenReturn(0);
+
+        // encontra a cerveja por id e retorna a mesma
+        when(beerRepository.findCurrentById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
+
         // informa o id da cerveja que quer incrementar
         assertThrows(BeerStockExceededException.class, () -> beerService.increment(expectedBeerDTO.getId(), quantityToIncrement));
     }
@@ -281,62 +463,99 @@ public class BeerServiceTest {
         // quantidade de cervejas que quer adicionar
         int quantityToIncrement = 10;
 
+        // a cerveja não vira hot durante o incremento
+        when(hotStockService.rowChangeLock()).thenReturn(new ReentrantLock());
+
+        // o UPDATE condicional não encontra a cerveja
+        when(beerRepository.incrementQuantity(INVALID_BEER_ID, quantityToIncrement)).thenReturn(0);
+
         // quando ser chamado por esse id não vai retornar nada
-        when(beerRepository.findById(INVALID_BEER_ID)).thenReturn(Optional.empty());
+        when(beerRepository.findCurrentById(INVALID_BEER_ID)).thenReturn(Optional.empty());
 
         // vai lançar uma exceção caso a cerveja não seja encontrada e faz um incremento
         assertThrows(BeerNotFoundException.class, () -> beerService.increment(INVALID_BEER_ID, quantityToIncrement));
     }
-//
-//    @Test
-//    void whenDecrementIsCalledThenDecrementBeerStock() throws BeerNotFoundException, BeerStockExceededException {
-//        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
-//
-//        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-//        when(beerRepository.save(expectedBeer)).thenReturn(expectedBeer);
-//
-//        int quantityToDecrement = 5;
-//        int expectedQuantityAfterDecrement = expectedBeerDTO.getQuantity() - quantityToDecrement;
-//        BeerDTO incrementedBeerDTO = beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement);
-//
-//        assertThat(expectedQuantityAfterDecrement, equalTo(incrementedBeerDTO.getQuantity()));
-//        assertThat(expectedQuantityAfterDecrement, greaterThan(0));
-//    }
-//
-//    @Test
-//    void whenDecrementIsCalledToEmptyStockThenEmptyBeerStock() throws BeerNotFoundException, BeerStockExceededException {
-//        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
-//
-//        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-//        when(beerRepository.save(expectedBeer)).thenReturn(expectedBeer);
-//
-//        int quantityToDecrement = 10;
-//        int expectedQuantityAfterDecrement = expectedBeerDTO.getQuantity() - quantityToDecrement;
-//        BeerDTO incrementedBeerDTO = beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement);
-//
-//        assertThat(expectedQuantityAfterDecrement, equalTo(0));
-//        assertThat(expectedQuantityAfterDecrement, equalTo(incrementedBeerDTO.getQuantity()));
-//    }
-//
-//    @Test
-//    void whenDecrementIsLowerThanZeroThenThrowException() {
-//        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
-//        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
-//
-//        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
-//
-//        int quantityToDecrement = 80;
-//        assertThrows(BeerStockExceededException.class, () -> beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement));
-//    }
-//
-//    @Test
-//    void whenDecrementIsCalledWithInvalidIdThenThrowException() {
-//        int quantityToDecrement = 10;
-//
-//        when(beerRepository.findById(INVALID_BEER_ID)).thenReturn(Optional.empty());
-//
-//        assertThrows(BeerNotFoundException.class, () -> beerService.decrement(INVALID_BEER_ID, quantityToDecrement));
-//    }
+
+    @Test
+    void whenDecrementIsCalledThenDecrementBeerStock() throws BeerNotFoundException, BeerStockExceededException {
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
+
+        expectedBeer.setVersion(0L);
+
+        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
+        runTransactionsInline();
+
+        int quantityToDecrement = 5;
+        when(beerRepository.decrementQuantity(eq(expectedBeerDTO.getId()), eq(quantityToDecrement), eq(0L), notNull())).thenReturn(1);
+        int expectedQuantityAfterDecrement = expectedBeerDTO.getQuantity() - quantityToDecrement;
+        BeerDTO decrementedBeerDTO = beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement);
+
+        assertThat(expectedQuantityAfterDecrement, equalTo(decrementedBeerDTO.getQuantity()));
+        assertThat(expectedQuantityAfterDecrement, greaterThan(0));
+        verify(stockLedgerService).record(expectedBeerDTO.getId(), -quantityToDecrement, StockLedgerEntryType.DECREMENTED);
+    }
+
+    @Test
+    void whenDecrementIsCalledToEmptyStockThenEmptyBeerStock() throws BeerNotFoundException, BeerStockExceededException {
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
+
+        expectedBeer.setVersion(0L);
+
+        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
+        runTransactionsInline();
+
+        int quantityToDecrement = 10;
+        when(beerRepository.decrementQuantity(eq(expectedBeerDTO.getId()), eq(quantityToDecrement), eq(0L), notNull())).thenReturn(1);
+        int expectedQuantityAfterDecrement = expectedBeerDTO.getQuantity() - quantityToDecrement;
+        BeerDTO decrementedBeerDTO = beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement);
+
+        assertThat(expectedQuantityAfterDecrement, equalTo(0));
+        assertThat(expectedQuantityAfterDecrement, equalTo(decrementedBeerDTO.getQuantity()));
+    }
+
+    @Test
+    // o UPDATE não alterou nenhuma linha porque a versão mudou, então a tentativa falha para ser repetida
+    void whenDecrementFindsStaleVersionThenThrowOptimisticLockingException() {
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
+        expectedBeer.setVersion(0L);
+
+        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
+        runTransactionsInline();
+
+        int quantityToDecrement = 5;
+        when(beerRepository.decrementQuantity(eq(expectedBeerDTO.getId()), eq(quantityToDecrement), eq(0L), notNull())).thenReturn(0);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement));
+    }
+
+    @Test
+    void whenDecrementIsLowerThanZeroThenThrowException() {
+        BeerDTO expectedBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer expectedBeer = beerMapper.toModel(expectedBeerDTO);
+
+        when(beerRepository.findById(expectedBeerDTO.getId())).thenReturn(Optional.of(expectedBeer));
+
+        int quantityToDecrement = 80;
+        assertThrows(BeerStockExceededException.class, () -> beerService.decrement(expectedBeerDTO.getId(), quantityToDecrement));
+    }
+
+    @Test
+    void whenDecrementIsCalledWithInvalidIdThenThrowException() {
+        int quantityToDecrement = 10;
+
+        when(beerRepository.findById(INVALID_BEER_ID)).thenReturn(Optional.empty());
+
+        assertThrows(BeerNotFoundException.class, () -> beerService.decrement(INVALID_BEER_ID, quantityToDecrement));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactionsInline() {
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
 }
@@ -0,0 +1,213 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockSlotRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockDeltaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// testa o modo hot com o banco H2 em memória, com a soma ao total e o cool-down feitos só pelos testes
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:hot;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.warehouse.aggregate-interval=3600000",
+        "beerstock.hot.cool-down-check-interval=3600000"
+})
+public class HotStockServiceIntegrationTest {
+
+    private static final int THREADS = 8;
+
+    private static final int SLOTS = 4;
+
+    @Autowired
+    private HotStockService hotStockService;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private BeerStockSlotRepository slotRepository;
+
+    @Autowired
+    private WarehouseStockDeltaRepository warehouseStockDeltaRepository;
+
+    @Autowired
+    private WarehouseStockService warehouseStockService;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Beer beer : beerRepository.findAll()) {
+            if (hotStockService.isHot(beer.getId())) {
+                hotStockService.disable(beer.getId());
+            }
+        }
+        beerRepository.deleteAll();
+        warehouseStockDeltaRepository.deleteAll();
+    }
+
+    @Test
+    // as faixas têm budgets que somam o máximo, então incrementos concorrentes param exatamente nele
+    void whenConcurrentIncrementsExceedMaxThenStockStopsAtMax() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(300, 0);
+        hotStockService.enable(createdBeerDTO.getId(), SLOTS);
+        AtomicInteger acceptedIncrements = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < 50; i++) {
+                try {
+                    beerService.increment(createdBeerDTO.getId(), 1);
+                    acceptedIncrements.incrementAndGet();
+                } catch (BeerStockExceededException ignored) {
+                    // o total chegou ao máximo
+                }
+            }
+            return null;
+        });
+
+        assertThat(acceptedIncrements.get(), is(equalTo(300)));
+        assertThat((int) slotRepository.sumQuantity(createdBeerDTO.getId()), is(equalTo(300)));
+        slotRepository.findAll().forEach(slot -> assertTrue(slot.getQuantity() <= slot.getBudget()));
+        assertThrows(BeerStockExceededException.class, () -> beerService.increment(createdBeerDTO.getId(), 1));
+    }
+
+    @Test
+    // a faixa vazia pega estoque das outras, então os decrementos só param quando o total chega a zero
+    void whenSlotRunsDryThenStockIsRebalancedUntilZero() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(1000, 400);
+        hotStockService.enable(createdBeerDTO.getId(), SLOTS);
+        AtomicInteger acceptedDecrements = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < 60; i++) {
+                try {
+                    beerService.decrement(createdBeerDTO.getId(), 1);
+                    acceptedDecrements.incrementAndGet();
+                } catch (BeerStockExceededException ignored) {
+                    // o total chegou a zero
+                }
+            }
+            return null;
+        });
+
+        assertThat(acceptedDecrements.get(), is(equalTo(400)));
+        assertThat((int) slotRepository.sumQuantity(createdBeerDTO.getId()), is(equalTo(0)));
+        assertThat(stockLedgerService.stockAt(createdBeerDTO.getId(), Instant.now()).getQuantity(), is(equalTo(0)));
+    }
+
+    @Test
+    // juntar as faixas leva o total para a linha da cerveja, que volta a receber as alterações
+    void whenHotModeIsDisabledThenBeerRowHasTheTotal() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        hotStockService.enable(createdBeerDTO.getId(), SLOTS);
+        assertThat(beerService.increment(createdBeerDTO.getId(), 30).getQuantity(), is(equalTo(40)));
+        assertThat(beerService.decrement(createdBeerDTO.getId(), 5).getQuantity(), is(equalTo(35)));
+
+        hotStockService.disable(createdBeerDTO.getId());
+
+        assertFalse(hotStockService.isHot(createdBeerDTO.getId()));
+        assertThat(slotRepository.count(), is(equalTo(0L)));
+        assertThat(warehouseStockDeltaRepository.count(), is(equalTo(0L)));
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(35)));
+        assertThat(beerService.increment(createdBeerDTO.getId(), 65).getQuantity(), is(equalTo(100)));
+        assertThrows(BeerStockExceededException.class, () -> beerService.increment(createdBeerDTO.getId(), 1));
+    }
+
+    @Test
+    // as alterações das faixas entram no total, mas não contam como estoque de nenhum depósito
+    void whenHotStockChangesThenWarehouseUnitsStayTheSame() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        hotStockService.enable(createdBeerDTO.getId(), SLOTS);
+        beerService.decrement(createdBeerDTO.getId(), 4);
+        beerService.increment(createdBeerDTO.getId(), 1);
+
+        assertThat(warehouseStockService.assignedQuantity(createdBeerDTO.getId()), is(equalTo(0)));
+        assertThat(warehouseStockDeltaRepository.sumByBeerId(createdBeerDTO.getId()).orElse(0L), is(equalTo(-3L)));
+    }
+
+    @Test
+    // os incrementos que cruzam com a divisão em faixas entram no total dividido, então o máximo continua valendo
+    void whenHotModeIsEnabledDuringIncrementsThenStockStopsAtMax() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(200, 0);
+        AtomicInteger acceptedIncrements = new AtomicInteger();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < 40; j++) {
+                        try {
+                            beerService.increment(createdBeerDTO.getId(), 1);
+                            acceptedIncrements.incrementAndGet();
+                        } catch (BeerStockExceededException ignored) {
+                            // o total chegou ao máximo
+                        }
+                    }
+                    return null;
+                }));
+            }
+            while (acceptedIncrements.get() < 20) {
+                Thread.onSpinWait();
+            }
+            hotStockService.enable(createdBeerDTO.getId(), SLOTS);
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        hotStockService.disable(createdBeerDTO.getId());
+
+        assertThat(acceptedIncrements.get(), is(equalTo(200)));
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(200)));
+    }
+
+    private void runConcurrently(Callable<Void> task) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private BeerDTO createBeer(int max, int quantity) throws BeerAlreadyRegisteredException {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).max(max).quantity(quantity).build().toBeerDTO();
+        return beerService.createBeer(beerDTO);
+    }
+}
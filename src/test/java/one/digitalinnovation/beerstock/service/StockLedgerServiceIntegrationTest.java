@@ -0,0 +1,185 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementDTO;
+import one.digitalinnovation.beerstock.enums.StockLedgerEntryType;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.StockLedgerRepository;
+import one.digitalinnovation.beerstock.repository.StockSnapshotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// testa o livro de estoque com o banco H2 em memória, com os snapshots gerados só pelos testes e cobrindo até o instante atual
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledger;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.ledger.snapshot-interval=3600000",
+        "beerstock.ledger.snapshot-delay=0"
+})
+public class StockLedgerServiceIntegrationTest {
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private BeerBatchService beerBatchService;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private StockLedgerRepository stockLedgerRepository;
+
+    @Autowired
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        beerRepository.deleteAll();
+        stockLedgerRepository.deleteAll();
+        stockSnapshotRepository.deleteAll();
+    }
+
+    @Test
+    // cada instante enxerga só os movimentos confirmados até ele
+    void whenStockIsAskedAtPastInstantsThenQuantityAtEachInstantIsReturned() throws Exception {
+        Instant beforeCreation = tick();
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        Instant afterCreation = tick();
+        beerService.increment(createdBeerDTO.getId(), 5);
+        Instant afterIncrement = tick();
+        beerService.decrement(createdBeerDTO.getId(), 3);
+
+        assertThrows(BeerNotFoundException.class, () -> stockLedgerService.stockAt(createdBeerDTO.getId(), beforeCreation));
+        assertThat(stockAt(createdBeerDTO, afterCreation), is(equalTo(10)));
+        assertThat(stockAt(createdBeerDTO, afterIncrement), is(equalTo(15)));
+        assertThat(stockAt(createdBeerDTO, tick()), is(equalTo(12)));
+    }
+
+    @Test
+    // com snapshot, a consulta soma o snapshot e os movimentos posteriores a ele; antes dele continua lendo o livro
+    void whenSnapshotsAreTakenThenStockIsRebuiltFromTheLatestSnapshot() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        beerService.increment(createdBeerDTO.getId(), 20);
+        Instant beforeSnapshot = tick();
+
+        stockLedgerService.takeSnapshots();
+        beerService.decrement(createdBeerDTO.getId(), 4);
+        tick();
+        stockLedgerService.takeSnapshots();
+        beerService.increment(createdBeerDTO.getId(), 1);
+
+        assertThat(stockSnapshotRepository.count(), is(equalTo(2L)));
+        assertThat(stockAt(createdBeerDTO, beforeSnapshot), is(equalTo(30)));
+        assertThat(stockAt(createdBeerDTO, tick()), is(equalTo(databaseQuantity(createdBeerDTO))));
+        assertThat(databaseQuantity(createdBeerDTO), is(equalTo(27)));
+    }
+
+    @Test
+    // o movimento que confirma depois que um snapshot cobriu o instante dele entra na geração seguinte
+    void whenMovementCommitsAfterSnapshotCoveredItThenNextSnapshotIncludesIt() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch snapshotTaken = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> lateMovement = executorService.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                stockLedgerService.record(createdBeerDTO.getId(), 5, StockLedgerEntryType.INCREMENTED);
+                recorded.countDown();
+                try {
+                    snapshotTaken.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            recorded.await(10, TimeUnit.SECONDS);
+            tick();
+            stockLedgerService.takeSnapshots();
+            snapshotTaken.countDown();
+            lateMovement.get(10, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(stockAt(createdBeerDTO, tick()), is(equalTo(15)));
+        stockLedgerService.takeSnapshots();
+        assertThat(stockSnapshotRepository.count(), is(equalTo(2L)));
+        assertThat(stockAt(createdBeerDTO, tick()), is(equalTo(15)));
+    }
+
+    @Test
+    // uma geração sem movimentos novos não cria snapshots
+    void whenNoMovementHappenedSinceLastSnapshotThenNoSnapshotIsCreated() throws Exception {
+        createBeer(100, 10);
+        tick();
+        stockLedgerService.takeSnapshots();
+        tick();
+        stockLedgerService.takeSnapshots();
+
+        assertThat(stockSnapshotRepository.count(), is(equalTo(1L)));
+    }
+
+    @Test
+    // as movimentações em lote e a exclusão também entram no livro
+    void whenBeerIsMovedInBulkAndDeletedThenLedgerFollowsTheStock() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        beerBatchService.applyMovements(Arrays.asList(
+                new StockMovementDTO(createdBeerDTO.getId(), 30),
+                new StockMovementDTO(createdBeerDTO.getId(), -5)));
+        Instant afterMovements = tick();
+        beerService.deleteById(createdBeerDTO.getId());
+
+        assertThat(stockAt(createdBeerDTO, afterMovements), is(equalTo(35)));
+        assertThat(stockAt(createdBeerDTO, tick()), is(equalTo(0)));
+    }
+
+    private int stockAt(BeerDTO beerDTO, Instant at) throws BeerNotFoundException {
+        return stockLedgerService.stockAt(beerDTO.getId(), at).getQuantity();
+    }
+
+    private int databaseQuantity(BeerDTO beerDTO) {
+        return beerRepository.findCurrentById(beerDTO.getId()).get().getQuantity();
+    }
+
+    // o livro guarda microssegundos, então os instantes dos testes ficam separados por mais que isso dos movimentos
+    private Instant tick() throws InterruptedException {
+        Thread.sleep(2);
+        Instant now = Instant.now();
+        Thread.sleep(2);
+        return now;
+    }
+
+    private BeerDTO createBeer(int max, int quantity) throws BeerAlreadyRegisteredException {
+        BeerDTO beerDTO = BeerDTOBuilder.builder()
+                .id(null)
+                .max(max)
+                .quantity(quantity)
+                .build()
+                .toBeerDTO();
+        return beerService.createBeer(beerDTO);
+    }
+}
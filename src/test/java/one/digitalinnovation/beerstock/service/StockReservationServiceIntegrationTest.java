@@ -0,0 +1,200 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.config.ReservationProperties;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.StockReservationDTO;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.StockReservationRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockDeltaRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// testa as reservas com o banco H2 em memória, com a limpeza das vencidas feita só pelos testes
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservation;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.reservation.sweep-interval=3600000",
+        "beerstock.warehouse.aggregate-interval=3600000",
+        "beerstock.hot.cool-down-check-interval=3600000"
+})
+public class StockReservationServiceIntegrationTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private ReservationProperties reservationProperties;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private WarehouseStockService warehouseStockService;
+
+    @Autowired
+    private HotStockService hotStockService;
+
+    @Autowired
+    private WarehouseStockRepository warehouseStockRepository;
+
+    @Autowired
+    private WarehouseStockDeltaRepository warehouseStockDeltaRepository;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Beer beer : beerRepository.findAll()) {
+            if (hotStockService.isHot(beer.getId())) {
+                hotStockService.disable(beer.getId());
+            }
+        }
+        reservationRepository.deleteAll();
+        beerRepository.deleteAll();
+        warehouseStockRepository.deleteAll();
+        warehouseStockDeltaRepository.deleteAll();
+    }
+
+    @Test
+    // as reservas concorrentes passam uma por vez pela linha da cerveja e param exatamente no estoque
+    void whenConcurrentReservationsExceedStockThenReservedStopsAtQuantity() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(200, 100);
+        AtomicInteger acceptedReservations = new AtomicInteger();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < 20; j++) {
+                        try {
+                            stockReservationService.reserve(createdBeerDTO.getId(), 1);
+                            acceptedReservations.incrementAndGet();
+                        } catch (BeerStockExceededException ignored) {
+                            // nada mais disponível
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(acceptedReservations.get(), is(equalTo(100)));
+        assertThat(stockReservationService.findAvailable(createdBeerDTO.getId()).getAvailable(), is(equalTo(0)));
+        // o estoque reservado também fica fora dos decrementos diretos
+        assertThrows(BeerStockExceededException.class, () -> beerService.decrement(createdBeerDTO.getId(), 1));
+    }
+
+    @Test
+    // confirmar baixa o estoque, liberar devolve o disponível, e cada reserva só é encerrada uma vez
+    void whenReservationIsConfirmedOrReleasedThenItIsClosed() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        StockReservationDTO confirmed = stockReservationService.reserve(createdBeerDTO.getId(), 4);
+        StockReservationDTO released = stockReservationService.reserve(createdBeerDTO.getId(), 6);
+        assertThrows(BeerStockExceededException.class, () -> stockReservationService.reserve(createdBeerDTO.getId(), 1));
+
+        assertThat(stockReservationService.confirm(createdBeerDTO.getId(), confirmed.getId()).getQuantity(), is(equalTo(6)));
+        stockReservationService.release(createdBeerDTO.getId(), released.getId());
+
+        assertThat(stockReservationService.findAvailable(createdBeerDTO.getId()).getAvailable(), is(equalTo(6)));
+        assertThat(stockLedgerService.stockAt(createdBeerDTO.getId(), Instant.now()).getQuantity(), is(equalTo(6)));
+        assertThrows(ReservationNotFoundException.class, () -> stockReservationService.confirm(createdBeerDTO.getId(), confirmed.getId()));
+        assertThrows(ReservationNotFoundException.class, () -> stockReservationService.confirm(createdBeerDTO.getId(), released.getId()));
+    }
+
+    @Test
+    // a reserva vencida deixa de contar no disponível na hora e a limpeza apaga a linha
+    void whenReservationExpiresThenStockIsAvailableAndSweepDeletesIt() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        Duration ttl = reservationProperties.getTtl();
+        StockReservationDTO reservation;
+        try {
+            reservationProperties.setTtl(Duration.ofMillis(100));
+            reservation = stockReservationService.reserve(createdBeerDTO.getId(), 10);
+        } finally {
+            reservationProperties.setTtl(ttl);
+        }
+        Thread.sleep(200);
+
+        assertThat(stockReservationService.findAvailable(createdBeerDTO.getId()).getAvailable(), is(equalTo(10)));
+        assertThrows(ReservationNotFoundException.class, () -> stockReservationService.confirm(createdBeerDTO.getId(), reservation.getId()));
+
+        stockReservationService.sweep();
+
+        assertThat(reservationRepository.count(), is(equalTo(0L)));
+    }
+
+    @Test
+    // as reservas saem do estoque fora dos depósitos, então o depósito ainda vende o seu e a confirmação não baixa
+    // as unidades dele
+    void whenStockIsInWarehousesThenReservationsUseOnlyTheRest() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 5);
+        warehouseStockService.increment(createdBeerDTO.getId(), 1L, 10);
+        warehouseStockService.aggregate();
+
+        assertThrows(BeerStockExceededException.class, () -> stockReservationService.reserve(createdBeerDTO.getId(), 6));
+        StockReservationDTO reservation = stockReservationService.reserve(createdBeerDTO.getId(), 5);
+        assertThat(stockReservationService.findAvailable(createdBeerDTO.getId()).getAvailable(), is(equalTo(0)));
+        assertThat(warehouseStockService.decrement(createdBeerDTO.getId(), 1L, 10).getQuantity(), is(equalTo(0)));
+        assertThat(stockReservationService.confirm(createdBeerDTO.getId(), reservation.getId()).getQuantity(), is(equalTo(10)));
+
+        warehouseStockService.aggregate();
+
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(0)));
+        assertThat(stockLedgerService.stockAt(createdBeerDTO.getId(), Instant.now()).getQuantity(), is(equalTo(0)));
+    }
+
+    @Test
+    // em modo hot o decremento confere as reservas com as faixas travadas, e a confirmação ainda baixa o reservado
+    void whenHotDecrementWouldTakeReservedStockThenItIsRejected() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        hotStockService.enable(createdBeerDTO.getId(), 4);
+        StockReservationDTO reservation = stockReservationService.reserve(createdBeerDTO.getId(), 8);
+
+        assertThrows(BeerStockExceededException.class, () -> beerService.decrement(createdBeerDTO.getId(), 3));
+        assertThat(beerService.decrement(createdBeerDTO.getId(), 2).getQuantity(), is(equalTo(8)));
+        assertThat(stockReservationService.confirm(createdBeerDTO.getId(), reservation.getId()).getQuantity(), is(equalTo(0)));
+        assertThat(stockLedgerService.stockAt(createdBeerDTO.getId(), Instant.now()).getQuantity(), is(equalTo(0)));
+    }
+
+    private BeerDTO createBeer(int max, int quantity) throws BeerAlreadyRegisteredException {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).max(max).quantity(quantity).build().toBeerDTO();
+        return beerService.createBeer(beerDTO);
+    }
+}
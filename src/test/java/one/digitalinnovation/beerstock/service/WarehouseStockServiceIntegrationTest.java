@@ -0,0 +1,187 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.cache.StockIndex;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementDTO;
+import one.digitalinnovation.beerstock.dto.StockMovementResultDTO;
+import one.digitalinnovation.beerstock.dto.WarehouseStockDTO;
+import one.digitalinnovation.beerstock.enums.StockMovementStatus;
+import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.StockReservationRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockDeltaRepository;
+import one.digitalinnovation.beerstock.repository.WarehouseStockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// testa o estoque por depósito com o banco H2 em memória, com a soma ao total feita só pelos testes
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:warehouse;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.warehouse.aggregate-interval=3600000"
+})
+public class WarehouseStockServiceIntegrationTest {
+
+    private static final int WAREHOUSES = 8;
+
+    private static final int INCREMENTS_PER_WAREHOUSE = 50;
+
+    @Autowired
+    private WarehouseStockService warehouseStockService;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private BeerBatchService beerBatchService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private StockIndex stockIndex;
+
+    @Autowired
+    private BeerRepository beerRepository;
+
+    @Autowired
+    private WarehouseStockRepository warehouseStockRepository;
+
+    @Autowired
+    private WarehouseStockDeltaRepository warehouseStockDeltaRepository;
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    @AfterEach
+    void tearDown() {
+        beerRepository.deleteAll();
+        warehouseStockRepository.deleteAll();
+        warehouseStockDeltaRepository.deleteAll();
+        stockReservationRepository.deleteAll();
+    }
+
+    @Test
+    // cada depósito fica com os seus incrementos, e o total da cerveja só muda quando as alterações são somadas
+    void whenWarehousesIncrementConcurrentlyThenTotalIsAggregatedAfterwards() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(10 + WAREHOUSES * INCREMENTS_PER_WAREHOUSE, 10);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(WAREHOUSES);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long warehouseId = 1; warehouseId <= WAREHOUSES; warehouseId++) {
+                long warehouse = warehouseId;
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < INCREMENTS_PER_WAREHOUSE; i++) {
+                        warehouseStockService.increment(createdBeerDTO.getId(), warehouse, 1);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        List<WarehouseStockDTO> warehouseStocks = warehouseStockService.findByBeer(createdBeerDTO.getId());
+        assertThat(warehouseStocks.size(), is(equalTo(WAREHOUSES)));
+        warehouseStocks.forEach(stock -> assertThat(stock.getQuantity(), is(equalTo(INCREMENTS_PER_WAREHOUSE))));
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(10)));
+
+        warehouseStockService.aggregate();
+
+        int total = 10 + WAREHOUSES * INCREMENTS_PER_WAREHOUSE;
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(total)));
+        assertThat(stockIndex.getQuantity(createdBeerDTO.getId()), is(equalTo(total)));
+        assertThat(stockLedgerService.stockAt(createdBeerDTO.getId(), Instant.now()).getQuantity(), is(equalTo(total)));
+        assertThat(warehouseStockDeltaRepository.count(), is(equalTo(0L)));
+    }
+
+    @Test
+    // o máximo da cerveja vale para o total dos depósitos, já antes da soma, e um depósito não fica negativo nem usa
+    // o estoque de outro
+    void whenWarehouseStockLeavesTheRangeThenChangeIsRejected() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(20, 0);
+        warehouseStockService.increment(createdBeerDTO.getId(), 1L, 15);
+        warehouseStockService.increment(createdBeerDTO.getId(), 2L, 5);
+
+        assertThrows(BeerStockExceededException.class, () -> warehouseStockService.increment(createdBeerDTO.getId(), 2L, 1));
+        assertThrows(BeerStockExceededException.class, () -> beerService.increment(createdBeerDTO.getId(), 1));
+        assertThrows(BeerStockExceededException.class, () -> warehouseStockService.decrement(createdBeerDTO.getId(), 2L, 6));
+        assertThrows(BeerStockExceededException.class, () -> warehouseStockService.decrement(createdBeerDTO.getId(), 3L, 1));
+        assertThat(warehouseStockService.decrement(createdBeerDTO.getId(), 2L, 5).getQuantity(), is(equalTo(0)));
+        assertThat(warehouseStockService.increment(createdBeerDTO.getId(), 1L, 5).getQuantity(), is(equalTo(20)));
+    }
+
+    @Test
+    // o decremento sem depósito só baixa o estoque que não está em nenhuma loja, então o depósito ainda vende o seu
+    void whenStockIsDecrementedWithoutWarehouseThenWarehouseUnitsAreKept() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        warehouseStockService.increment(createdBeerDTO.getId(), 1L, 5);
+        warehouseStockService.aggregate();
+
+        assertThrows(BeerStockExceededException.class, () -> beerService.decrement(createdBeerDTO.getId(), 12));
+        assertThat(beerService.decrement(createdBeerDTO.getId(), 10).getQuantity(), is(equalTo(5)));
+        assertThat(warehouseStockService.decrement(createdBeerDTO.getId(), 1L, 5).getQuantity(), is(equalTo(0)));
+
+        warehouseStockService.aggregate();
+
+        assertThat(beerService.findByName(createdBeerDTO.getName()).getQuantity(), is(equalTo(0)));
+    }
+
+    @Test
+    // a saída em lote tem o mesmo piso do decremento: as reservas somadas às unidades que estão nos depósitos
+    void whenBatchMovementWouldTakeWarehouseUnitsThenItIsRejected() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        warehouseStockService.increment(createdBeerDTO.getId(), 1L, 5);
+        warehouseStockService.aggregate();
+        stockReservationService.reserve(createdBeerDTO.getId(), 4);
+
+        List<StockMovementResultDTO> rejected = beerBatchService.applyMovements(List.of(new StockMovementDTO(createdBeerDTO.getId(), -7)));
+        List<StockMovementResultDTO> applied = beerBatchService.applyMovements(List.of(new StockMovementDTO(createdBeerDTO.getId(), -6)));
+
+        assertThat(rejected.get(0).getStatus(), is(equalTo(StockMovementStatus.REJECTED)));
+        assertThat(applied.get(0).getStatus(), is(equalTo(StockMovementStatus.APPLIED)));
+        assertThat(applied.get(0).getQuantity(), is(equalTo(9)));
+    }
+
+    @Test
+    // a exclusão leva os depósitos e as alterações pendentes, e o livro de estoque fecha a cerveja em zero
+    void whenBeerWithPendingWarehouseStockIsDeletedThenLedgerEndsAtZero() throws Exception {
+        BeerDTO createdBeerDTO = createBeer(100, 10);
+        warehouseStockService.increment(createdBeerDTO.getId(), 1L, 7);
+
+        beerService.deleteById(createdBeerDTO.getId());
+
+        assertThat(warehouseStockRepository.findByBeerIdOrderByWarehouseId(createdBeerDTO.getId()), is(empty()));
+        assertThat(warehouseStockDeltaRepository.count(), is(equalTo(0L)));
+        assertThat(stockLedgerService.stockAt(createdBeerDTO.getId(), Instant.now()).getQuantity(), is(equalTo(0)));
+    }
+
+    private BeerDTO createBeer(int max, int quantity) throws BeerAlreadyRegisteredException {
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).max(max).quantity(quantity).build().toBeerDTO();
+        return beerService.createBeer(beerDTO);
+    }
+}